@@ -0,0 +1,159 @@
+package persistence;
+
+import domain.Course;
+import domain.Enrollment;
+import domain.Student;
+import service.ChangeListener;
+import service.RegistrationManager;
+import service.RegistrationService;
+import service.ShardedRegistrationManager;
+import util.Histogram;
+import util.Metrics;
+
+import java.io.Closeable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Background autosave of a RegistrationManager to a {@link DataStore}, or of
+ * a ShardedRegistrationManager to a {@link ShardedStore}.
+ *
+ * The saver listens to the manager's changes. The first change after a save
+ * marks the data dirty and schedules a save maxLossMillis later; every change
+ * made until then goes out with that save, so a burst of changes costs one
+ * snapshot. Saves run on the saver's own thread: a point-in-time snapshot of
+ * the manager is encoded and swapped in by {@link DataStore#save} (temp file,
+ * fsync, atomic rename). Operations on the manager only count the change and
+ * set a flag; they never wait for the disk.
+ *
+ * A change therefore reaches disk at most maxLossMillis plus the time of one
+ * save after it was made. A failed save keeps the data dirty and is retried
+ * after another maxLossMillis. Use a BINARY store: a SERIALIZED one locks the
+ * manager while it writes. A sharded manager is saved whole, every shard to
+ * its own file, whichever shard changed.
+ */
+public class AutoSaver implements ChangeListener, Closeable {
+
+    private static final LongAdder SAVES = Metrics.counter("autosave.saves");
+    private static final LongAdder FAILURES = Metrics.counter("autosave.failures");
+    private static final Histogram CHANGES_PER_SAVE = Metrics.histogram("autosave.changesPerSave", "changes");
+
+    private final RegistrationService manager;
+    private final BooleanSupplier store;
+    private final long maxLossMillis;
+    private final ScheduledThreadPoolExecutor saver;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final LongAdder changes = new LongAdder();
+    private final Object saveLock = new Object();
+    private volatile boolean closed;
+
+    /** Starts saving the manager's changes to the store, each within maxLossMillis. */
+    public AutoSaver(RegistrationManager manager, DataStore store, long maxLossMillis) {
+        this(manager, () -> store.save(manager), maxLossMillis);
+    }
+
+    /** Starts saving the shards' changes to the store, each within maxLossMillis. */
+    public AutoSaver(ShardedRegistrationManager manager, ShardedStore store, long maxLossMillis) {
+        this(manager, () -> store.save(manager), maxLossMillis);
+    }
+
+    private AutoSaver(RegistrationService manager, BooleanSupplier store, long maxLossMillis) {
+        if (maxLossMillis <= 0) throw new IllegalArgumentException("maxLossMillis must be positive");
+        this.manager = manager;
+        this.store = store;
+        this.maxLossMillis = maxLossMillis;
+        this.saver = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "autosave");
+            t.setDaemon(true);
+            return t;
+        });
+        // on close, drop the pending save but let a running one finish its file
+        saver.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        manager.addChangeListener(this);
+    }
+
+    public long getMaxLossMillis() { return maxLossMillis; }
+
+    /** True if changes were made since the last save started. */
+    public boolean isDirty() { return dirty.get(); }
+
+    /** Changes made since the last save started. */
+    public long getPendingChanges() { return changes.sum(); }
+
+    // Runs under the manager's locks: no I/O, no blocking
+    private void changed() {
+        changes.increment();
+        if (!dirty.get() && dirty.compareAndSet(false, true)) schedule();
+    }
+
+    private void schedule() {
+        if (closed) return;
+        try {
+            saver.schedule(this::saveInBackground, maxLossMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // closed meanwhile
+        }
+    }
+
+    private void saveInBackground() {
+        if (!save() && dirty.compareAndSet(false, true)) schedule();
+    }
+
+    /**
+     * Saves now on the calling thread, after any save in progress; returns
+     * false if the save failed. Used for explicit saves and on shutdown.
+     */
+    public boolean saveNow() {
+        return save();
+    }
+
+    // The flag is cleared before the snapshot is taken, so a change racing with
+    // the save is either in this snapshot or schedules the next save.
+    private boolean save() {
+        synchronized (saveLock) {
+            dirty.set(false);
+            long pending = changes.sumThenReset();
+            if (store.getAsBoolean()) {
+                SAVES.increment();
+                CHANGES_PER_SAVE.record(pending);
+                return true;
+            }
+            FAILURES.increment();
+            changes.add(pending);
+            return false;
+        }
+    }
+
+    /**
+     * Stops listening and waits for a save in progress; changes not saved yet
+     * are not written, call {@link #saveNow()} first to keep them.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        manager.removeChangeListener(this);
+        saver.shutdown();
+        try {
+            saver.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override public void studentAdded(Student s) { changed(); }
+    @Override public void studentUpdated(Student s) { changed(); }
+    @Override public void courseAdded(Course c) { changed(); }
+    @Override public void courseUpdated(Course c) { changed(); }
+    @Override public void studentDeleted(String studentId) { changed(); }
+    @Override public void courseDeleted(String courseId) { changed(); }
+    @Override public void enrolled(Enrollment e) { changed(); }
+    @Override public void unenrolled(String studentId, String courseId) { changed(); }
+    @Override public void waitlisted(String studentId, String courseId, int priority) { changed(); }
+    @Override public void waitlistLeft(String studentId, String courseId) { changed(); }
+    @Override public void batchStarted() {}
+    @Override public void batchFinished() {}
+}
@@ -0,0 +1,91 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of an all-or-nothing batch of enrollments or unenrollments: either
+ * every item was applied or none was. Items are in request order.
+ */
+public final class BatchResult {
+
+    public enum Status {
+        ENROLLED("Enrolled."),
+        UNENROLLED("Unenrolled."),
+        NOT_APPLIED("Valid, but the batch was rejected."),
+        STUDENT_NOT_FOUND("Student not found."),
+        COURSE_NOT_FOUND("Course not found."),
+        ALREADY_ENROLLED("Student already enrolled in this course."),
+        NOT_ENROLLED("No such enrollment."),
+        COURSE_FULL("Course is full."),
+        MISSING_PREREQUISITE("Student does not hold a prerequisite of this course."),
+        SCHEDULE_CONFLICT("Course meets at the same time as another course of the student."),
+        DUPLICATE("Duplicate item in batch.");
+
+        private final String message;
+
+        Status(String message) { this.message = message; }
+
+        public String getMessage() { return message; }
+
+        public boolean isSuccess() { return this == ENROLLED || this == UNENROLLED; }
+    }
+
+    public static final class Item {
+        private final String studentId;
+        private final String courseId;
+        private Status status;
+        private String enrollmentId;
+
+        Item(String studentId, String courseId) {
+            this.studentId = studentId;
+            this.courseId = courseId;
+        }
+
+        public String getStudentId() { return studentId; }
+        public String getCourseId() { return courseId; }
+        public Status getStatus() { return status; }
+        /** Id of the created enrollment; null unless the status is ENROLLED. */
+        public String getEnrollmentId() { return enrollmentId; }
+
+        void setStatus(Status status) { this.status = status; }
+        boolean hasStatus() { return status != null; }
+
+        void succeed(Status status, String enrollmentId) {
+            this.status = status;
+            this.enrollmentId = enrollmentId;
+        }
+
+        @Override
+        public String toString() {
+            return studentId + " -> " + courseId + ": " + status
+                    + (enrollmentId != null ? " " + enrollmentId : "");
+        }
+    }
+
+    private final List<Item> items;
+    private final boolean applied;
+
+    BatchResult(List<Item> items, boolean applied) {
+        this.items = Collections.unmodifiableList(items);
+        this.applied = applied;
+    }
+
+    public boolean isApplied() { return applied; }
+    public List<Item> getItems() { return items; }
+
+    /** Items that caused the batch to be rejected; empty if it was applied. */
+    public List<Item> getFailures() {
+        List<Item> out = new ArrayList<>();
+        for (Item i : items) {
+            if (!i.getStatus().isSuccess() && i.getStatus() != Status.NOT_APPLIED) out.add(i);
+        }
+        return out;
+    }
+
+    @Override
+    public String toString() {
+        return (applied ? "applied " : "rejected ") + items;
+    }
+}
@@ -0,0 +1,231 @@
+package persistence;
+
+import domain.Course;
+import domain.Enrollment;
+import domain.Timetable;
+import service.RegistrationManager;
+import service.RegistrationSnapshot;
+import util.SnapshotLog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Versioned binary snapshot of a RegistrationManager.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   int    magic "CRSN"
+ *   short  version
+ *   int    string count, then per string: int byte length + UTF-8 bytes
+ *   int    student count, then per student:    int idRef, int nameRef, int emailRef
+ *   int    course count, then per course:      int idRef, int nameRef, int capacity
+ *   int    enrollment count, then per record:  int idRef, int studentIdRef, int courseIdRef,
+ *                                              long epochSecond, int nano
+ *   int    waitlist entry count, then per entry: int studentIdRef, int courseIdRef, int priority
+ *          (since version 2; entries of a course are in line order)
+ *   int    course rule count, then per course with meeting times or prerequisites:
+ *                                              int idRef, int meetingsRef, int prerequisitesRef
+ *          (since version 3; meetings as in Timetable.toString, prerequisites as space-separated ids)
+ *   int    student, course and enrollment key watermarks (since version 4; every key handed
+ *          out so far, deleted or not, is below them)
+ * </pre>
+ * Every string is stored once in the string table and referenced by index,
+ * so records are fixed width. Rosters and schedules are rebuilt from the
+ * enrollment records on load.
+ */
+public final class BinarySnapshot {
+
+    private static final int MAGIC = 0x4352534E; // "CRSN"
+    private static final short VERSION = 4;
+
+    private static final int STUDENT_RECORD = 12;
+    private static final int COURSE_RECORD = 12;
+    private static final int ENROLLMENT_RECORD = 24;
+    private static final int WAITLIST_RECORD = 12;
+    private static final int COURSE_RULE_RECORD = 12;
+
+    private BinarySnapshot() {}
+
+    /**
+     * Encodes a point-in-time snapshot of the manager, waitlists included. The
+     * manager is held up only while the snapshot and its field copies are
+     * taken; encoding reads the snapshot without a lock.
+     */
+    public static ByteBuffer encode(RegistrationManager manager) {
+        return encode(manager.snapshot(true));
+    }
+
+    /**
+     * Encodes a snapshot taken for saving. Students and courses are written
+     * from the field copies made under the snapshot's locks, never from the
+     * live entities, so the file reflects a single instant.
+     *
+     * @throws IllegalStateException if the snapshot was not taken for saving
+     */
+    public static ByteBuffer encode(RegistrationSnapshot snapshot) {
+        List<RegistrationSnapshot.StudentState> students = snapshot.studentStates();
+        List<RegistrationSnapshot.CourseState> courses = snapshot.courseStates();
+        SnapshotLog.View<Enrollment> enrollments = snapshot.enrollments();
+
+        StringTable strings = new StringTable();
+        int[] studentRecs = new int[students.size() * 3];
+        int i = 0;
+        for (RegistrationSnapshot.StudentState s : students) {
+            studentRecs[i++] = strings.ref(s.studentId());
+            studentRecs[i++] = strings.ref(s.name());
+            studentRecs[i++] = strings.ref(s.email());
+        }
+        int[] courseRecs = new int[courses.size() * 3];
+        List<int[]> ruleRecs = new ArrayList<>();
+        i = 0;
+        for (RegistrationSnapshot.CourseState c : courses) {
+            courseRecs[i++] = strings.ref(c.courseId());
+            courseRecs[i++] = strings.ref(c.name());
+            courseRecs[i++] = c.capacity();
+            if (!c.meetings().isEmpty() || !c.prerequisiteIds().isEmpty()) {
+                ruleRecs.add(new int[] { courseRecs[i - 3], strings.ref(c.meetings().toString()),
+                        strings.ref(String.join(" ", c.prerequisiteIds())) });
+            }
+        }
+        int[] enrollRefs = new int[enrollments.size() * 3];
+        i = 0;
+        for (Enrollment e : enrollments) {
+            enrollRefs[i++] = strings.ref(e.getEnrollmentId());
+            enrollRefs[i++] = strings.ref(e.getStudentId());
+            enrollRefs[i++] = strings.ref(e.getCourseId());
+        }
+        List<int[]> waitlistRecs = new ArrayList<>();
+        snapshot.forEachWaitlistEntry((sid, cid, priority) ->
+                waitlistRecs.add(new int[] { strings.ref(sid), strings.ref(cid), priority }));
+
+        long size = 4 + 2 + 4 + strings.encodedBytes
+                + 4 + (long) students.size() * STUDENT_RECORD
+                + 4 + (long) courses.size() * COURSE_RECORD
+                + 4 + (long) enrollments.size() * ENROLLMENT_RECORD
+                + 4 + (long) waitlistRecs.size() * WAITLIST_RECORD
+                + 4 + (long) ruleRecs.size() * COURSE_RULE_RECORD
+                + 12;
+        if (size > Integer.MAX_VALUE) throw new IllegalStateException("Snapshot exceeds 2 GB");
+        ByteBuffer buf = ByteBuffer.allocate((int) size);
+
+        buf.putInt(MAGIC).putShort(VERSION);
+        buf.putInt(strings.values.size());
+        for (byte[] utf8 : strings.values) buf.putInt(utf8.length).put(utf8);
+        buf.putInt(students.size());
+        for (int v : studentRecs) buf.putInt(v);
+        buf.putInt(courses.size());
+        for (int v : courseRecs) buf.putInt(v);
+        buf.putInt(enrollments.size());
+        i = 0;
+        for (Enrollment e : enrollments) {
+            buf.putInt(enrollRefs[i++]).putInt(enrollRefs[i++]).putInt(enrollRefs[i++]);
+            buf.putLong(e.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+            buf.putInt(e.getTimestamp().getNano());
+        }
+        buf.putInt(waitlistRecs.size());
+        for (int[] w : waitlistRecs) buf.putInt(w[0]).putInt(w[1]).putInt(w[2]);
+        buf.putInt(ruleRecs.size());
+        for (int[] r : ruleRecs) buf.putInt(r[0]).putInt(r[1]).putInt(r[2]);
+        buf.putInt(snapshot.getStudentKeyWatermark()).putInt(snapshot.getCourseKeyWatermark())
+                .putInt(snapshot.getEnrollmentKeyWatermark());
+        buf.flip();
+        return buf;
+    }
+
+    /** Writes an encoded snapshot through a file channel and forces it to disk. */
+    public static void write(ByteBuffer snapshot, Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = snapshot.duplicate();
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(true);
+        }
+    }
+
+    /** Memory-maps a snapshot file and rebuilds the manager from it. */
+    public static RegistrationManager read(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            return decode(buf);
+        }
+    }
+
+    static RegistrationManager decode(ByteBuffer buf) throws IOException {
+        try {
+            if (buf.getInt() != MAGIC) throw new IOException("Not a registration snapshot");
+            short version = buf.getShort();
+            if (version < 1 || version > VERSION) throw new IOException("Unsupported snapshot version " + version);
+
+            String[] strings = new String[buf.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] utf8 = new byte[buf.getInt()];
+                buf.get(utf8);
+                strings[i] = new String(utf8, StandardCharsets.UTF_8);
+            }
+
+            RegistrationManager manager = new RegistrationManager();
+            int students = buf.getInt();
+            for (int i = 0; i < students; i++) {
+                manager.restoreStudent(strings[buf.getInt()], strings[buf.getInt()], strings[buf.getInt()]);
+            }
+            int courses = buf.getInt();
+            for (int i = 0; i < courses; i++) {
+                manager.restoreCourse(strings[buf.getInt()], strings[buf.getInt()], buf.getInt());
+            }
+            int enrollments = buf.getInt();
+            for (int i = 0; i < enrollments; i++) {
+                String eId = strings[buf.getInt()], sid = strings[buf.getInt()], cid = strings[buf.getInt()];
+                LocalDateTime ts = LocalDateTime.ofEpochSecond(buf.getLong(), buf.getInt(), ZoneOffset.UTC);
+                manager.restoreEnrollment(eId, sid, cid, ts);
+            }
+            int waiting = version >= 2 ? buf.getInt() : 0;
+            for (int i = 0; i < waiting; i++) {
+                manager.restoreWaitlistEntry(strings[buf.getInt()], strings[buf.getInt()], buf.getInt());
+            }
+            int rules = version >= 3 ? buf.getInt() : 0;
+            for (int i = 0; i < rules; i++) {
+                Course c = manager.findCourseById(strings[buf.getInt()]);
+                Timetable meetings = Timetable.parse(strings[buf.getInt()]);
+                String prerequisites = strings[buf.getInt()];
+                if (c == null) continue;
+                manager.restoreCourse(c.getCourseId(), c.getCourseName(), c.getCapacity(), meetings,
+                        prerequisites.isEmpty() ? List.of() : Arrays.asList(prerequisites.split(" ")));
+            }
+            // older versions: keys of entities deleted before the save may be handed out again
+            if (version >= 4) manager.restoreKeyWatermarks(buf.getInt(), buf.getInt(), buf.getInt());
+            return manager;
+        } catch (RuntimeException e) {
+            // BufferUnderflowException, bad string ref, ...
+            throw new IOException("Corrupt snapshot: " + e, e);
+        }
+    }
+
+    private static final class StringTable {
+        final Map<String, Integer> refs = new HashMap<>();
+        final List<byte[]> values = new ArrayList<>();
+        long encodedBytes;
+
+        int ref(String s) {
+            Integer ref = refs.get(s);
+            if (ref != null) return ref;
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            values.add(utf8);
+            encodedBytes += 4 + utf8.length;
+            refs.put(s, values.size() - 1);
+            return values.size() - 1;
+        }
+    }
+}
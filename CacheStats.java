@@ -0,0 +1,38 @@
+package service;
+
+/** Counters of the roster/schedule view cache since the manager was created or the cache resized. */
+public final class CacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long size;
+    private final long capacity;
+
+    CacheStats(long hits, long misses, long evictions, long size, long capacity) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+        this.capacity = capacity;
+    }
+
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+    public long getEvictions() { return evictions; }
+    /** Views currently cached. */
+    public long getSize() { return size; }
+    /** Maximum number of cached views; 0 if caching is off. */
+    public long getCapacity() { return capacity; }
+
+    /** Share of lookups served from the cache, 0 when there were none. */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d misses=%d (%.1f%% hit) evictions=%d size=%d/%d",
+                hits, misses, getHitRate() * 100, evictions, size, capacity);
+    }
+}
@@ -0,0 +1,72 @@
+package service;
+
+import java.time.Instant;
+
+/**
+ * One mutation of a RegistrationManager as published by a {@link ChangeFeed}.
+ * Immutable.
+ *
+ * Which fields are set depends on the type: student events carry the
+ * student id (and name and email when added or updated), course events the
+ * course id (and name and capacity when added or updated), enrollment and
+ * waitlist events both ids (and the priority when waitlisted). Fields that
+ * do not apply are null, or 0 for numbers. A student and a course identify
+ * an enrollment, so enrollment ids are not carried.
+ */
+public final class ChangeEvent {
+
+    public enum Type {
+        STUDENT_ADDED, STUDENT_UPDATED, STUDENT_DELETED,
+        COURSE_ADDED, COURSE_UPDATED, COURSE_DELETED,
+        ENROLLED, UNENROLLED, WAITLISTED, WAITLIST_LEFT
+    }
+
+    private final long sequence;
+    private final long timeMillis;
+    private final Type type;
+    private final String studentId;
+    private final String courseId;
+    private final String name;
+    private final String email;
+    private final int capacity;
+    private final int priority;
+
+    public ChangeEvent(long sequence, long timeMillis, Type type, String studentId, String courseId,
+                       String name, String email, int capacity, int priority) {
+        this.sequence = sequence;
+        this.timeMillis = timeMillis;
+        this.type = type;
+        this.studentId = studentId;
+        this.courseId = courseId;
+        this.name = name;
+        this.email = email;
+        this.capacity = capacity;
+        this.priority = priority;
+    }
+
+    /** Position in the feed: consecutive for consecutive changes, gaps only where a reader lost events. */
+    public long getSequence() { return sequence; }
+    public long getTimeMillis() { return timeMillis; }
+    public Instant getTime() { return Instant.ofEpochMilli(timeMillis); }
+    public Type getType() { return type; }
+    public String getStudentId() { return studentId; }
+    public String getCourseId() { return courseId; }
+    /** Student or course name, for added and updated events. */
+    public String getName() { return name; }
+    public String getEmail() { return email; }
+    /** Course capacity (0 = unlimited), for course added and updated events. */
+    public int getCapacity() { return capacity; }
+    public int getPriority() { return priority; }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder().append('#').append(sequence).append(' ').append(type);
+        if (studentId != null) sb.append(" student:").append(studentId);
+        if (courseId != null) sb.append(" course:").append(courseId);
+        if (name != null) sb.append(" name:").append(name);
+        if (email != null) sb.append(" email:").append(email);
+        if (type == Type.COURSE_ADDED || type == Type.COURSE_UPDATED) sb.append(" capacity:").append(capacity);
+        if (type == Type.WAITLISTED) sb.append(" priority:").append(priority);
+        return sb.toString();
+    }
+}
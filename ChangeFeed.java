@@ -0,0 +1,363 @@
+package service;
+
+import domain.Course;
+import domain.Enrollment;
+import domain.Ids;
+import domain.Student;
+import service.ChangeEvent.Type;
+import util.Histogram;
+import util.Metrics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Publishes the changes of a RegistrationManager as {@link ChangeEvent}s to
+ * any number of in-process subscribers. Register it with
+ * {@link RegistrationManager#addChangeListener}.
+ *
+ * Changes go into a fixed ring of slots without locks: a change claims the
+ * next sequence number with one atomic increment and writes its fields into
+ * slot sequence mod capacity, which is stamped with the sequence once
+ * written. Slots are allocated once and reused every lap and hold int keys,
+ * so publishing allocates nothing and leaves no garbage for the collector to
+ * copy; each {@link Subscription} builds the ChangeEvent (string ids
+ * included) on its own thread when it reads the slot, and checks the stamp
+ * again afterwards in case the slot was overwritten meanwhile.
+ *
+ * Backpressure: publishing never waits, since it runs under the manager's
+ * locks. Once an operation has released them ({@link #locksReleased()}), its
+ * thread waits while some subscription is more than half a ring behind, at
+ * most maxWaitMillis. A subscription still behind after that is lapped: it
+ * stops holding up changes until it catches up. A subscription that is
+ * overrun anyway, by a slow reader or by one operation making more changes
+ * than the ring holds, skips to the oldest event still in the ring when it
+ * next reads and counts the events it lost ({@link Subscription#getMissed()}).
+ * With maxWaitMillis 0 no thread ever waits.
+ *
+ * Events of different courses may be published concurrently, so their
+ * order in the feed is the order their changes claimed a sequence; events
+ * of one student or course appear in the order the changes took effect.
+ * Batches are not marked: their changes appear as single events.
+ */
+public class ChangeFeed implements ChangeListener {
+
+    private static final LongAdder PUBLISHED = Metrics.counter("changefeed.published");
+    private static final LongAdder LAPPED = Metrics.counter("changefeed.lapped");
+    private static final LongAdder MISSED = Metrics.counter("changefeed.missed");
+    private static final Histogram PRODUCER_WAIT = Metrics.histogram("changefeed.producerWait", "ns");
+
+    private static final int SPINS = 100;
+    private static final long PARK_NANOS = 20_000;
+    // stamp of a slot never written
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final VarHandle STAMP;
+
+    static {
+        try {
+            STAMP = MethodHandles.lookup().findVarHandle(Slot.class, "stamp", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // One event, reused every lap. The stamp is the event's sequence once it is
+    // written, -(sequence + 1) while a change writes it; the other fields are
+    // only read between two reads of the same stamp.
+    private static final class Slot {
+        volatile long stamp = EMPTY;
+        Type type;
+        long timeMillis;
+        int studentKey;
+        int courseKey;
+        String name;
+        String email;
+        int capacity;
+        int priority;
+
+        ChangeEvent toEvent(long sequence) {
+            return new ChangeEvent(sequence, timeMillis, type, studentKey < 0 ? null : Ids.student(studentKey),
+                    courseKey < 0 ? null : Ids.course(courseKey), name, email, capacity, priority);
+        }
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    private final long maxWaitNanos;
+    private final long firstSequence;
+    // next sequence to hand out
+    private final AtomicLong claimed;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    // Lowest position of the subscriptions when a thread last looked; positions
+    // only grow, so a thread whose limit is not above it need not look again
+    private volatile long gate = Long.MAX_VALUE;
+
+    /** A feed whose sequence numbers start at 0. */
+    public ChangeFeed(int capacity, long maxWaitMillis) {
+        this(capacity, maxWaitMillis, 0);
+    }
+
+    /**
+     * A feed holding the last capacity events (rounded up to a power of two)
+     * whose sequence numbers start at firstSequence, e.g. to continue the
+     * numbering of a file the events are appended to.
+     */
+    public ChangeFeed(int capacity, long maxWaitMillis, long firstSequence) {
+        if (capacity < 2 || capacity > 1 << 30) throw new IllegalArgumentException("capacity must be between 2 and 2^30");
+        if (maxWaitMillis < 0) throw new IllegalArgumentException("maxWaitMillis must not be negative");
+        if (firstSequence < 0) throw new IllegalArgumentException("firstSequence must not be negative");
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) slots[i] = new Slot();
+        this.mask = size - 1;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.firstSequence = firstSequence;
+        this.claimed = new AtomicLong(firstSequence);
+    }
+
+    public int getCapacity() { return slots.length; }
+
+    /** The sequence number the next change will get. */
+    public long getNextSequence() { return claimed.get(); }
+
+    /** Subscribes to the changes made from now on. */
+    public Subscription subscribe() {
+        return subscribe(claimed.get());
+    }
+
+    /**
+     * Subscribes from fromSequence on, or from the oldest event still in the
+     * ring if fromSequence is older.
+     */
+    public Subscription subscribe(long fromSequence) {
+        long next = claimed.get();
+        long from = Math.max(Math.min(fromSequence, next), Math.max(firstSequence, next - slots.length));
+        Subscription s = new Subscription(from);
+        subscriptions.add(s);
+        if (from < gate) gate = from;
+        return s;
+    }
+
+    // The sequence a slot's stamp belongs to, written or being written; -1 for an empty slot
+    private static long sequenceOf(long stamp) {
+        return stamp >= 0 ? stamp : stamp == EMPTY ? -1 : -stamp - 1;
+    }
+
+    private void publish(Type type, int studentKey, int courseKey, String name, String email,
+                         int capacity, int priority) {
+        long seq = claimed.getAndIncrement();
+        long time = System.currentTimeMillis();
+        Slot slot = slots[(int) seq & mask];
+        // The slot passes from lap to lap in sequence order: it is this change's
+        // once the previous lap's event is in it, so no event is ever overwritten
+        // before it was written, however long its change was held up
+        long previous = seq - slots.length;
+        long expected = previous < firstSequence ? EMPTY : previous;
+        for (int spins = 0; !STAMP.compareAndSet(slot, expected, -seq - 1); spins++) {
+            if (spins < SPINS) Thread.onSpinWait(); // the previous lap's change is still writing
+            else Thread.yield();
+        }
+        slot.type = type;
+        slot.timeMillis = time;
+        slot.studentKey = studentKey;
+        slot.courseKey = courseKey;
+        slot.name = name;
+        slot.email = email;
+        slot.capacity = capacity;
+        slot.priority = priority;
+        slot.stamp = seq;
+        PUBLISHED.increment();
+    }
+
+    /**
+     * Waits until every subscription is at most half a ring behind, at most
+     * maxWaitMillis; then laps the subscriptions still behind. Called by the
+     * manager with none of its locks held.
+     */
+    @Override
+    public void locksReleased() {
+        long limit = claimed.get() - slots.length / 2;
+        if (limit <= gate) return;
+        long min = minPosition();
+        if (min < limit) {
+            long start = System.nanoTime();
+            for (int spins = 0; min < limit && System.nanoTime() - start < maxWaitNanos; spins++) {
+                if (spins < SPINS) Thread.onSpinWait();
+                else LockSupport.parkNanos(PARK_NANOS);
+                min = minPosition();
+            }
+            PRODUCER_WAIT.recordSince(start);
+            if (min < limit) {
+                for (Subscription s : subscriptions) {
+                    if (!s.lapped && s.position < limit) {
+                        s.lapped = true;
+                        LAPPED.increment();
+                    }
+                }
+                min = minPosition();
+            }
+        }
+        gate = min;
+    }
+
+    private long minPosition() {
+        long min = Long.MAX_VALUE;
+        for (Subscription s : subscriptions) {
+            if (!s.lapped) min = Math.min(min, s.position);
+        }
+        return min;
+    }
+
+    /**
+     * A reader of the feed. Each subscription is read by one thread at a
+     * time; it keeps holding up changes until closed.
+     */
+    public final class Subscription implements AutoCloseable {
+        // next sequence to read
+        private volatile long position;
+        // set by a thread that stopped waiting for this subscription
+        private volatile boolean lapped;
+        private volatile long missed;
+
+        private Subscription(long position) {
+            this.position = position;
+        }
+
+        /** The sequence number of the next event to read. */
+        public long getPosition() { return position; }
+
+        /** Events published but not read yet. */
+        public long getLag() { return claimed.get() - position; }
+
+        /** Events lost because this subscription fell a whole ring behind. */
+        public long getMissed() { return missed; }
+
+        /** The next event, or null if none is published yet. */
+        public ChangeEvent poll() {
+            long p = position;
+            while (true) {
+                Slot slot = slots[(int) p & mask];
+                long stamp = slot.stamp;
+                if (stamp == p) {
+                    ChangeEvent e = slot.toEvent(p);
+                    VarHandle.acquireFence();
+                    if (slot.stamp == p) {
+                        position = p + 1;
+                        return e;
+                    }
+                } else if (sequenceOf(stamp) <= p) {
+                    if (lapped) rejoin(p); // caught up
+                    return null;
+                }
+                p = skipLost(p);
+            }
+        }
+        /** The next event, waiting up to timeout for one; null if none came. */
+        public ChangeEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            for (int spins = 0; ; spins++) {
+                ChangeEvent e = poll();
+                if (e != null) return e;
+                long left = deadline - System.nanoTime();
+                if (left <= 0) return null;
+                if (spins < SPINS) Thread.onSpinWait();
+                else LockSupport.parkNanos(Math.min(left, PARK_NANOS));
+                if (Thread.interrupted()) throw new InterruptedException();
+            }
+        }
+
+        /** Hands up to max published events to sink; returns how many. */
+        public int drainTo(Consumer<? super ChangeEvent> sink, int max) {
+            int n = 0;
+            ChangeEvent e;
+            while (n < max && (e = poll()) != null) {
+                sink.accept(e);
+                n++;
+            }
+            return n;
+        }
+
+        // The slot of p already holds a later lap: continue at the oldest event
+        // that can still be in the ring
+        private long skipLost(long p) {
+            long to = Math.max(p + 1, claimed.get() - slots.length);
+            missed += to - p;
+            MISSED.add(to - p);
+            position = to;
+            if (lapped) rejoin(to);
+            return to;
+        }
+
+        // Holds up changes again from position p on
+        private void rejoin(long p) {
+            lapped = false;
+            if (p < gate) gate = p;
+        }
+
+        /** Stops holding up changes; events can still be polled until lapped. */
+        @Override
+        public void close() {
+            subscriptions.remove(this);
+        }
+    }
+
+    @Override
+    public void studentAdded(Student s) {
+        publish(Type.STUDENT_ADDED, s.getKey(), -1, s.getName(), s.getEmail(), 0, 0);
+    }
+
+    @Override
+    public void studentUpdated(Student s) {
+        publish(Type.STUDENT_UPDATED, s.getKey(), -1, s.getName(), s.getEmail(), 0, 0);
+    }
+
+    @Override
+    public void courseAdded(Course c) {
+        publish(Type.COURSE_ADDED, -1, c.getKey(), c.getCourseName(), null, c.getCapacity(), 0);
+    }
+
+    @Override
+    public void courseUpdated(Course c) {
+        publish(Type.COURSE_UPDATED, -1, c.getKey(), c.getCourseName(), null, c.getCapacity(), 0);
+    }
+
+    @Override
+    public void studentDeleted(String studentId) {
+        publish(Type.STUDENT_DELETED, Ids.parseStudent(studentId), -1, null, null, 0, 0);
+    }
+
+    @Override
+    public void courseDeleted(String courseId) {
+        publish(Type.COURSE_DELETED, -1, Ids.parseCourse(courseId), null, null, 0, 0);
+    }
+
+    @Override
+    public void enrolled(Enrollment e) {
+        publish(Type.ENROLLED, e.getStudentKey(), e.getCourseKey(), null, null, 0, 0);
+    }
+
+    @Override
+    public void unenrolled(String studentId, String courseId) {
+        publish(Type.UNENROLLED, Ids.parseStudent(studentId), Ids.parseCourse(courseId), null, null, 0, 0);
+    }
+
+    @Override
+    public void waitlisted(String studentId, String courseId, int priority) {
+        publish(Type.WAITLISTED, Ids.parseStudent(studentId), Ids.parseCourse(courseId), null, null, 0, priority);
+    }
+
+    @Override
+    public void waitlistLeft(String studentId, String courseId) {
+        publish(Type.WAITLIST_LEFT, Ids.parseStudent(studentId), Ids.parseCourse(courseId), null, null, 0, 0);
+    }
+
+    @Override public void batchStarted() {}
+    @Override public void batchFinished() {}
+}
@@ -0,0 +1,198 @@
+package persistence;
+
+import service.ChangeEvent;
+import service.ChangeFeed;
+import util.Metrics;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Appends the events of a {@link ChangeFeed} to a file that downstream
+ * consumers tail.
+ *
+ * The file is CSV, quoted as {@link CsvImporter} reads it, one event per
+ * record, with a header row when the file is created:
+ * <pre>
+ *   sequence,time,type,studentId,courseId,name,email,capacity,priority
+ * </pre>
+ * (time is an ISO-8601 instant; fields that do not apply are empty). Records
+ * are only ever appended, so a byte offset into the file stays valid:
+ * consumers keep the offset {@link #read} returns and pass it back next time.
+ *
+ * The sink reads the feed through its own subscription on its own thread and
+ * flushes after each burst of events; it does not fsync, the journal is what
+ * makes changes durable. If it falls a whole ring behind, the events it
+ * missed show as a gap in the sequence numbers.
+ */
+public class ChangeFileSink implements Closeable {
+
+    private static final LongAdder WRITTEN = Metrics.counter("changefeed.file.written");
+    private static final LongAdder FAILURES = Metrics.counter("changefeed.file.failures");
+
+    private static final String[] COLUMNS = { "sequence", "time", "type", "studentId", "courseId",
+            "name", "email", "capacity", "priority" };
+    private static final int BURST = 1024;
+    private static final long IDLE_MILLIS = 50;
+
+    private final Path file;
+    private final ChangeFeed.Subscription subscription;
+    private final Writer out;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    /** Starts appending the feed's events to file, from the oldest event still in the feed. */
+    public ChangeFileSink(ChangeFeed feed, Path file) throws IOException {
+        this.file = file;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        boolean created = !Files.exists(file) || Files.size(file) == 0;
+        this.out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (created) {
+            StringBuilder header = new StringBuilder();
+            Exporter.csvRow(header, COLUMNS);
+            out.write(header.toString());
+            out.flush();
+        }
+        this.subscription = feed.subscribe(Long.MIN_VALUE);
+        this.writer = new Thread(this::writeEvents, "change-file-sink");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public Path getFile() { return file; }
+
+    /** False once closed or after a write failed. */
+    public boolean isRunning() { return writer.isAlive(); }
+
+    /** Events published to the feed but not written yet. */
+    public long getLag() { return subscription.getLag(); }
+
+    private void writeEvents() {
+        StringBuilder line = new StringBuilder(256);
+        Object[] fields = new Object[COLUMNS.length];
+        try {
+            while (true) {
+                ChangeEvent e = subscription.poll(IDLE_MILLIS, TimeUnit.MILLISECONDS);
+                if (e == null) {
+                    if (closed) break;
+                    continue;
+                }
+                int n = 0;
+                do {
+                    line.setLength(0);
+                    Exporter.csvRow(line, values(e, fields));
+                    out.write(line.toString());
+                    n++;
+                } while (n < BURST && (e = subscription.poll()) != null);
+                out.flush();
+                WRITTEN.add(n);
+            }
+        } catch (IOException e) {
+            FAILURES.increment();
+            System.err.println("Change file write failed, no more changes are written: " + e.getMessage());
+        } catch (InterruptedException e) {
+            // the thread closing the sink was interrupted
+        } finally {
+            subscription.close();
+        }
+    }
+
+    private static Object[] values(ChangeEvent e, Object[] fields) {
+        fields[0] = e.getSequence();
+        fields[1] = e.getTime();
+        fields[2] = e.getType();
+        fields[3] = orEmpty(e.getStudentId());
+        fields[4] = orEmpty(e.getCourseId());
+        fields[5] = orEmpty(e.getName());
+        fields[6] = orEmpty(e.getEmail());
+        fields[7] = e.getCapacity();
+        fields[8] = e.getPriority();
+        return fields;
+    }
+
+    private static String orEmpty(String s) {
+        return s == null ? "" : s;
+    }
+
+    /**
+     * Writes the events already published and stops. Call it once the
+     * manager makes no more changes, or later ones may not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            writer.interrupt();
+            Thread.currentThread().interrupt();
+        }
+        out.close();
+    }
+
+    /**
+     * Hands consumer every complete event of the file from byte offset on
+     * (0 = start of file) and returns the offset just after the last one, to
+     * pass to the next call. A record still being written is left for the
+     * next call.
+     */
+    public static long read(Path file, long offset, Consumer<? super ChangeEvent> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            InputStream in = new BufferedInputStream(Channels.newInputStream(channel.position(offset)), 1 << 16);
+            ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+            long position = offset;
+            int b;
+            while ((b = in.read()) != -1) {
+                record.write(b);
+                if (b != '\n') continue;
+                String text = record.toString(StandardCharsets.UTF_8);
+                String[] row = CsvImporter.parseLine(text.substring(0, text.length() - 1));
+                if (row == null) continue; // a quoted line break: the record goes on
+                position += record.size();
+                record.reset();
+                if (!row[0].equals(COLUMNS[0])) consumer.accept(parse(row, position));
+            }
+            return position;
+        }
+    }
+
+    /** The sequence number after the file's last event, 0 for a missing or empty file; reads the whole file. */
+    public static long nextSequence(Path file) throws IOException {
+        if (!Files.exists(file)) return 0;
+        long[] next = { 0 };
+        read(file, 0, e -> next[0] = e.getSequence() + 1);
+        return next[0];
+    }
+
+    private static ChangeEvent parse(String[] row, long end) throws IOException {
+        if (row.length != COLUMNS.length) throw new IOException("Bad change record ending at offset " + end);
+        try {
+            return new ChangeEvent(Long.parseLong(row[0]), Instant.parse(row[1]).toEpochMilli(),
+                    ChangeEvent.Type.valueOf(row[2]), orNull(row[3]), orNull(row[4]), orNull(row[5]), orNull(row[6]),
+                    Integer.parseInt(row[7]), Integer.parseInt(row[8]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IOException("Bad change record ending at offset " + end + ": " + e.getMessage());
+        }
+    }
+
+    private static String orNull(String s) {
+        return s.isEmpty() ? null : s;
+    }
+}
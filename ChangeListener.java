@@ -0,0 +1,42 @@
+package service;
+
+import domain.Course;
+import domain.Enrollment;
+import domain.Student;
+
+/**
+ * Receives every successful mutation of a RegistrationManager, in the order
+ * the mutations take effect. Callbacks run while the manager holds the lock
+ * that guards the change, so implementations must be quick and must not call
+ * back into the manager.
+ *
+ * Cascades are reported row by row: deleting a student or course first
+ * reports each waitlist entry it removes as waitlistLeft and each enrollment
+ * as unenrolled, and a promotion from a waitlist is reported as waitlistLeft
+ * followed by the resulting enrollment.
+ *
+ * The changes of an all-or-nothing batch are reported between batchStarted
+ * and batchFinished on the calling thread; batches of different courses may
+ * run concurrently on other threads.
+ */
+public interface ChangeListener {
+    void studentAdded(Student s);
+    void studentUpdated(Student s);
+    void courseAdded(Course c);
+    void courseUpdated(Course c);
+    void studentDeleted(String studentId);
+    void courseDeleted(String courseId);
+    void enrolled(Enrollment e);
+    void unenrolled(String studentId, String courseId);
+    void waitlisted(String studentId, String courseId, int priority);
+    void waitlistLeft(String studentId, String courseId);
+    void batchStarted();
+    void batchFinished();
+
+    /**
+     * Called on the thread that made changes once its operation has released
+     * all of the manager's locks. Unlike the other callbacks it may block,
+     * e.g. to hold back a producer that outruns a consumer.
+     */
+    default void locksReleased() {}
+}
@@ -1,51 +1,88 @@
 package domain;
 
+import util.IntLinkedSet;
+import util.SnapshotLog;
+
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
+import java.util.Set;
+
+public class Course extends SnapshotLog.Entry implements Serializable {
+    private static final long serialVersionUID = 3L;
 
-public class Course implements Serializable {
-    private static final long serialVersionUID = 1L;
+    private static final int[] NO_PREREQUISITES = new int[0];
 
-    private final String courseId;
+    private final int key;
     private String courseName;
     private int capacity; // 0 means unlimited
-    private List<String> enrolledStudentIds = new ArrayList<>();
+    private Timetable meetings = Timetable.NONE;     // null in saves made before meeting times
+    private int[] prerequisites = NO_PREREQUISITES;  // course keys; null in older saves
+    private final IntLinkedSet enrolledStudents = new IntLinkedSet();
+    private transient Set<String> enrolledStudentIds;
 
-    public Course(String courseId, String courseName, int capacity) {
-        this.courseId = courseId;
+    public Course(int key, String courseName, int capacity) {
+        this.key = key;
         this.courseName = courseName;
         this.capacity = Math.max(0, capacity);
     }
 
-    public String getCourseId() { return courseId; }
+    public int getKey() { return key; }
+    public String getCourseId() { return Ids.course(key); }
     public String getCourseName() { return courseName; }
     public int getCapacity() { return capacity; }
-    public List<String> getEnrolledStudentIds() { return enrolledStudentIds; }
+    public Timetable getMeetings() { return meetings == null ? Timetable.NONE : meetings; }
+
+    /** Keys of the courses a student must hold before enrolling, directly required by this one. */
+    public int[] getPrerequisiteKeys() { return hasPrerequisites() ? prerequisites.clone() : NO_PREREQUISITES; }
+
+    public List<String> getPrerequisiteIds() {
+        List<String> ids = new ArrayList<>();
+        for (int key : getPrerequisiteKeys()) ids.add(Ids.course(key));
+        return ids;
+    }
+
+    public boolean hasPrerequisites() { return prerequisites != null && prerequisites.length > 0; }
+    public synchronized int getEnrolledCount() { return enrolledStudents.size(); }
+
+    /** Unmodifiable live view of the enrolled student ids, in enrollment order. */
+    public synchronized Set<String> getEnrolledStudentIds() {
+        if (enrolledStudentIds == null) {
+            enrolledStudentIds = new IdSetView(this, enrolledStudents, Ids::student, Ids::parseStudent);
+        }
+        return enrolledStudentIds;
+    }
+
+    public synchronized boolean hasStudent(int studentKey) { return enrolledStudents.contains(studentKey); }
 
     public void setCourseName(String courseName) { this.courseName = courseName; }
     public void setCapacity(int capacity) { this.capacity = Math.max(0, capacity); }
 
-    public boolean hasSpace() {
-        return capacity == 0 || enrolledStudentIds.size() < capacity;
+    // For managed courses use RegistrationManager.setCourseMeetings/setCoursePrerequisites,
+    // which keep enrollment checks consistent
+    public void setMeetings(Timetable meetings) { this.meetings = meetings == null ? Timetable.NONE : meetings; }
+    public void setPrerequisiteKeys(int[] keys) { this.prerequisites = keys.length == 0 ? NO_PREREQUISITES : keys.clone(); }
+
+    public synchronized boolean hasSpace() {
+        return capacity == 0 || enrolledStudents.size() < capacity;
     }
 
-    public void addStudent(String studentId) {
-        if (!enrolledStudentIds.contains(studentId)) {
-            enrolledStudentIds.add(studentId);
-        }
+    public synchronized void addStudent(int studentKey) {
+        enrolledStudents.add(studentKey);
     }
 
-    public void removeStudent(String studentId) {
-        enrolledStudentIds.remove(studentId);
+    public synchronized void removeStudent(int studentKey) {
+        enrolledStudents.remove(studentKey);
     }
 
     @Override
-    public String toString() {
+    public synchronized String toString() {
         String cap = capacity == 0 ? "unlimited" : String.valueOf(capacity);
-        return String.format("%s | %s | capacity: %s | enrolled: %d",
-                courseId, courseName, cap, enrolledStudentIds.size());
+        String line = String.format("%s | %s | capacity: %s | enrolled: %d",
+                getCourseId(), courseName, cap, enrolledStudents.size());
+        if (!getMeetings().isEmpty()) line += " | meets: " + meetings;
+        if (hasPrerequisites()) line += " | requires: " + String.join(", ", getPrerequisiteIds());
+        return line;
     }
 
     @Override
@@ -53,12 +90,11 @@ public class Course implements Serializable {
         if (this == o) return true;
         if (!(o instanceof Course)) return false;
         Course c = (Course) o;
-        return Objects.equals(courseId, c.courseId);
+        return key == c.key;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(courseId);
+        return Integer.hashCode(key);
     }
 }
-
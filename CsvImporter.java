@@ -0,0 +1,271 @@
+package persistence;
+
+import domain.Student;
+import service.RegistrationService;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Streaming bulk import of students, courses and enrollments from CSV.
+ *
+ * Files are read line by line; valid rows are buffered and applied to the
+ * manager in batches, each batch under a single lock. Expected columns:
+ * <pre>
+ *   students:    name,email
+ *   courses:     name,capacity      (empty or 0 = unlimited)
+ *   enrollments: studentId,courseId
+ * </pre>
+ * A first row naming these columns is a header. It may name more columns,
+ * in any order, as the files written by {@link Exporter} do; rows are then
+ * read by the header and the other columns are ignored. Fields may be quoted
+ * with double quotes ("" inside quotes is a literal quote), and a quoted field
+ * may span lines. Failures are reported at a record's first line.
+ *
+ * Rows are held in memory one batch at a time. A student whose email (in
+ * any case) belongs to an existing student or to an earlier row is rejected
+ * as a duplicate; the emails of existing students, including those imported
+ * so far, are kept for this while the import runs. An enrollment row that
+ * repeats a row of its batch is rejected as a duplicate, and one that
+ * repeats an existing enrollment (earlier batches included) is rejected by
+ * the manager as the batch is applied.
+ */
+public class CsvImporter {
+
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+
+    private final RegistrationService manager;
+    private final int batchSize;
+
+    public CsvImporter(RegistrationService manager) {
+        this(manager, DEFAULT_BATCH_SIZE);
+    }
+
+    public CsvImporter(RegistrationService manager, int batchSize) {
+        this.manager = manager;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public ImportReport importStudents(Path file) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importStudents(in);
+        }
+    }
+
+    public ImportReport importCourses(Path file) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importCourses(in);
+        }
+    }
+
+    public ImportReport importEnrollments(Path file) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importEnrollments(in);
+        }
+    }
+
+    public ImportReport importStudents(Reader in) throws IOException {
+        Set<String> emails = new HashSet<>();
+        for (Student s : manager.listings().students()) emails.add(s.getEmail().toLowerCase(Locale.ROOT));
+        List<String> names = new ArrayList<>(), batchEmails = new ArrayList<>();
+        return run("students", in, new String[] { "name", "email" }, new RowSink() {
+            @Override
+            public String accept(String[] row) {
+                String name = row[0].trim(), email = row[1].trim();
+                if (name.isEmpty()) return "Name cannot be empty.";
+                if (!Student.isValidEmail(email)) return "Invalid email format.";
+                if (!emails.add(email.toLowerCase(Locale.ROOT))) return "Duplicate email " + email + ".";
+                names.add(name);
+                batchEmails.add(email);
+                return null;
+            }
+
+            @Override
+            public List<String> flush() {
+                manager.addStudents(names, batchEmails);
+                names.clear();
+                batchEmails.clear();
+                return null;
+            }
+        });
+    }
+
+    public ImportReport importCourses(Reader in) throws IOException {
+        List<String> names = new ArrayList<>();
+        List<Integer> capacities = new ArrayList<>();
+        return run("courses", in, new String[] { "name", "capacity" }, new RowSink() {
+            @Override
+            public String accept(String[] row) {
+                String name = row[0].trim(), cap = row[1].trim();
+                if (name.isEmpty()) return "Name cannot be empty.";
+                int capacity;
+                try {
+                    capacity = cap.isEmpty() ? 0 : Integer.parseInt(cap);
+                } catch (NumberFormatException e) {
+                    return "Invalid capacity " + cap + ".";
+                }
+                if (capacity < 0) return "Capacity cannot be negative.";
+                names.add(name);
+                capacities.add(capacity);
+                return null;
+            }
+
+            @Override
+            public List<String> flush() {
+                manager.addCourses(names, capacities);
+                names.clear();
+                capacities.clear();
+                return null;
+            }
+        });
+    }
+
+    public ImportReport importEnrollments(Reader in) throws IOException {
+        Set<String> batchRows = new HashSet<>();
+        List<String> studentIds = new ArrayList<>(), courseIds = new ArrayList<>();
+        return run("enrollments", in, new String[] { "studentId", "courseId" }, new RowSink() {
+            @Override
+            public String accept(String[] row) {
+                String sid = row[0].trim(), cid = row[1].trim();
+                if (!batchRows.add(sid + '\u0000' + cid)) return "Duplicate row.";
+                studentIds.add(sid);
+                courseIds.add(cid);
+                return null;
+            }
+
+            @Override
+            public List<String> flush() {
+                List<String> results = manager.enrollBatch(studentIds, courseIds);
+                batchRows.clear();
+                studentIds.clear();
+                courseIds.clear();
+                return results;
+            }
+        });
+    }
+
+    private interface RowSink {
+        /** Validates and buffers a row; returns an error message or null. */
+        String accept(String[] row);
+
+        /**
+         * Applies the buffered rows. Returns one result per row in the
+         * RegistrationManager.enroll protocol, or null if every row succeeded.
+         */
+        List<String> flush();
+    }
+
+    private ImportReport run(String kind, Reader reader, String[] header, RowSink sink) throws IOException {
+        ImportReport report = new ImportReport(kind);
+        BufferedReader in = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        long start = System.nanoTime();
+        long[] batchLines = new long[batchSize];
+        int buffered = 0;
+        long lineNo = 0;
+        int[] columns = null;
+        int width = header.length;
+        String line;
+        while ((line = in.readLine()) != null) {
+            long recordLine = ++lineNo;
+            if (line.trim().isEmpty()) continue;
+            String[] row = parseLine(line);
+            while (row == null) { // a quoted line break: the record goes on
+                String next = in.readLine();
+                if (next == null) break;
+                lineNo++;
+                line = line + '\n' + next;
+                row = parseLine(line);
+            }
+            if (recordLine == 1 && row != null && (columns = headerColumns(row, header)) != null) {
+                width = row.length;
+                continue;
+            }
+            report.rowRead();
+            String error;
+            if (row == null) error = "Malformed CSV (unbalanced quotes).";
+            else if (row.length != width) error = "Expected " + width + " columns, found " + row.length + ".";
+            else error = sink.accept(columns == null ? row : pick(row, columns));
+            if (error != null) {
+                report.failed(recordLine, error);
+                continue;
+            }
+            batchLines[buffered++] = recordLine;
+            if (buffered == batchSize) {
+                apply(sink, batchLines, buffered, report);
+                buffered = 0;
+            }
+        }
+        if (buffered > 0) apply(sink, batchLines, buffered, report);
+        report.finish(System.nanoTime() - start);
+        return report;
+    }
+
+    private static void apply(RowSink sink, long[] lines, int count, ImportReport report) {
+        List<String> results = sink.flush();
+        for (int i = 0; i < count; i++) {
+            String result = results == null ? null : results.get(i);
+            if (result == null || result.startsWith("OK:")) report.imported();
+            else report.failed(lines[i], result);
+        }
+    }
+
+    /** Where each expected column sits in row, or null if row is not a header naming them all. */
+    private static int[] headerColumns(String[] row, String[] header) {
+        int[] columns = new int[header.length];
+        for (int i = 0; i < header.length; i++) {
+            columns[i] = -1;
+            for (int j = 0; j < row.length && columns[i] < 0; j++) {
+                if (row[j].trim().equalsIgnoreCase(header[i])) columns[i] = j;
+            }
+            if (columns[i] < 0) return null;
+        }
+        return columns;
+    }
+
+    private static String[] pick(String[] row, int[] columns) {
+        String[] fields = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) fields[i] = row[columns[i]];
+        return fields;
+    }
+
+    /** Splits one CSV record; returns null if a quoted field is not closed. */
+    static String[] parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(ch);
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(ch);
+            }
+        }
+        if (quoted) return null;
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+}
@@ -1,14 +1,46 @@
 package persistence;
 
 import service.RegistrationManager;
+import util.Histogram;
+import util.Metrics;
+import util.OpTimer;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.LongAdder;
 
 public class DataStore {
 
+    /** On-disk snapshot format. */
+    public enum Format {
+        /**
+         * Java serialization of the whole object graph (legacy .ser files);
+         * files of the first version, with string-keyed entities, are converted on load.
+         */
+        SERIALIZED,
+        /** Compact versioned binary format, see {@link BinarySnapshot}. */
+        BINARY
+    }
+
+    private static final OpTimer T_SAVE = Metrics.timer("datastore.save");
+    private static final OpTimer T_LOAD = Metrics.timer("datastore.load");
+    private static final Histogram SAVE_BYTES = Metrics.histogram("datastore.save.bytes", "bytes");
+    private static final Histogram LOAD_BYTES = Metrics.histogram("datastore.load.bytes", "bytes");
+    private static final LongAdder SAVE_FAILURES = Metrics.counter("datastore.save.failures");
+    private static final LongAdder LOAD_FAILURES = Metrics.counter("datastore.load.failures");
+
     private final File file;
+    private final Format format;
 
     public DataStore(String filePath) {
+        this(filePath, Format.SERIALIZED);
+    }
+
+    public DataStore(String filePath, Format format) {
+        this.format = format;
         file = new File(filePath);
         File parent = file.getParentFile();
         if (parent != null && !parent.exists()) {
@@ -16,30 +48,93 @@ public class DataStore {
         }
     }
 
+    public File getFile() { return file; }
+    public Format getFormat() { return format; }
+
     public boolean save(RegistrationManager manager) {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(file))) {
-            oos.writeObject(manager);
+        long t0 = T_SAVE.start();
+        try {
+            byte[] snapshot = serialize(manager);
+            writeAtomically(snapshot);
+            SAVE_BYTES.record(snapshot.length);
             return true;
         } catch (IOException e) {
+            SAVE_FAILURES.increment();
             System.err.println("Save failed: " + e.getMessage());
             return false;
+        } finally {
+            T_SAVE.stop(t0);
+        }
+    }
+
+    /** Serializes the manager in memory; the manager is locked only while this runs. */
+    public byte[] serialize(RegistrationManager manager) throws IOException {
+        if (format == Format.BINARY) {
+            return BinarySnapshot.encode(manager).array();
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(manager);
         }
+        return bytes.toByteArray();
     }
 
+    /**
+     * Writes a complete snapshot next to the data file, forces it to disk and
+     * renames it over the old one, so a crash leaves either the old or the new
+     * snapshot but never a torn file.
+     */
+    public void writeAtomically(byte[] snapshot) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        BinarySnapshot.write(ByteBuffer.wrap(snapshot), tmp.toPath());
+        try {
+            Files.move(tmp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * The saved manager, or null if the file does not exist or cannot be read
+     * (the reason is printed); {@code getFile().exists()} tells the two apart.
+     */
     public RegistrationManager load() {
         if (!file.exists()) return null;
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
+        long t0 = T_LOAD.start();
+        RegistrationManager loaded = read();
+        T_LOAD.stop(t0);
+        if (loaded != null) LOAD_BYTES.record(file.length());
+        else LOAD_FAILURES.increment();
+        return loaded;
+    }
+
+    private RegistrationManager read() {
+        if (format == Format.BINARY) {
+            try {
+                return BinarySnapshot.read(file.toPath());
+            } catch (IOException e) {
+                System.err.println("Load failed: " + e.getMessage());
+                return null;
+            }
+        }
+        try (ObjectInputStream ois = LegacyDataFile.input(new BufferedInputStream(new FileInputStream(file)))) {
             Object obj = ois.readObject();
             if (obj instanceof RegistrationManager) {
                 return (RegistrationManager) obj;
+            } else if (obj instanceof LegacyDataFile.Manager) {
+                return LegacyDataFile.convert((LegacyDataFile.Manager) obj);
             } else {
                 System.err.println("Unexpected file contents.");
                 return null;
             }
-        } catch (IOException | ClassNotFoundException e) {
+        } catch (ObjectStreamException | ClassNotFoundException | ClassCastException e) {
+            // written by another version whose classes do not match these
+            System.err.println("Load failed: " + file + " is not a data file this version can read (" + e + ")");
+            return null;
+        } catch (IOException e) {
             System.err.println("Load failed: " + e.getMessage());
             return null;
         }
     }
 }
-
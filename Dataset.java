@@ -0,0 +1,57 @@
+package bench;
+
+import service.RegistrationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Reproducible benchmark dataset: a manager holding a given number of
+ * enrollments, with about 5 courses per student and 100 students per course.
+ */
+final class Dataset {
+
+    private static final String[] FIRST = {
+            "Ada", "Alan", "Grace", "Linus", "Barbara", "Edsger", "Donald", "Margaret", "Ken", "Frances",
+            "Niklaus", "Radia", "Tony", "Shafi", "Leslie", "Sophie", "John", "Hedy", "Dennis", "Katherine" };
+    private static final String[] LAST = {
+            "Lovelace", "Turing", "Hopper", "Torvalds", "Liskov", "Dijkstra", "Knuth", "Hamilton", "Thompson",
+            "Allen", "Wirth", "Perlman", "Hoare", "Goldwasser", "Lamport", "Wilson", "McCarthy", "Lamarr",
+            "Ritchie", "Johnson" };
+
+    final RegistrationManager manager = new RegistrationManager();
+    final List<String> studentIds;
+    final List<String> courseIds;
+    final int enrollments;
+
+    Dataset(int enrollmentCount, long seed) {
+        int studentCount = Math.max(10, enrollmentCount / 5);
+        int courseCount = Math.max(10, enrollmentCount / 100);
+        Random rnd = new Random(seed);
+        studentIds = new ArrayList<>(studentCount);
+        courseIds = new ArrayList<>(courseCount);
+        for (int i = 0; i < studentCount; i++) {
+            studentIds.add(manager.addStudent(name(rnd), "student" + i + "@uni.edu").getStudentId());
+        }
+        for (int i = 0; i < courseCount; i++) {
+            courseIds.add(manager.addCourse("Course " + i, 0).getCourseId());
+        }
+        int made = 0;
+        while (made < enrollmentCount) {
+            if (manager.enroll(randomStudent(rnd), randomCourse(rnd)).startsWith("OK:")) made++;
+        }
+        enrollments = made;
+    }
+
+    static String name(Random rnd) {
+        return FIRST[rnd.nextInt(FIRST.length)] + " " + LAST[rnd.nextInt(LAST.length)];
+    }
+
+    static String randomLastName(Random rnd) {
+        return LAST[rnd.nextInt(LAST.length)];
+    }
+
+    String randomStudent(Random rnd) { return studentIds.get(rnd.nextInt(studentIds.size())); }
+    String randomCourse(Random rnd) { return courseIds.get(rnd.nextInt(courseIds.size())); }
+}
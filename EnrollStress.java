@@ -0,0 +1,139 @@
+package bench;
+
+import domain.Course;
+import domain.Student;
+import service.RegistrationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Multi-threaded enroll/unenroll stress run against one RegistrationManager.
+ * Verifies that no course is over-enrolled, that course rosters, student
+ * schedules and the enrollment list agree, and that a course with free seats
+ * has nobody waiting, then prints throughput per thread count. Exits with status 1 on any violation.
+ *
+ * Every thread count first runs once untimed to warm up the JIT, then runs
+ * repeats times; the median is reported. The speedup over one thread is
+ * printed only up to availableProcessors() threads, since more threads than
+ * cores measure time slicing rather than scaling.
+ *
+ * Usage: java -cp out bench.EnrollStress [courses] [students] [opsPerThread] [repeats]
+ */
+public class EnrollStress {
+
+    public static void main(String[] args) throws InterruptedException {
+        int courseCount = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int studentCount = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        int opsPerThread = args.length > 2 ? Integer.parseInt(args[2]) : 200000;
+        int repeats = args.length > 3 ? Math.max(1, Integer.parseInt(args[3])) : 5;
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; threads <= Math.max(2, maxThreads); threads *= 2) threadCounts.add(threads);
+        for (int threads : threadCounts) run(threads, courseCount, studentCount, opsPerThread);
+
+        System.out.printf("%d cores, median of %d runs after a warm-up pass%n", maxThreads, repeats);
+        double base = 0;
+        for (int threads : threadCounts) {
+            double[] results = new double[repeats];
+            for (int r = 0; r < repeats; r++) results[r] = run(threads, courseCount, studentCount, opsPerThread);
+            Arrays.sort(results);
+            double opsPerSec = repeats % 2 == 1 ? results[repeats / 2]
+                    : (results[repeats / 2 - 1] + results[repeats / 2]) / 2;
+            if (threads == 1) base = opsPerSec;
+            if (threads <= maxThreads) {
+                System.out.printf("threads=%-3d %,12.0f ops/s  speedup x%.2f%n", threads, opsPerSec, opsPerSec / base);
+            } else {
+                System.out.printf("threads=%-3d %,12.0f ops/s  (more threads than cores, no speedup)%n", threads, opsPerSec);
+            }
+        }
+        System.out.println("No over-enrollment detected.");
+    }
+
+    private static double run(int threads, int courseCount, int studentCount, int opsPerThread)
+            throws InterruptedException {
+        RegistrationManager manager = new RegistrationManager();
+        List<String> courseIds = new ArrayList<>();
+        List<String> studentIds = new ArrayList<>();
+        for (int i = 0; i < courseCount; i++) {
+            // mix of tight and unlimited capacities
+            courseIds.add(manager.addCourse("Course " + i, i % 10 == 0 ? 0 : 20 + i % 50).getCourseId());
+        }
+        for (int i = 0; i < studentCount; i++) {
+            studentIds.add(manager.addStudent("Student " + i, "s" + i + "@uni.edu").getStudentId());
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicLong ops = new AtomicLong();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                    for (int i = 0; i < opsPerThread; i++) {
+                        String sid = studentIds.get(rnd.nextInt(studentIds.size()));
+                        String cid = courseIds.get(rnd.nextInt(courseIds.size()));
+                        if (rnd.nextInt(4) == 0) manager.unenroll(sid, cid);
+                        else manager.enroll(sid, cid);
+                    }
+                    ops.addAndGet(opsPerThread);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            worker.start();
+        }
+        long t0 = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - t0;
+
+        verify(manager);
+        return ops.get() * 1e9 / elapsed;
+    }
+
+    private static void verify(RegistrationManager manager) {
+        int rosterTotal = 0;
+        for (Course c : manager.listCourses()) {
+            int enrolled = c.getEnrolledStudentIds().size();
+            if (c.getCapacity() > 0 && enrolled > c.getCapacity()) {
+                fail("over-enrolled " + c);
+            }
+            if (manager.getStudentsForCourse(c.getCourseId()).size() != enrolled) {
+                fail("roster index disagrees with course for " + c.getCourseId());
+            }
+            List<Student> waiting = manager.getWaitlist(c.getCourseId());
+            if (!waiting.isEmpty() && c.hasSpace()) {
+                fail("students waiting for free seats in " + c.getCourseId());
+            }
+            for (Student s : waiting) {
+                if (c.getEnrolledStudentIds().contains(s.getStudentId())) {
+                    fail(s.getStudentId() + " both enrolled and waiting in " + c.getCourseId());
+                }
+            }
+            rosterTotal += enrolled;
+        }
+        int scheduleTotal = 0;
+        for (Student s : manager.listStudents()) {
+            scheduleTotal += s.getEnrolledCourseIds().size();
+        }
+        int listed = manager.listEnrollments().size();
+        if (rosterTotal != listed || scheduleTotal != listed) {
+            fail("enrollment counts disagree: rosters=" + rosterTotal
+                    + " schedules=" + scheduleTotal + " enrollments=" + listed);
+        }
+    }
+
+    private static void fail(String message) {
+        System.err.println("FAILED: " + message);
+        System.exit(1);
+    }
+}
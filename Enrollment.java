@@ -1,32 +1,55 @@
 package domain;
 
+import util.SnapshotLog;
+
 import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+public class Enrollment extends SnapshotLog.Entry implements Serializable {
+    private static final long serialVersionUID = 2L;
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
 
-public class Enrollment implements Serializable {
-    private static final long serialVersionUID = 1L;
+    private final int key;
+    private final int studentKey;
+    private final int courseKey;
+    // local date-time encoded as nanoseconds since 1970-01-01T00:00 (no zone)
+    private final long timestampNanos;
+
+    public Enrollment(int key, int studentKey, int courseKey) {
+        this(key, studentKey, courseKey, LocalDateTime.now());
+    }
 
-    private final String enrollmentId;
-    private final String studentId;
-    private final String courseId;
-    private final LocalDateTime timestamp;
+    public Enrollment(int key, int studentKey, int courseKey, LocalDateTime timestamp) {
+        this(key, studentKey, courseKey,
+                timestamp.toEpochSecond(ZoneOffset.UTC) * NANOS_PER_SECOND + timestamp.getNano());
+    }
 
-    public Enrollment(String enrollmentId, String studentId, String courseId) {
-        this.enrollmentId = enrollmentId;
-        this.studentId = studentId;
-        this.courseId = courseId;
-        this.timestamp = LocalDateTime.now();
+    public Enrollment(int key, int studentKey, int courseKey, long timestampNanos) {
+        this.key = key;
+        this.studentKey = studentKey;
+        this.courseKey = courseKey;
+        this.timestampNanos = timestampNanos;
     }
 
-    public String getEnrollmentId() { return enrollmentId; }
-    public String getStudentId() { return studentId; }
-    public String getCourseId() { return courseId; }
-    public LocalDateTime getTimestamp() { return timestamp; }
+    public int getKey() { return key; }
+    public int getStudentKey() { return studentKey; }
+    public int getCourseKey() { return courseKey; }
+    public long getTimestampNanos() { return timestampNanos; }
+
+    public String getEnrollmentId() { return Ids.enrollment(key); }
+    public String getStudentId() { return Ids.student(studentKey); }
+    public String getCourseId() { return Ids.course(courseKey); }
+
+    public LocalDateTime getTimestamp() {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(timestampNanos, NANOS_PER_SECOND),
+                (int) Math.floorMod(timestampNanos, NANOS_PER_SECOND), ZoneOffset.UTC);
+    }
 
     @Override
     public String toString() {
         return String.format("%s | student:%s | course:%s | %s",
-                enrollmentId, studentId, courseId, timestamp.toString());
+                getEnrollmentId(), getStudentId(), getCourseId(), getTimestamp().toString());
     }
 }
-
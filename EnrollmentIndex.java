@@ -0,0 +1,129 @@
+package service;
+
+import domain.Enrollment;
+import util.IntLinkedMap;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Enrollment store with a per-student and a per-course map, keyed by the
+ * other side's int key. Every per-entity map keeps enrollment insertion order.
+ *
+ * The outer maps only change when a student or course is added or deleted,
+ * which RegistrationManager does under its exclusive lock. Each per-entity
+ * map is guarded by its own monitor, so enrollments into different courses
+ * (and for the same student) can be added concurrently.
+ */
+class EnrollmentIndex implements Serializable {
+    private static final long serialVersionUID = 2L;
+
+    private final IntLinkedMap<IntLinkedMap<Enrollment>> byStudent = new IntLinkedMap<>();
+    private final IntLinkedMap<IntLinkedMap<Enrollment>> byCourse = new IntLinkedMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    void addStudent(int studentKey) {
+        if (!byStudent.containsKey(studentKey)) byStudent.put(studentKey, new IntLinkedMap<>());
+    }
+
+    void addCourse(int courseKey) {
+        if (!byCourse.containsKey(courseKey)) byCourse.put(courseKey, new IntLinkedMap<>());
+    }
+
+    /** Registers new students at once; the keys are not registered yet. */
+    void addStudents(int[] studentKeys) {
+        byStudent.reserve(studentKeys.length);
+        for (int key : studentKeys) byStudent.put(key, new IntLinkedMap<>());
+    }
+
+    /** Registers new courses at once; the keys are not registered yet. */
+    void addCourses(int[] courseKeys) {
+        byCourse.reserve(courseKeys.length);
+        for (int key : courseKeys) byCourse.put(key, new IntLinkedMap<>());
+    }
+
+    /** Drops the (already emptied) map of a deleted student. */
+    void dropStudent(int studentKey) { byStudent.remove(studentKey); }
+
+    /** Drops the (already emptied) map of a deleted course. */
+    void dropCourse(int courseKey) { byCourse.remove(courseKey); }
+
+    boolean contains(int studentKey, int courseKey) {
+        IntLinkedMap<Enrollment> roster = byCourse.get(courseKey);
+        if (roster == null) return false;
+        synchronized (roster) {
+            return roster.containsKey(studentKey);
+        }
+    }
+
+    /** Adds an enrollment whose student and course are registered. */
+    void add(Enrollment e) {
+        IntLinkedMap<Enrollment> roster = byCourse.get(e.getCourseKey());
+        synchronized (roster) {
+            roster.put(e.getStudentKey(), e);
+        }
+        IntLinkedMap<Enrollment> schedule = byStudent.get(e.getStudentKey());
+        synchronized (schedule) {
+            schedule.put(e.getCourseKey(), e);
+        }
+        size.incrementAndGet();
+    }
+
+    Enrollment remove(int studentKey, int courseKey) {
+        IntLinkedMap<Enrollment> roster = byCourse.get(courseKey);
+        if (roster == null) return null;
+        Enrollment e;
+        synchronized (roster) {
+            e = roster.remove(studentKey);
+        }
+        if (e == null) return null;
+        IntLinkedMap<Enrollment> schedule = byStudent.get(studentKey);
+        if (schedule != null) {
+            synchronized (schedule) {
+                schedule.remove(courseKey);
+            }
+        }
+        size.decrementAndGet();
+        return e;
+    }
+
+    /** Snapshot of a student's enrollments, in enrollment order. */
+    List<Enrollment> forStudent(int studentKey) {
+        return copyOf(byStudent.get(studentKey));
+    }
+
+    /** Snapshot of a course's enrollments, in enrollment order. */
+    List<Enrollment> forCourse(int courseKey) {
+        return copyOf(byCourse.get(courseKey));
+    }
+
+    private static List<Enrollment> copyOf(IntLinkedMap<Enrollment> m) {
+        if (m == null) return new ArrayList<>();
+        synchronized (m) {
+            return m.values();
+        }
+    }
+
+    /**
+     * All enrollments in creation order: by timestamp, then by key for
+     * enrollments made at the same instant. Keys alone do not give that
+     * order, since allocation blocks and key partitions hand them out of
+     * sequence. Collected per student and sorted, since no global ordered
+     * structure is kept per enrollment.
+     */
+    List<Enrollment> all() {
+        List<Enrollment> out = new ArrayList<>(size.get());
+        for (IntLinkedMap<Enrollment> schedule : byStudent) {
+            synchronized (schedule) {
+                for (Enrollment e : schedule) out.add(e);
+            }
+        }
+        out.sort(Comparator.comparingLong(Enrollment::getTimestampNanos).thenComparingInt(Enrollment::getKey));
+        return out;
+    }
+
+    int size() { return size.get(); }
+}
@@ -0,0 +1,178 @@
+package persistence;
+
+import service.RegistrationService;
+import service.TermReport;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Function;
+
+/**
+ * Streaming export of students, courses, enrollments and term report lines
+ * to CSV or JSON.
+ *
+ * Rows are read from {@link RegistrationService#listings()} and written one
+ * at a time, so an export never copies a listing into memory and never holds
+ * up writers. Columns:
+ * <pre>
+ *   students:    studentId,name,email
+ *   courses:     courseId,name,capacity,enrolled,meetings,prerequisites
+ *                (capacity 0 = unlimited; prerequisites space-separated)
+ *   enrollments: enrollmentId,studentId,courseId,timestamp
+ *   report:      courseId,name,capacity,enrolled,waitlisted,fillRate,oversubscribed
+ * </pre>
+ * CSV has a header row and quotes fields as {@link CsvImporter} reads them,
+ * line breaks included. The importer takes the students, courses and
+ * enrollments files by their header and reads only its own columns: students
+ * and courses come back as new records with new ids (meetings and
+ * prerequisites are not imported), so exported enrollments import only where
+ * their student and course ids exist.
+ * JSON is an array with one object per line, named by the same columns.
+ * Every export returns the number of rows written.
+ */
+public class Exporter {
+
+    public enum Format { CSV, JSON }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final RegistrationService manager;
+
+    public Exporter(RegistrationService manager) {
+        this.manager = manager;
+    }
+
+    public long exportStudents(Path file, Format format) throws IOException {
+        try (Writer out = open(file)) {
+            return exportStudents(out, format);
+        }
+    }
+
+    public long exportCourses(Path file, Format format) throws IOException {
+        try (Writer out = open(file)) {
+            return exportCourses(out, format);
+        }
+    }
+
+    public long exportEnrollments(Path file, Format format) throws IOException {
+        try (Writer out = open(file)) {
+            return exportEnrollments(out, format);
+        }
+    }
+
+    public static long exportReport(TermReport report, Path file, Format format) throws IOException {
+        try (Writer out = open(file)) {
+            return exportReport(report, out, format);
+        }
+    }
+
+    public long exportStudents(Writer out, Format format) throws IOException {
+        return write(out, format, manager.listings().students(), new String[] { "studentId", "name", "email" },
+                s -> new Object[] { s.getStudentId(), s.getName(), s.getEmail() });
+    }
+
+    public long exportCourses(Writer out, Format format) throws IOException {
+        return write(out, format, manager.listings().courses(),
+                new String[] { "courseId", "name", "capacity", "enrolled", "meetings", "prerequisites" },
+                c -> new Object[] { c.getCourseId(), c.getCourseName(), c.getCapacity(), c.getEnrolledCount(),
+                        c.getMeetings().toString(), String.join(" ", c.getPrerequisiteIds()) });
+    }
+
+    public long exportEnrollments(Writer out, Format format) throws IOException {
+        return write(out, format, manager.listings().enrollments(),
+                new String[] { "enrollmentId", "studentId", "courseId", "timestamp" },
+                e -> new Object[] { e.getEnrollmentId(), e.getStudentId(), e.getCourseId(), e.getTimestamp().toString() });
+    }
+
+    /** One row per course of the report. */
+    public static long exportReport(TermReport report, Writer out, Format format) throws IOException {
+        return write(out, format, report.getCourses(),
+                new String[] { "courseId", "name", "capacity", "enrolled", "waitlisted", "fillRate", "oversubscribed" },
+                l -> new Object[] { l.getCourseId(), l.getCourseName(), l.getCapacity(), l.getEnrolled(),
+                        l.getWaitlisted(), Math.round(l.getFillRate() * 10_000) / 10_000.0, l.isOversubscribed() });
+    }
+
+    private static Writer open(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        return Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+    }
+
+    // Each row is built in one reused buffer and handed to the writer in one call
+    private static <T> long write(Writer writer, Format format, Iterable<T> rows, String[] columns,
+                                  Function<T, Object[]> values) throws IOException {
+        Writer out = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer, BUFFER_SIZE);
+        StringBuilder line = new StringBuilder(256);
+        long count = 0;
+        if (format == Format.CSV) {
+            csvRow(line, columns);
+            out.write(line.toString());
+        } else {
+            out.write('[');
+        }
+        for (T row : rows) {
+            line.setLength(0);
+            if (format == Format.CSV) {
+                csvRow(line, values.apply(row));
+            } else {
+                line.append(count == 0 ? "\n" : ",\n");
+                jsonObject(line, columns, values.apply(row));
+            }
+            out.write(line.toString());
+            count++;
+        }
+        if (format == Format.JSON) out.write("\n]\n");
+        out.flush();
+        return count;
+    }
+
+    // A null field is written empty, as the importer reads an empty field back
+    static void csvRow(StringBuilder line, Object[] fields) {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) line.append(',');
+            String field = fields[i] == null ? "" : fields[i].toString();
+            if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0 || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0) {
+                line.append('"').append(field.replace("\"", "\"\"")).append('"');
+            } else {
+                line.append(field);
+            }
+        }
+        line.append('\n');
+    }
+
+    private static void jsonObject(StringBuilder line, String[] names, Object[] values) {
+        line.append('{');
+        for (int i = 0; i < names.length; i++) {
+            if (i > 0) line.append(',');
+            jsonString(line, names[i]);
+            line.append(':');
+            Object v = values[i];
+            if (v == null) line.append("null");
+            else if (v instanceof Number || v instanceof Boolean) line.append(v);
+            else jsonString(line, v.toString());
+        }
+        line.append('}');
+    }
+
+    private static void jsonString(StringBuilder line, String s) {
+        line.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': line.append("\\\""); break;
+                case '\\': line.append("\\\\"); break;
+                case '\n': line.append("\\n"); break;
+                case '\r': line.append("\\r"); break;
+                case '\t': line.append("\\t"); break;
+                default:
+                    if (c < 0x20) line.append(String.format("\\u%04x", (int) c));
+                    else line.append(c);
+            }
+        }
+        line.append('"');
+    }
+}
@@ -0,0 +1,111 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative longs (latencies in nanoseconds, sizes
+ * in bytes) in the style of HdrHistogram: log-linear buckets that keep about
+ * 3% relative precision from 1 to 2^40, in a fixed 9 KB array.
+ *
+ * Values below 64 get a bucket each. Above that, every power of two is split
+ * into 32 equal buckets. Recording is one atomic increment plus one LongAdder
+ * add; reading walks the buckets and may interleave with concurrent records.
+ */
+public final class Histogram {
+
+    private static final int SUB_BITS = 6;
+    private static final int SUB_COUNT = 1 << SUB_BITS;       // 64 exact buckets
+    private static final int HALF = SUB_COUNT >> 1;           // 32 buckets per power of two above
+    private static final int MAX_EXPONENT = 40;               // larger values are clamped
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKETS = SUB_COUNT + (MAX_EXPONENT - SUB_BITS + 1) * HALF;
+
+    private final String unit;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+
+    /** unit labels the values, e.g. "ns" or "bytes". */
+    public Histogram(String unit) {
+        this.unit = unit;
+    }
+
+    public String getUnit() { return unit; }
+
+    static int bucketOf(long value) {
+        if (value < SUB_COUNT) return value <= 0 ? 0 : (int) value;
+        if (value > MAX_VALUE) value = MAX_VALUE;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BITS + 1;
+        return SUB_COUNT + (shift - 1) * HALF + (int) (value >>> shift) - HALF;
+    }
+
+    // Largest value that falls into the bucket
+    static long upperBound(int bucket) {
+        if (bucket < SUB_COUNT) return bucket;
+        int shift = (bucket - SUB_COUNT) / HALF + 1;
+        long low = (long) ((bucket - SUB_COUNT) % HALF + HALF) << shift;
+        return low + (1L << shift) - 1;
+    }
+
+    public void record(long value) {
+        counts.incrementAndGet(bucketOf(value));
+        sum.add(value);
+    }
+
+    /** Records the nanoseconds elapsed since a System.nanoTime() reading. */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /** Copies the current counts; percentiles are read from the copy. */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(unit, copy, total, sum.sum());
+    }
+
+    /** Point-in-time copy of a histogram. */
+    public static final class Snapshot {
+        private final String unit;
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+
+        private Snapshot(String unit, long[] counts, long count, long sum) {
+            this.unit = unit;
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+        }
+
+        public String getUnit() { return unit; }
+        public long getCount() { return count; }
+
+        public double getMean() { return count == 0 ? 0 : (double) sum / count; }
+
+        /** Upper bound of the bucket holding the p-th percentile (0-100); 0 if empty. */
+        public long getPercentile(double p) {
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(p / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return upperBound(i);
+            }
+            return upperBound(counts.length - 1);
+        }
+
+        /** Upper bound of the highest non-empty bucket; 0 if empty. */
+        public long getMax() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] != 0) return upperBound(i);
+            }
+            return 0;
+        }
+    }
+}
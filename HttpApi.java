@@ -0,0 +1,545 @@
+package app;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import domain.Course;
+import domain.Enrollment;
+import domain.Student;
+import domain.Timetable;
+import service.BatchResult;
+import service.CacheStats;
+import service.RegistrationService;
+import util.Histogram;
+import util.Listing;
+import util.Metrics;
+import util.OpTimer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JSON over HTTP front-end for a RegistrationService, plain or sharded, on
+ * the JDK's built-in server. Each request runs on its own virtual thread when
+ * the runtime has them (JDK 21+), otherwise on a bounded pool of platform
+ * threads; the manager is thread-safe either way.
+ *
+ * <pre>
+ *   GET    /health                               (includes view cache counters)
+ *   GET    /metrics[?format=text]                counters and latency histograms
+ *   GET    /students[?q=&amp;offset=&amp;limit=]      POST /students {name, email}
+ *   GET    /students/{id}                        DELETE /students/{id}
+ *   GET    /students/{id}/courses
+ *   GET    /courses[?offset=&amp;limit=]            POST /courses {name, capacity[, meetings, prerequisites[]]}
+ *   GET    /courses/{id}                         DELETE /courses/{id}
+ *   GET    /courses/{id}/students                GET /courses/{id}/waitlist
+ *   PUT    /courses/{id}/capacity {capacity}
+ *   PUT    /courses/{id}/meetings {meetings}     e.g. "MON 09:00-10:30; WED 09:00-10:30", "" for none
+ *   PUT    /courses/{id}/prerequisites {prerequisites[]}
+ *   GET    /enrollments[?offset=&amp;limit=]
+ *   POST   /enrollments {studentId, courseId[, priority]}
+ *   DELETE /enrollments?studentId=&amp;courseId=
+ *   POST   /enrollments/batch   {courseId, studentIds[]} or {studentId, courseIds[]}
+ *   DELETE /enrollments/batch   same body; unenrolls all or none
+ *   GET    /waitlist?studentId=&amp;courseId=      DELETE /waitlist?studentId=&amp;courseId=
+ * </pre>
+ * Errors are answered as {"error": message} with status 400, 404, 405, 409 or
+ * 413 (request body over MAX_BODY_BYTES).
+ */
+public final class HttpApi {
+
+    private static final int POOL_THREADS_PER_CPU = 16;
+    // ample for a batch of some 50,000 ids; the body is buffered whole before parsing
+    public static final int MAX_BODY_BYTES = 1 << 20;
+    private static final LongAdder INTERNAL_ERRORS = Metrics.counter("http.errors.internal");
+
+    static {
+        // Responses go out as headers then body; without TCP_NODELAY each one waits
+        // ~40 ms for a delayed ACK. Read once, when the JDK server is first used.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final RegistrationService manager;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    public HttpApi(RegistrationService manager, InetSocketAddress address) throws IOException {
+        this.manager = manager;
+        this.server = HttpServer.create(address, 0);
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual : newPlatformExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    public void start() { server.start(); }
+
+    public int getPort() { return server.getAddress().getPort(); }
+
+    public boolean usesVirtualThreads() { return virtualThreads; }
+
+    /** Stops accepting requests and waits up to the given time for running ones. */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor exists from JDK 21 (preview before);
+    // looked up reflectively so the code still builds and runs on JDK 17.
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newPlatformExecutor() {
+        int threads = Runtime.getRuntime().availableProcessors() * POOL_THREADS_PER_CPU;
+        AtomicInteger n = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "http-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Routing
+
+    private static final class Response {
+        final int status;
+        final String body;
+        final String contentType;
+
+        Response(int status, String body) {
+            this(status, body, "application/json");
+        }
+
+        Response(int status, String body, String contentType) {
+            this.status = status;
+            this.body = body;
+            this.contentType = contentType;
+        }
+    }
+
+    private static final class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        Response r;
+        try {
+            String method = ex.getRequestMethod();
+            List<String> path = new ArrayList<>();
+            for (String part : ex.getRequestURI().getPath().split("/")) {
+                if (!part.isEmpty()) path.add(part);
+            }
+            Map<String, String> query = parseQuery(ex.getRequestURI().getRawQuery());
+            r = route(method, path, query, ex);
+        } catch (HttpError e) {
+            r = error(e.status, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            r = error(400, e.getMessage());
+        } catch (RuntimeException e) {
+            // details stay in the server log; clients learn nothing about the internals
+            INTERNAL_ERRORS.increment();
+            System.err.println("HTTP " + ex.getRequestMethod() + " " + ex.getRequestURI().getPath() + " failed:");
+            e.printStackTrace();
+            r = error(500, "Internal server error.");
+        }
+        byte[] body = r.body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", r.contentType + "; charset=utf-8");
+        ex.sendResponseHeaders(r.status, body.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private Response route(String method, List<String> path, Map<String, String> query, HttpExchange ex)
+            throws IOException {
+        String root = path.isEmpty() ? "" : path.get(0);
+        int depth = path.size();
+        switch (root) {
+            case "health":
+                if (depth != 1) throw notFound("No such resource.");
+                requireMethod(method, "GET");
+                CacheStats cache = manager.getViewCacheStats();
+                return ok(new Json.Writer().beginObject().field("status", "ok")
+                        .field("virtualThreads", virtualThreads)
+                        .name("viewCache").beginObject().field("hits", cache.getHits())
+                        .field("misses", cache.getMisses()).field("evictions", cache.getEvictions())
+                        .field("size", cache.getSize()).field("capacity", cache.getCapacity()).endObject()
+                        .endObject());
+            case "metrics":
+                if (depth != 1) throw notFound("No such resource.");
+                requireMethod(method, "GET");
+                if ("text".equals(query.get("format"))) return new Response(200, Metrics.dump(), "text/plain");
+                return new Response(200, metricsJson(manager));
+            case "students":
+                if (depth == 1 && method.equals("GET")) return listStudents(query);
+                if (depth == 1 && method.equals("POST")) return addStudent(body(ex));
+                if (depth == 2 && method.equals("GET")) return ok(student(new Json.Writer(), findStudent(path.get(1)), true));
+                if (depth == 2 && method.equals("DELETE")) {
+                    if (!manager.deleteStudent(path.get(1))) throw notFound("Student not found.");
+                    return ok(new Json.Writer().beginObject().field("deleted", path.get(1)).endObject());
+                }
+                if (depth == 3 && path.get(2).equals("courses") && method.equals("GET")) {
+                    findStudent(path.get(1));
+                    return ok(courses(manager.getCoursesForStudent(path.get(1)), query));
+                }
+                break;
+            case "courses":
+                if (depth == 1 && method.equals("GET")) {
+                    return ok(courses(page(manager.listings().courses(), query), new HashMap<>()));
+                }
+                if (depth == 1 && method.equals("POST")) return addCourse(body(ex));
+                if (depth == 2 && method.equals("GET")) return ok(course(new Json.Writer(), findCourse(path.get(1))));
+                if (depth == 2 && method.equals("DELETE")) {
+                    if (!manager.deleteCourse(path.get(1))) throw notFound("Course not found.");
+                    return ok(new Json.Writer().beginObject().field("deleted", path.get(1)).endObject());
+                }
+                if (depth == 3 && path.get(2).equals("students") && method.equals("GET")) {
+                    findCourse(path.get(1));
+                    return ok(students(manager.getStudentsForCourse(path.get(1)), query));
+                }
+                if (depth == 3 && path.get(2).equals("waitlist") && method.equals("GET")) {
+                    findCourse(path.get(1));
+                    return ok(students(manager.getWaitlist(path.get(1)), query));
+                }
+                if (depth == 3 && path.get(2).equals("capacity") && method.equals("PUT")) {
+                    int capacity = intField(body(ex), "capacity", -1);
+                    if (capacity < 0) throw new IllegalArgumentException("Capacity cannot be negative.");
+                    if (!manager.setCourseCapacity(path.get(1), capacity)) throw notFound("Course not found.");
+                    return ok(course(new Json.Writer(), findCourse(path.get(1))));
+                }
+                if (depth == 3 && path.get(2).equals("meetings") && method.equals("PUT")) {
+                    Timetable meetings = Timetable.parse(stringField(body(ex), "meetings"));
+                    if (!manager.setCourseMeetings(path.get(1), meetings)) throw notFound("Course not found.");
+                    return ok(course(new Json.Writer(), findCourse(path.get(1))));
+                }
+                if (depth == 3 && path.get(2).equals("prerequisites") && method.equals("PUT")) {
+                    List<String> prerequisites = stringList(body(ex), "prerequisites");
+                    if (!manager.setCoursePrerequisites(path.get(1), prerequisites)) throw notFound("Course not found.");
+                    return ok(course(new Json.Writer(), findCourse(path.get(1))));
+                }
+                break;
+            case "enrollments":
+                if (depth == 1 && method.equals("GET")) return listEnrollments(query);
+                if (depth == 1 && method.equals("POST")) return enroll(body(ex));
+                if (depth == 1 && method.equals("DELETE")) {
+                    if (!manager.unenroll(param(query, "studentId"), param(query, "courseId"))) {
+                        throw notFound("No such enrollment.");
+                    }
+                    return ok(new Json.Writer().beginObject().field("status", "UNENROLLED").endObject());
+                }
+                if (depth == 2 && path.get(1).equals("batch") && method.equals("POST")) return batch(body(ex), true);
+                if (depth == 2 && path.get(1).equals("batch") && method.equals("DELETE")) return batch(body(ex), false);
+                break;
+            case "waitlist":
+                if (depth == 1 && method.equals("GET")) {
+                    int position = manager.getWaitlistPosition(param(query, "studentId"), param(query, "courseId"));
+                    return ok(new Json.Writer().beginObject().field("position", position).endObject());
+                }
+                if (depth == 1 && method.equals("DELETE")) {
+                    if (!manager.leaveWaitlist(param(query, "studentId"), param(query, "courseId"))) {
+                        throw notFound("Student is not waiting for this course.");
+                    }
+                    return ok(new Json.Writer().beginObject().field("status", "LEFT").endObject());
+                }
+                break;
+            default:
+                throw notFound("No such resource.");
+        }
+        if (!isRouted(path)) throw notFound("No such resource.");
+        throw new HttpError(405, "Method " + method + " not allowed here.");
+    }
+
+    // Whether route answers some method on this path under students, courses, enrollments or waitlist
+    private static boolean isRouted(List<String> path) {
+        String root = path.get(0);
+        switch (path.size()) {
+            case 1:
+                return true;
+            case 2:
+                return root.equals("students") || root.equals("courses")
+                        || root.equals("enrollments") && path.get(1).equals("batch");
+            case 3:
+                String sub = path.get(2);
+                if (root.equals("students")) return sub.equals("courses");
+                return root.equals("courses") && (sub.equals("students") || sub.equals("waitlist")
+                        || sub.equals("capacity") || sub.equals("meetings") || sub.equals("prerequisites"));
+            default:
+                return false;
+        }
+    }
+
+    // Endpoints
+
+    private Response listStudents(Map<String, String> query) {
+        String q = query.get("q");
+        if (q == null) return ok(students(page(manager.listings().students(), query), new HashMap<>()));
+        int offset = intParam(query, "offset", 0), limit = intParam(query, "limit", Integer.MAX_VALUE);
+        return ok(students(manager.searchStudentsByName(q, offset, limit), new HashMap<>()));
+    }
+
+    private Response addStudent(Map<String, Object> body) {
+        String name = stringField(body, "name").trim();
+        String email = stringField(body, "email").trim();
+        if (name.isEmpty()) throw new IllegalArgumentException("Name cannot be empty.");
+        if (!Student.isValidEmail(email)) throw new IllegalArgumentException("Invalid email format.");
+        return new Response(201, student(new Json.Writer(), manager.addStudent(name, email), false).toString());
+    }
+
+    private Response addCourse(Map<String, Object> body) {
+        String name = stringField(body, "name").trim();
+        int capacity = intField(body, "capacity", 0);
+        if (name.isEmpty()) throw new IllegalArgumentException("Name cannot be empty.");
+        if (capacity < 0) throw new IllegalArgumentException("Capacity cannot be negative.");
+        Timetable meetings = body.containsKey("meetings") ? Timetable.parse(stringField(body, "meetings")) : Timetable.NONE;
+        List<String> prerequisites = body.containsKey("prerequisites") ? stringList(body, "prerequisites") : List.of();
+        return new Response(201, course(new Json.Writer(), manager.addCourse(name, capacity, meetings, prerequisites)).toString());
+    }
+
+    private Response enroll(Map<String, Object> body) {
+        String result = manager.enroll(stringField(body, "studentId"), stringField(body, "courseId"),
+                intField(body, "priority", 0));
+        if (result.startsWith("OK:")) {
+            return new Response(201, new Json.Writer().beginObject().field("status", "ENROLLED")
+                    .field("enrollmentId", result.substring(3)).endObject().toString());
+        }
+        if (result.startsWith("WAITLISTED:")) {
+            return new Response(202, new Json.Writer().beginObject().field("status", "WAITLISTED")
+                    .field("position", Integer.parseInt(result.substring(11))).endObject().toString());
+        }
+        if (result.endsWith("not found.")) throw notFound(result);
+        throw new HttpError(409, result);
+    }
+
+    private Response batch(Map<String, Object> body, boolean enroll) {
+        BatchResult result;
+        if (body.containsKey("courseId")) {
+            List<String> studentIds = stringList(body, "studentIds");
+            String courseId = stringField(body, "courseId");
+            result = enroll ? manager.enrollAll(studentIds, courseId) : manager.unenrollAll(studentIds, courseId);
+        } else {
+            List<String> courseIds = stringList(body, "courseIds");
+            String studentId = stringField(body, "studentId");
+            result = enroll ? manager.enrollAll(studentId, courseIds) : manager.unenrollAll(studentId, courseIds);
+        }
+        Json.Writer w = new Json.Writer().beginObject().field("applied", result.isApplied()).name("items").beginArray();
+        for (BatchResult.Item item : result.getItems()) {
+            w.beginObject().field("studentId", item.getStudentId()).field("courseId", item.getCourseId())
+                    .field("status", item.getStatus().name());
+            if (item.getEnrollmentId() != null) w.field("enrollmentId", item.getEnrollmentId());
+            if (!item.getStatus().isSuccess()) w.field("message", item.getStatus().getMessage());
+            w.endObject();
+        }
+        return new Response(result.isApplied() ? 200 : 409, w.endArray().endObject().toString());
+    }
+
+    private Response listEnrollments(Map<String, String> query) {
+        List<Enrollment> all = page(manager.listings().enrollments(), query);
+        Json.Writer w = new Json.Writer().beginArray();
+        for (Enrollment e : all) {
+            w.beginObject().field("id", e.getEnrollmentId()).field("studentId", e.getStudentId())
+                    .field("courseId", e.getCourseId()).field("timestamp", e.getTimestamp().toString()).endObject();
+        }
+        return ok(w.endArray());
+    }
+
+    // Rendering
+
+    /**
+     * Metrics registry plus view cache counters as one JSON document. Timer
+     * latencies are in nanoseconds over the sampled calls ("count" of "calls").
+     */
+    static String metricsJson(RegistrationService manager) {
+        Json.Writer w = new Json.Writer().beginObject().name("counters").beginObject();
+        for (Map.Entry<String, Long> c : Metrics.counters().entrySet()) w.field(c.getKey(), c.getValue());
+        CacheStats cache = manager.getViewCacheStats();
+        w.field("manager.viewCache.hits", cache.getHits()).field("manager.viewCache.misses", cache.getMisses())
+                .field("manager.viewCache.evictions", cache.getEvictions()).endObject();
+        w.name("timers").beginObject();
+        for (Map.Entry<String, OpTimer> t : Metrics.timers().entrySet()) {
+            w.name(t.getKey()).beginObject().field("calls", t.getValue().getCalls());
+            histogram(w, t.getValue().latencies()).endObject();
+        }
+        w.endObject().name("histograms").beginObject();
+        for (Map.Entry<String, Histogram.Snapshot> h : Metrics.histograms().entrySet()) {
+            histogram(w.name(h.getKey()).beginObject(), h.getValue()).endObject();
+        }
+        return w.endObject().endObject().toString();
+    }
+
+    private static Json.Writer histogram(Json.Writer w, Histogram.Snapshot s) {
+        return w.field("unit", s.getUnit()).field("count", s.getCount()).field("mean", Math.round(s.getMean()))
+                .field("p50", s.getPercentile(50)).field("p90", s.getPercentile(90))
+                .field("p99", s.getPercentile(99)).field("p99.9", s.getPercentile(99.9)).field("max", s.getMax());
+    }
+
+    private Json.Writer students(List<Student> list, Map<String, String> query) {
+        Json.Writer w = new Json.Writer().beginArray();
+        for (Student s : page(list, query)) student(w, s, false);
+        return w.endArray();
+    }
+
+    private Json.Writer courses(List<Course> list, Map<String, String> query) {
+        Json.Writer w = new Json.Writer().beginArray();
+        for (Course c : page(list, query)) course(w, c);
+        return w.endArray();
+    }
+
+    private static Json.Writer student(Json.Writer w, Student s, boolean withCourses) {
+        w.beginObject().field("id", s.getStudentId()).field("name", s.getName()).field("email", s.getEmail());
+        if (withCourses) {
+            w.name("courseIds").beginArray();
+            for (String cid : s.getEnrolledCourseIds()) w.value(cid);
+            w.endArray();
+        }
+        return w.endObject();
+    }
+
+    private static Json.Writer course(Json.Writer w, Course c) {
+        w.beginObject().field("id", c.getCourseId()).field("name", c.getCourseName())
+                .field("capacity", c.getCapacity()).field("enrolled", c.getEnrolledCount())
+                .field("meetings", c.getMeetings().toString()).name("prerequisites").beginArray();
+        for (String id : c.getPrerequisiteIds()) w.value(id);
+        return w.endArray().endObject();
+    }
+
+    // Listings page a fresh snapshot instead of copying the whole collection
+    private static <T> List<T> page(Listing<T> listing, Map<String, String> query) {
+        return listing.page(intParam(query, "offset", 0), intParam(query, "limit", Integer.MAX_VALUE));
+    }
+
+    private static <T> List<T> page(List<T> list, Map<String, String> query) {
+        int offset = Math.min(intParam(query, "offset", 0), list.size());
+        int limit = intParam(query, "limit", Integer.MAX_VALUE);
+        return list.subList(offset, (int) Math.min(list.size(), (long) offset + limit));
+    }
+
+    // Helpers
+
+    private Student findStudent(String id) {
+        Student s = manager.findStudentById(id);
+        if (s == null) throw notFound("Student not found.");
+        return s;
+    }
+
+    private Course findCourse(String id) {
+        Course c = manager.findCourseById(id);
+        if (c == null) throw notFound("Course not found.");
+        return c;
+    }
+
+    private static Map<String, Object> body(HttpExchange ex) throws IOException {
+        // reads one byte past the limit to tell a full body from a cut-off one
+        byte[] bytes = ex.getRequestBody().readNBytes(MAX_BODY_BYTES + 1);
+        if (bytes.length > MAX_BODY_BYTES) {
+            throw new HttpError(413, "Request body larger than " + MAX_BODY_BYTES + " bytes.");
+        }
+        String text = new String(bytes, StandardCharsets.UTF_8);
+        if (text.isBlank()) throw new IllegalArgumentException("Request body required.");
+        return Json.parseObject(text);
+    }
+
+    private static String stringField(Map<String, Object> body, String name) {
+        Object v = body.get(name);
+        if (!(v instanceof String)) throw new IllegalArgumentException("Field '" + name + "' must be a string.");
+        return (String) v;
+    }
+
+    private static int intField(Map<String, Object> body, String name, int def) {
+        Object v = body.get(name);
+        if (v == null) return def;
+        if (!(v instanceof Long) || (Long) v != ((Long) v).intValue()) {
+            throw new IllegalArgumentException("Field '" + name + "' must be an integer.");
+        }
+        return ((Long) v).intValue();
+    }
+
+    private static List<String> stringList(Map<String, Object> body, String name) {
+        Object v = body.get(name);
+        if (!(v instanceof List)) throw new IllegalArgumentException("Field '" + name + "' must be an array.");
+        List<String> out = new ArrayList<>();
+        for (Object o : (List<?>) v) {
+            if (!(o instanceof String)) throw new IllegalArgumentException("Field '" + name + "' must hold strings.");
+            out.add((String) o);
+        }
+        return out;
+    }
+
+    private static Map<String, String> parseQuery(String raw) {
+        Map<String, String> out = new HashMap<>();
+        if (raw == null || raw.isEmpty()) return out;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            out.put(key, value);
+        }
+        return out;
+    }
+
+    private static String param(Map<String, String> query, String name) {
+        String v = query.get(name);
+        if (v == null || v.isEmpty()) throw new IllegalArgumentException("Query parameter '" + name + "' required.");
+        return v;
+    }
+
+    private static int intParam(Map<String, String> query, String name, int def) {
+        String v = query.get(name);
+        if (v == null) return def;
+        try {
+            int n = Integer.parseInt(v);
+            if (n < 0) throw new NumberFormatException();
+            return n;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Query parameter '" + name + "' must be a non-negative integer.");
+        }
+    }
+
+    private static void requireMethod(String method, String expected) {
+        if (!method.equals(expected)) throw new HttpError(405, "Method " + method + " not allowed here.");
+    }
+
+    private static HttpError notFound(String message) {
+        return new HttpError(404, message);
+    }
+
+    private static Response ok(Json.Writer body) {
+        return new Response(200, body.toString());
+    }
+
+    private static Response error(int status, String message) {
+        return new Response(status, new Json.Writer().beginObject().field("error", message).endObject().toString());
+    }
+}
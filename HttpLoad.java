@@ -0,0 +1,183 @@
+package bench;
+
+import app.HttpApi;
+import service.RegistrationManager;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Closed-loop load generator for the HTTP API with enroll-heavy traffic:
+ * 70% enroll, 15% unenroll, 15% roster reads, over random students and
+ * courses. Reports requests/sec and latency percentiles; warmup requests
+ * are not recorded.
+ *
+ * Without --url an in-process server is started on a free port over a fresh
+ * manager seeded with the given students and courses.
+ *
+ * Usage: java -cp out bench.HttpLoad [--url=http://localhost:8080] [--clients=64]
+ *            [--seconds=10] [--warmup=3] [--students=10000] [--courses=200] [--capacity=60]
+ */
+public class HttpLoad {
+
+    private static final Pattern ID = Pattern.compile("\"id\":\"([^\"]+)\"");
+
+    public static void main(String[] args) throws Exception {
+        String url = option(args, "url", null);
+        int clients = Integer.parseInt(option(args, "clients", "64"));
+        int seconds = Integer.parseInt(option(args, "seconds", "10"));
+        int warmup = Integer.parseInt(option(args, "warmup", "3"));
+        int studentCount = Integer.parseInt(option(args, "students", "10000"));
+        int courseCount = Integer.parseInt(option(args, "courses", "200"));
+        int capacity = Integer.parseInt(option(args, "capacity", "60"));
+
+        HttpApi api = null;
+        List<String> studentIds = new ArrayList<>();
+        List<String> courseIds = new ArrayList<>();
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5)).build();
+        if (url == null) {
+            RegistrationManager manager = new RegistrationManager();
+            for (int i = 0; i < studentCount; i++) {
+                studentIds.add(manager.addStudent("Student " + i, "s" + i + "@uni.edu").getStudentId());
+            }
+            for (int i = 0; i < courseCount; i++) {
+                courseIds.add(manager.addCourse("Course " + i, capacity).getCourseId());
+            }
+            api = new HttpApi(manager, new InetSocketAddress("127.0.0.1", 0));
+            api.start();
+            url = "http://127.0.0.1:" + api.getPort();
+            System.out.println("In-process server on " + url + " using "
+                    + (api.usesVirtualThreads() ? "virtual threads" : "a platform thread pool"));
+        } else {
+            for (int i = 0; i < studentCount; i++) {
+                studentIds.add(createdId(client, url + "/students",
+                        "{\"name\":\"Student " + i + "\",\"email\":\"s" + i + "@uni.edu\"}"));
+            }
+            for (int i = 0; i < courseCount; i++) {
+                courseIds.add(createdId(client, url + "/courses",
+                        "{\"name\":\"Course " + i + "\",\"capacity\":" + capacity + "}"));
+            }
+        }
+
+        String base = url;
+        AtomicBoolean recording = new AtomicBoolean();
+        AtomicBoolean stop = new AtomicBoolean();
+        // counts per status class: 2xx, 4xx, 5xx, transport failure
+        AtomicLongArray outcomes = new AtomicLongArray(4);
+        long[][] latencies = new long[clients][];
+        int[] recorded = new int[clients];
+        CountDownLatch done = new CountDownLatch(clients);
+        for (int t = 0; t < clients; t++) {
+            final int index = t;
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                long[] mine = new long[4096];
+                int n = 0;
+                while (!stop.get()) {
+                    HttpRequest request = nextRequest(base, studentIds, courseIds, rnd);
+                    long t0 = System.nanoTime();
+                    int status;
+                    try {
+                        status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    } catch (Exception e) {
+                        status = -1;
+                    }
+                    long elapsed = System.nanoTime() - t0;
+                    if (!recording.get()) continue;
+                    outcomes.incrementAndGet(status < 0 ? 3 : status >= 500 ? 2 : status >= 400 ? 1 : 0);
+                    if (n == mine.length) mine = Arrays.copyOf(mine, n * 2);
+                    mine[n++] = elapsed;
+                }
+                latencies[index] = mine;
+                recorded[index] = n;
+                done.countDown();
+            }, "load-" + t);
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        Thread.sleep(warmup * 1000L);
+        recording.set(true);
+        long t0 = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        recording.set(false);
+        long elapsed = System.nanoTime() - t0;
+        stop.set(true);
+        done.await();
+        if (api != null) api.stop(1);
+
+        int total = 0;
+        for (int n : recorded) total += n;
+        long[] all = new long[total];
+        int pos = 0;
+        for (int t = 0; t < clients; t++) {
+            System.arraycopy(latencies[t], 0, all, pos, recorded[t]);
+            pos += recorded[t];
+        }
+        Arrays.sort(all);
+        System.out.printf("clients=%d  requests=%,d  %,.0f req/s%n", clients, total, total * 1e9 / elapsed);
+        System.out.printf("latency ms  p50=%.2f  p90=%.2f  p99=%.2f  p99.9=%.2f  max=%.2f%n",
+                percentile(all, 50), percentile(all, 90), percentile(all, 99), percentile(all, 99.9),
+                all.length == 0 ? 0 : all[all.length - 1] / 1e6);
+        System.out.printf("responses   2xx=%,d  4xx=%,d (full, duplicate, not enrolled)  5xx=%,d  failed=%,d%n",
+                outcomes.get(0), outcomes.get(1), outcomes.get(2), outcomes.get(3));
+    }
+
+    private static HttpRequest nextRequest(String base, List<String> studentIds, List<String> courseIds,
+                                           ThreadLocalRandom rnd) {
+        String sid = studentIds.get(rnd.nextInt(studentIds.size()));
+        String cid = courseIds.get(rnd.nextInt(courseIds.size()));
+        int kind = rnd.nextInt(100);
+        if (kind < 70) {
+            return HttpRequest.newBuilder(URI.create(base + "/enrollments"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(
+                            "{\"studentId\":\"" + sid + "\",\"courseId\":\"" + cid + "\"}"))
+                    .build();
+        }
+        if (kind < 85) {
+            return HttpRequest.newBuilder(URI.create(base + "/enrollments?studentId=" + sid + "&courseId=" + cid))
+                    .DELETE().build();
+        }
+        return HttpRequest.newBuilder(URI.create(base + "/courses/" + cid + "/students")).GET().build();
+    }
+
+    private static String createdId(HttpClient client, String url, String json) throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json)).build(), HttpResponse.BodyHandlers.ofString());
+        Matcher m = ID.matcher(response.body());
+        if (response.statusCode() != 201 || !m.find()) {
+            throw new IllegalStateException("Seeding failed: " + response.statusCode() + " " + response.body());
+        }
+        return m.group(1);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int i = (int) Math.ceil(p / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, i))] / 1e6;
+    }
+
+    private static String option(String[] args, String name, String def) {
+        String prefix = "--" + name + "=";
+        for (String a : args) {
+            if (a.startsWith(prefix)) return a.substring(prefix.length());
+        }
+        return def;
+    }
+}
@@ -0,0 +1,68 @@
+package domain;
+
+import util.IntLinkedSet;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Read-only live view of an int membership set as string ids. Lookups parse
+ * the id and hit the set directly, so contains is O(1). Every access
+ * synchronizes on the owning entity, which guards the set.
+ */
+final class IdSetView extends AbstractSet<String> {
+
+    private final Object owner;
+    private final IntLinkedSet keys;
+    private final IntFunction<String> format;
+    private final ToIntFunction<String> parse;
+
+    IdSetView(Object owner, IntLinkedSet keys, IntFunction<String> format, ToIntFunction<String> parse) {
+        this.owner = owner;
+        this.keys = keys;
+        this.format = format;
+        this.parse = parse;
+    }
+
+    @Override
+    public int size() {
+        synchronized (owner) {
+            return keys.size();
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String)) return false;
+        int key = parse.applyAsInt((String) o);
+        synchronized (owner) {
+            return key >= 0 && keys.contains(key);
+        }
+    }
+
+    /** Iterates a copy taken under the owner's lock, in insertion order. */
+    @Override
+    public Iterator<String> iterator() {
+        int[] snapshot;
+        synchronized (owner) {
+            snapshot = keys.toArray();
+        }
+        return new Iterator<String>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < snapshot.length;
+            }
+
+            @Override
+            public String next() {
+                if (next >= snapshot.length) throw new NoSuchElementException();
+                return format.apply(snapshot[next++]);
+            }
+        };
+    }
+}
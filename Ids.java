@@ -0,0 +1,38 @@
+package domain;
+
+/**
+ * Conversion between the internal int keys of students, courses and
+ * enrollments and their external string ids ("S1000", "C2000", "E3000").
+ * String ids are produced only at the API/UI boundary.
+ */
+public final class Ids {
+
+    public static final char STUDENT = 'S';
+    public static final char COURSE = 'C';
+    public static final char ENROLLMENT = 'E';
+
+    private Ids() {}
+
+    public static String student(int key) { return STUDENT + Integer.toString(key); }
+    public static String course(int key) { return COURSE + Integer.toString(key); }
+    public static String enrollment(int key) { return ENROLLMENT + Integer.toString(key); }
+
+    public static int parseStudent(String id) { return parse(id, STUDENT); }
+    public static int parseCourse(String id) { return parse(id, COURSE); }
+    public static int parseEnrollment(String id) { return parse(id, ENROLLMENT); }
+
+    /**
+     * Key of an id with the given prefix, or -1 if the id is null or malformed.
+     * Leading zeros are malformed, so every key has exactly one id.
+     */
+    private static int parse(String id, char prefix) {
+        if (id == null || id.length() < 2 || id.length() > 11 || id.charAt(0) != prefix || id.charAt(1) == '0') return -1;
+        long n = 0;
+        for (int i = 1; i < id.length(); i++) {
+            char ch = id.charAt(i);
+            if (ch < '0' || ch > '9') return -1;
+            n = n * 10 + (ch - '0');
+        }
+        return n > Integer.MAX_VALUE ? -1 : (int) n;
+    }
+}
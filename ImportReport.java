@@ -0,0 +1,73 @@
+package persistence;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/** Outcome of one bulk import: counts, throughput and per-row errors. */
+public class ImportReport {
+
+    /** Only the first errors are kept so a bad file cannot exhaust memory; all are counted. */
+    public static final int MAX_RECORDED_ERRORS = 1000;
+
+    public static final class RowError {
+        private final long line;
+        private final String message;
+
+        RowError(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        public long getLine() { return line; }
+        public String getMessage() { return message; }
+
+        @Override
+        public String toString() {
+            return "line " + line + ": " + message;
+        }
+    }
+
+    private final String kind;
+    private long rowsRead;
+    private long imported;
+    private long failed;
+    private long elapsedNanos;
+    private final List<RowError> errors = new ArrayList<>();
+
+    ImportReport(String kind) {
+        this.kind = kind;
+    }
+
+    void rowRead() { rowsRead++; }
+    void imported() { imported++; }
+
+    void failed(long line, String message) {
+        failed++;
+        if (errors.size() < MAX_RECORDED_ERRORS) errors.add(new RowError(line, message));
+    }
+
+    void finish(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+        // validation errors are recorded as rows are read, apply errors per batch
+        errors.sort(Comparator.comparingLong(RowError::getLine));
+    }
+
+    public String getKind() { return kind; }
+    public long getRowsRead() { return rowsRead; }
+    public long getImported() { return imported; }
+    public long getFailed() { return failed; }
+    public long getElapsedNanos() { return elapsedNanos; }
+    public List<RowError> getErrors() { return Collections.unmodifiableList(errors); }
+
+    public double rowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rowsRead * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d rows read, %d imported, %d failed in %.1f ms (%.0f rows/s)",
+                kind, rowsRead, imported, failed, elapsedNanos / 1e6, rowsPerSecond());
+    }
+}
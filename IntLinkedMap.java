@@ -0,0 +1,199 @@
+package util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Map from primitive int keys to non-null values that iterates in insertion
+ * order, without boxing keys or allocating an entry object per mapping.
+ *
+ * Entries live in dense parallel arrays in insertion order; an open-addressing
+ * table of dense positions finds them by key. Removal leaves a hole in the
+ * dense arrays that is squeezed out on the next resize. About 16 bytes per
+ * mapping versus 40+ for a LinkedHashMap entry with a boxed key.
+ *
+ * Not thread-safe; concurrent reads are fine while no thread writes.
+ */
+public final class IntLinkedMap<V> implements Iterable<V>, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final int EMPTY = 0;
+    private static final int REMOVED = -1;
+
+    private int[] keys;
+    private Object[] values; // null = removed entry
+    private int[] table;     // dense position + 1, EMPTY or REMOVED
+    private int used;        // dense slots in use, including holes
+    private int size;
+
+    public IntLinkedMap() {
+        this(4);
+    }
+
+    public IntLinkedMap(int expected) {
+        allocate(Math.max(4, expected));
+    }
+
+    // Each dense slot is used by at most one table entry (live or REMOVED) between
+    // resizes, so the table stays at most half full and every probe ends.
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        table = new int[tableSizeFor(capacity)];
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int n = Integer.highestOneBit(capacity * 2 - 1) << 1; // load factor <= 0.5
+        return Math.max(8, n);
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    // Table slot holding key, or -1
+    private int find(int key) {
+        int mask = table.length - 1;
+        for (int pos = hash(key) & mask; ; pos = (pos + 1) & mask) {
+            int t = table[pos];
+            if (t == EMPTY) return -1;
+            if (t != REMOVED && keys[t - 1] == key) return pos;
+        }
+    }
+
+    public boolean containsKey(int key) {
+        return find(key) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int pos = find(key);
+        return pos < 0 ? null : (V) values[table[pos] - 1];
+    }
+
+    /** Maps key to value (non-null); an existing key keeps its position. Returns the old value. */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (value == null) throw new NullPointerException("null values are not supported");
+        int pos = find(key);
+        if (pos >= 0) {
+            int slot = table[pos] - 1;
+            V old = (V) values[slot];
+            values[slot] = value;
+            return old;
+        }
+        if (used == keys.length) resize();
+        int slot = used++;
+        keys[slot] = key;
+        values[slot] = value;
+        insertSlot(key, slot);
+        size++;
+        return null;
+    }
+
+    private void insertSlot(int key, int slot) {
+        int mask = table.length - 1;
+        int pos = hash(key) & mask;
+        while (table[pos] != EMPTY && table[pos] != REMOVED) pos = (pos + 1) & mask;
+        table[pos] = slot + 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int pos = find(key);
+        if (pos < 0) return null;
+        int slot = table[pos] - 1;
+        V old = (V) values[slot];
+        values[slot] = null;
+        table[pos] = REMOVED;
+        size--;
+        return old;
+    }
+
+    public void clear() {
+        Arrays.fill(values, 0, used, null);
+        Arrays.fill(table, EMPTY);
+        used = 0;
+        size = 0;
+    }
+
+    /** Makes room for {@code more} further mappings, so that adding them resizes at most once. */
+    public void reserve(int more) {
+        if (used + more > keys.length) resize(Math.max(keys.length * 2, size + more));
+    }
+
+    // Squeeze out holes; grow when more than half the slots are live
+    private void resize() {
+        resize(size * 2 > keys.length ? keys.length * 2 : keys.length);
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        int oldUsed = used;
+        allocate(capacity);
+        used = 0;
+        for (int i = 0; i < oldUsed; i++) {
+            if (oldValues[i] == null) continue;
+            keys[used] = oldKeys[i];
+            values[used] = oldValues[i];
+            insertSlot(oldKeys[i], used);
+            used++;
+        }
+    }
+
+    /** Values in insertion order, copied. */
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        List<V> out = new ArrayList<>(size);
+        for (int i = 0; i < used; i++) {
+            if (values[i] != null) out.add((V) values[i]);
+        }
+        return out;
+    }
+
+    /** Keys in insertion order, copied. */
+    public int[] keys() {
+        int[] out = new int[size];
+        int n = 0;
+        for (int i = 0; i < used; i++) {
+            if (values[i] != null) out[n++] = keys[i];
+        }
+        return out;
+    }
+
+    /** Iterates values in insertion order; the map must not change meanwhile. */
+    @Override
+    public Iterator<V> iterator() {
+        return new Iterator<V>() {
+            private int next = advance(0);
+
+            private int advance(int from) {
+                while (from < used && values[from] == null) from++;
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < used;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public V next() {
+                if (next >= used) throw new NoSuchElementException();
+                V v = (V) values[next];
+                next = advance(next + 1);
+                return v;
+            }
+        };
+    }
+}
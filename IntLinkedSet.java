@@ -0,0 +1,165 @@
+package util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Set of primitive ints with O(1) add, remove and contains that iterates in
+ * insertion order.
+ *
+ * Members live in a dense array in insertion order; an open-addressing table
+ * of dense positions finds them by value. Removal leaves a hole that is
+ * squeezed out once holes outnumber members, or on the next resize, so
+ * iteration stays proportional to the size.
+ *
+ * Not thread-safe. Iterators are fail-fast on a best-effort basis.
+ */
+public final class IntLinkedSet implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final int EMPTY = 0;
+    private static final int REMOVED = -1;
+
+    private int[] members;
+    private boolean[] holes;
+    private int[] table;     // dense position + 1, EMPTY or REMOVED
+    private int used;        // dense slots in use, including holes
+    private int size;
+    private transient int modCount;
+
+    public IntLinkedSet() {
+        this(4);
+    }
+
+    public IntLinkedSet(int expected) {
+        allocate(Math.max(4, expected));
+    }
+
+    // Each dense slot is used by at most one table entry (live or REMOVED) between
+    // rebuilds, so the table stays at most half full and every probe ends.
+    private void allocate(int capacity) {
+        members = new int[capacity];
+        holes = new boolean[capacity];
+        table = new int[tableSizeFor(capacity)];
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int n = Integer.highestOneBit(capacity * 2 - 1) << 1; // load factor <= 0.5
+        return Math.max(8, n);
+    }
+
+    private static int hash(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    // Table slot holding value, or -1
+    private int find(int value) {
+        int mask = table.length - 1;
+        for (int pos = hash(value) & mask; ; pos = (pos + 1) & mask) {
+            int t = table[pos];
+            if (t == EMPTY) return -1;
+            if (t != REMOVED && members[t - 1] == value) return pos;
+        }
+    }
+
+    public boolean contains(int value) {
+        return find(value) >= 0;
+    }
+
+    /** Adds value at the end of the iteration order; false if already present. */
+    public boolean add(int value) {
+        if (find(value) >= 0) return false;
+        if (used == members.length) rebuild(size * 2 > members.length ? members.length * 2 : members.length);
+        int slot = used++;
+        members[slot] = value;
+        insertSlot(value, slot);
+        size++;
+        modCount++;
+        return true;
+    }
+
+    private void insertSlot(int value, int slot) {
+        int mask = table.length - 1;
+        int pos = hash(value) & mask;
+        while (table[pos] != EMPTY && table[pos] != REMOVED) pos = (pos + 1) & mask;
+        table[pos] = slot + 1;
+    }
+
+    public boolean remove(int value) {
+        int pos = find(value);
+        if (pos < 0) return false;
+        holes[table[pos] - 1] = true;
+        table[pos] = REMOVED;
+        size--;
+        modCount++;
+        if (used - size > size && used > 8) rebuild(members.length);
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(holes, 0, used, false);
+        Arrays.fill(table, EMPTY);
+        used = 0;
+        size = 0;
+        modCount++;
+    }
+
+    // Squeeze out holes into fresh arrays of the given capacity
+    private void rebuild(int capacity) {
+        int[] oldMembers = members;
+        boolean[] oldHoles = holes;
+        int oldUsed = used;
+        allocate(capacity);
+        used = 0;
+        for (int i = 0; i < oldUsed; i++) {
+            if (oldHoles[i]) continue;
+            members[used] = oldMembers[i];
+            insertSlot(oldMembers[i], used);
+            used++;
+        }
+    }
+
+    /** Members in insertion order, copied. */
+    public int[] toArray() {
+        int[] out = new int[size];
+        int n = 0;
+        for (int i = 0; i < used; i++) {
+            if (!holes[i]) out[n++] = members[i];
+        }
+        return out;
+    }
+
+    /** Iterates members in insertion order; read-only. */
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private final int expectedModCount = modCount;
+            private int next = advance(0);
+
+            private int advance(int from) {
+                while (from < used && holes[from]) from++;
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < used;
+            }
+
+            @Override
+            public int nextInt() {
+                if (modCount != expectedModCount) throw new ConcurrentModificationException();
+                if (next >= used) throw new NoSuchElementException();
+                int v = members[next];
+                next = advance(next + 1);
+                return v;
+            }
+        };
+    }
+}
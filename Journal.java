@@ -0,0 +1,407 @@
+package persistence;
+
+import domain.Course;
+import domain.Enrollment;
+import domain.Student;
+import domain.Timetable;
+import service.ChangeListener;
+import service.RegistrationManager;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log of RegistrationManager mutations.
+ *
+ * Each mutation is encoded into an in-memory buffer; a background thread
+ * writes the buffer and fsyncs it every commit interval, so all records of
+ * an interval share one fsync (group commit). A crash loses at most one
+ * interval of changes. Records are framed as [length][payload][crc32] so a
+ * torn tail is detected and dropped on replay. The records of an
+ * all-or-nothing batch share one frame, so a batch is replayed whole or not
+ * at all; a batch too large for one frame continues over as many frames as it
+ * needs and is replayed only once its last frame is intact.
+ */
+public class Journal implements ChangeListener, Closeable {
+
+    private static final byte ADD_STUDENT = 1;
+    private static final byte ADD_COURSE = 2;
+    private static final byte DELETE_STUDENT = 3;
+    private static final byte DELETE_COURSE = 4;
+    private static final byte ENROLL = 5;
+    private static final byte UNENROLL = 6;
+    private static final byte WAITLIST = 7;
+    private static final byte LEAVE_WAITLIST = 8;
+    private static final byte BATCH = 9;
+    private static final byte COURSE = 10; // ADD_COURSE with meeting times and prerequisites
+    private static final byte BATCH_PART = 11; // leading part of a BATCH split over several frames
+
+    private static final int MAX_RECORD = 1 << 26;
+    // batch bytes per frame, after the type byte
+    private static final int MAX_BATCH_PART = MAX_RECORD - 1;
+
+    private final File file;
+    private final Object bufferLock = new Object();
+    private final Object ioLock = new Object();
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long recordsSinceRotate;
+    // Records of the batch the current thread is reporting, as [length][payload]
+    private final ThreadLocal<ByteArrayOutputStream> batch = new ThreadLocal<>();
+    private FileChannel channel;
+    private final ScheduledExecutorService committer;
+
+    /**
+     * Opens the journal for appending. Any torn tail left by a crash is cut
+     * off first, so call {@link #replay} before opening if it must be read.
+     */
+    public Journal(File file, long commitIntervalMillis) throws IOException {
+        this.file = file;
+        truncateTornTail(file);
+        this.channel = openForAppend(file);
+        this.committer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "journal-commit");
+            t.setDaemon(true);
+            return t;
+        });
+        committer.scheduleWithFixedDelay(this::commitQuietly,
+                commitIntervalMillis, commitIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static FileChannel openForAppend(File file) throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // ChangeListener: encode and buffer, never touch the disk on the caller's thread
+
+    @Override
+    public void studentAdded(Student s) {
+        append(ADD_STUDENT, out -> {
+            out.writeUTF(s.getStudentId());
+            out.writeUTF(s.getName());
+            out.writeUTF(s.getEmail());
+        });
+    }
+
+    // ADD_STUDENT replays as an upsert, so an update reuses it
+    @Override
+    public void studentUpdated(Student s) {
+        studentAdded(s);
+    }
+
+    @Override
+    public void courseAdded(Course c) {
+        append(COURSE, out -> {
+            out.writeUTF(c.getCourseId());
+            out.writeUTF(c.getCourseName());
+            out.writeInt(c.getCapacity());
+            out.writeUTF(c.getMeetings().toString());
+            List<String> prerequisites = c.getPrerequisiteIds();
+            out.writeInt(prerequisites.size());
+            for (String id : prerequisites) out.writeUTF(id);
+        });
+    }
+
+    // COURSE replays as an upsert too
+    @Override
+    public void courseUpdated(Course c) {
+        courseAdded(c);
+    }
+
+    @Override
+    public void studentDeleted(String studentId) {
+        append(DELETE_STUDENT, out -> out.writeUTF(studentId));
+    }
+
+    @Override
+    public void courseDeleted(String courseId) {
+        append(DELETE_COURSE, out -> out.writeUTF(courseId));
+    }
+
+    @Override
+    public void enrolled(Enrollment e) {
+        append(ENROLL, out -> {
+            out.writeUTF(e.getEnrollmentId());
+            out.writeUTF(e.getStudentId());
+            out.writeUTF(e.getCourseId());
+            out.writeLong(e.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(e.getTimestamp().getNano());
+        });
+    }
+
+    @Override
+    public void unenrolled(String studentId, String courseId) {
+        append(UNENROLL, out -> {
+            out.writeUTF(studentId);
+            out.writeUTF(courseId);
+        });
+    }
+
+    @Override
+    public void waitlisted(String studentId, String courseId, int priority) {
+        append(WAITLIST, out -> {
+            out.writeUTF(studentId);
+            out.writeUTF(courseId);
+            out.writeInt(priority);
+        });
+    }
+
+    @Override
+    public void waitlistLeft(String studentId, String courseId) {
+        append(LEAVE_WAITLIST, out -> {
+            out.writeUTF(studentId);
+            out.writeUTF(courseId);
+        });
+    }
+
+    @Override
+    public void batchStarted() {
+        batch.set(new ByteArrayOutputStream(1024));
+    }
+
+    @Override
+    public void batchFinished() {
+        ByteArrayOutputStream records = batch.get();
+        batch.remove();
+        if (records == null || records.size() == 0) return;
+        byte[] bytes = records.toByteArray();
+        List<byte[]> frames = new ArrayList<>(1 + bytes.length / MAX_BATCH_PART);
+        for (int from = 0; from < bytes.length; from += MAX_BATCH_PART) {
+            int to = Math.min(bytes.length, from + MAX_BATCH_PART);
+            byte[] payload = new byte[1 + to - from];
+            payload[0] = to == bytes.length ? BATCH : BATCH_PART;
+            System.arraycopy(bytes, from, payload, 1, to - from);
+            frames.add(frame(payload));
+        }
+        // back to back, so no other record lands between the parts
+        synchronized (bufferLock) {
+            for (byte[] f : frames) pending.write(f, 0, f.length);
+            recordsSinceRotate++;
+        }
+    }
+
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private void append(byte type, RecordWriter body) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(payload)) {
+            out.writeByte(type);
+            body.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // in-memory stream; does not happen
+        }
+        byte[] bytes = payload.toByteArray();
+        ByteArrayOutputStream records = batch.get();
+        if (records != null) {
+            records.write(bytes.length >>> 24);
+            records.write(bytes.length >>> 16);
+            records.write(bytes.length >>> 8);
+            records.write(bytes.length);
+            records.write(bytes, 0, bytes.length);
+            return;
+        }
+        byte[] frame = frame(bytes);
+        synchronized (bufferLock) {
+            pending.write(frame, 0, frame.length);
+            recordsSinceRotate++;
+        }
+    }
+
+    private static byte[] frame(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer frame = ByteBuffer.allocate(payload.length + 8);
+        frame.putInt(payload.length).put(payload).putInt((int) crc.getValue());
+        return frame.array();
+    }
+
+    /** Writes and fsyncs everything appended so far. */
+    public void commit() throws IOException {
+        synchronized (ioLock) {
+            byte[] batch;
+            synchronized (bufferLock) {
+                if (pending.size() == 0) return;
+                batch = pending.toByteArray();
+                pending = new ByteArrayOutputStream(Math.max(1024, batch.length));
+            }
+            ByteBuffer buf = ByteBuffer.wrap(batch);
+            while (buf.hasRemaining()) channel.write(buf);
+            channel.force(false);
+        }
+    }
+
+    private void commitQuietly() {
+        try {
+            commit();
+        } catch (IOException e) {
+            System.err.println("Journal commit failed: " + e.getMessage());
+        }
+    }
+
+    /** Number of records appended since the journal was opened or last rotated. */
+    public long recordsSinceRotate() {
+        synchronized (bufferLock) {
+            return recordsSinceRotate;
+        }
+    }
+
+    /**
+     * Moves the committed log into the given segment file and starts an empty
+     * log. Call while the manager is exclusively locked, right after taking
+     * the in-memory snapshot, so the new log holds only later changes. If the
+     * segment already exists (an earlier snapshot never reached disk) the log
+     * is appended to it instead of replacing it.
+     */
+    public void rotateTo(File segment) throws IOException {
+        synchronized (ioLock) {
+            commit();
+            channel.close();
+            if (segment.exists()) {
+                try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                     FileChannel out = openForAppend(segment)) {
+                    long pos = 0, size = in.size();
+                    while (pos < size) pos += in.transferTo(pos, size - pos, out);
+                    out.force(false);
+                }
+                if (!file.delete()) throw new IOException("Cannot reset journal " + file);
+            } else if (!file.renameTo(segment)) {
+                throw new IOException("Cannot rotate journal " + file);
+            }
+            channel = openForAppend(file);
+            synchronized (bufferLock) {
+                recordsSinceRotate = 0;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        committer.shutdown();
+        synchronized (ioLock) {
+            commit();
+            channel.close();
+        }
+    }
+
+    // Replay
+
+    /**
+     * Re-applies every intact record of a journal file to the manager and
+     * returns the number of records applied. Stops at the first torn or
+     * corrupt record; the leading parts of a split batch whose last frame is
+     * missing are not applied.
+     */
+    public static int replay(File file, RegistrationManager manager) throws IOException {
+        if (!file.exists()) return 0;
+        int applied = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            byte[] payload;
+            ByteArrayOutputStream parts = new ByteArrayOutputStream();
+            while ((payload = readRecord(in)) != null) {
+                if (payload[0] == BATCH_PART) {
+                    if (parts.size() == 0) parts.write(BATCH);
+                    parts.write(payload, 1, payload.length - 1);
+                    continue;
+                }
+                if (parts.size() > 0) {
+                    if (payload[0] != BATCH) break; // parts never finished: corrupt
+                    parts.write(payload, 1, payload.length - 1);
+                    payload = parts.toByteArray();
+                    parts.reset();
+                }
+                apply(new DataInputStream(new ByteArrayInputStream(payload)), manager);
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    private static void apply(DataInputStream in, RegistrationManager manager) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case ADD_STUDENT: manager.restoreStudent(in.readUTF(), in.readUTF(), in.readUTF()); break;
+            case ADD_COURSE: manager.restoreCourse(in.readUTF(), in.readUTF(), in.readInt()); break;
+            case COURSE: {
+                String id = in.readUTF(), name = in.readUTF();
+                int capacity = in.readInt();
+                Timetable meetings = Timetable.parse(in.readUTF());
+                List<String> prerequisites = new ArrayList<>();
+                for (int n = in.readInt(); n > 0; n--) prerequisites.add(in.readUTF());
+                manager.restoreCourse(id, name, capacity, meetings, prerequisites);
+                break;
+            }
+            case DELETE_STUDENT: manager.restoreStudentDeletion(in.readUTF()); break;
+            case DELETE_COURSE: manager.deleteCourse(in.readUTF()); break;
+            case ENROLL: {
+                String eId = in.readUTF(), sid = in.readUTF(), cid = in.readUTF();
+                LocalDateTime ts = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+                manager.restoreEnrollment(eId, sid, cid, ts);
+                break;
+            }
+            case UNENROLL: manager.restoreUnenroll(in.readUTF(), in.readUTF()); break;
+            case WAITLIST: manager.restoreWaitlistEntry(in.readUTF(), in.readUTF(), in.readInt()); break;
+            case LEAVE_WAITLIST: manager.restoreWaitlistRemoval(in.readUTF(), in.readUTF()); break;
+            case BATCH: {
+                while (in.available() > 0) {
+                    byte[] record = new byte[in.readInt()];
+                    in.readFully(record);
+                    apply(new DataInputStream(new ByteArrayInputStream(record)), manager);
+                }
+                break;
+            }
+            default: throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    // Returns the next intact payload, or null at end of file or a torn/corrupt record
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length <= 0 || length > MAX_RECORD) return null;
+        byte[] payload = new byte[length];
+        try {
+            in.readFully(payload);
+            int expected = in.readInt();
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            return (int) crc.getValue() == expected ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static void truncateTornTail(File file) throws IOException {
+        if (!file.exists()) return;
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            byte[] payload;
+            long end = 0;
+            while ((payload = readRecord(in)) != null) {
+                end += payload.length + 8;
+                if (payload[0] != BATCH_PART) valid = end; // a split batch counts once its last frame is in
+            }
+        }
+        if (valid < file.length()) {
+            try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                ch.truncate(valid);
+                ch.force(true);
+            }
+        }
+    }
+}
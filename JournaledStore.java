@@ -0,0 +1,127 @@
+package persistence;
+
+import service.RegistrationManager;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Journal-mode persistence: a snapshot written by {@link DataStore} plus a
+ * write-ahead {@link Journal} of every change made since that snapshot.
+ *
+ * Recovery loads the snapshot and replays the journal tail over it. A
+ * background checkpoint periodically writes a fresh snapshot and starts an
+ * empty journal, so replay stays short.
+ *
+ * Files: the snapshot, {@code <journal>} for live changes and
+ * {@code <journal>.prev} for changes whose snapshot is still being written.
+ */
+public class JournaledStore implements Closeable {
+
+    private final DataStore snapshots;
+    private final File journalFile;
+    private final File previousSegment;
+    private final long commitIntervalMillis;
+    private final long snapshotIntervalMillis;
+
+    private RegistrationManager manager;
+    private Journal journal;
+    private ScheduledExecutorService checkpointer;
+
+    public JournaledStore(DataStore snapshots, File journalFile,
+                          long commitIntervalMillis, long snapshotIntervalMillis) {
+        this.snapshots = snapshots;
+        this.journalFile = journalFile;
+        this.previousSegment = new File(journalFile.getPath() + ".prev");
+        this.commitIntervalMillis = commitIntervalMillis;
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+    }
+
+    /**
+     * Recovers the manager from the last snapshot and the journal, then starts
+     * journaling its changes. Calling open again closes the current session and
+     * recovers from disk. Fails if the snapshot exists but cannot be read.
+     */
+    public synchronized RegistrationManager open() throws IOException {
+        close();
+        RegistrationManager recovered = snapshots.load();
+        if (recovered == null && snapshots.getFile().exists()) {
+            // replaying over an empty manager and checkpointing would replace the snapshot
+            throw new IOException("Cannot read snapshot " + snapshots.getFile());
+        }
+        if (recovered == null) recovered = new RegistrationManager();
+        int replayed = Journal.replay(previousSegment, recovered)
+                + Journal.replay(journalFile, recovered);
+        if (replayed > 0) System.out.println("Replayed " + replayed + " journal records.");
+
+        manager = recovered;
+        journal = new Journal(journalFile, commitIntervalMillis);
+        manager.addChangeListener(journal);
+
+        checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "journal-checkpoint");
+            t.setDaemon(true);
+            return t;
+        });
+        checkpointer.scheduleWithFixedDelay(this::checkpointIfDirty,
+                snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+        return manager;
+    }
+
+    private synchronized void checkpointIfDirty() {
+        if (journal != null && journal.recordsSinceRotate() > 0) checkpoint();
+    }
+
+    /**
+     * Writes a snapshot and truncates the journal. The manager is locked only
+     * while it is serialized in memory and the journal is rotated; the disk
+     * write happens afterwards.
+     */
+    public synchronized boolean checkpoint() {
+        if (manager == null) return false;
+        try {
+            byte[][] snapshot = new byte[1][];
+            IOException[] failure = new IOException[1];
+            manager.runExclusive(() -> {
+                try {
+                    snapshot[0] = snapshots.serialize(manager);
+                    journal.rotateTo(previousSegment);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) throw failure[0];
+            snapshots.writeAtomically(snapshot[0]);
+            if (!previousSegment.delete() && previousSegment.exists()) {
+                throw new IOException("Cannot remove " + previousSegment);
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Checkpoint failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /** Forces all journaled changes to disk. */
+    public synchronized void sync() throws IOException {
+        if (journal != null) journal.commit();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (checkpointer != null) {
+            checkpointer.shutdownNow();
+            checkpointer = null;
+        }
+        if (journal != null) {
+            manager.removeChangeListener(journal);
+            journal.close();
+            journal = null;
+        }
+        manager = null;
+    }
+}
@@ -0,0 +1,226 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Just enough JSON for the HTTP front-end: a writer that builds one document
+ * in a StringBuilder, and a parser for request bodies (objects, arrays,
+ * strings, numbers, booleans, null).
+ */
+final class Json {
+
+    private Json() {}
+
+    // Writing
+
+    static final class Writer {
+        private final StringBuilder out = new StringBuilder(128);
+        private boolean needComma;
+
+        Writer beginObject() { separate(); out.append('{'); needComma = false; return this; }
+        Writer endObject() { out.append('}'); needComma = true; return this; }
+        Writer beginArray() { separate(); out.append('['); needComma = false; return this; }
+        Writer endArray() { out.append(']'); needComma = true; return this; }
+
+        Writer name(String name) {
+            separate();
+            quote(name);
+            out.append(':');
+            needComma = false;
+            return this;
+        }
+
+        Writer value(String s) {
+            separate();
+            if (s == null) out.append("null");
+            else quote(s);
+            needComma = true;
+            return this;
+        }
+
+        Writer value(long n) {
+            separate();
+            out.append(n);
+            needComma = true;
+            return this;
+        }
+
+        Writer value(boolean b) {
+            separate();
+            out.append(b);
+            needComma = true;
+            return this;
+        }
+
+        Writer field(String name, String value) { return name(name).value(value); }
+        Writer field(String name, long value) { return name(name).value(value); }
+        Writer field(String name, boolean value) { return name(name).value(value); }
+
+        private void separate() {
+            if (needComma) out.append(',');
+        }
+
+        private void quote(String s) {
+            out.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"': out.append("\\\""); break;
+                    case '\\': out.append("\\\\"); break;
+                    case '\n': out.append("\\n"); break;
+                    case '\r': out.append("\\r"); break;
+                    case '\t': out.append("\\t"); break;
+                    default:
+                        if (c < 0x20) out.append(String.format("\\u%04x", (int) c));
+                        else out.append(c);
+                }
+            }
+            out.append('"');
+        }
+
+        @Override
+        public String toString() { return out.toString(); }
+    }
+
+    // Parsing
+
+    /** Parses a JSON document; objects become LinkedHashMaps, arrays Lists, numbers Longs or Doubles. */
+    static Object parse(String text) {
+        Parser p = new Parser(text);
+        p.skipSpace();
+        Object value = p.value();
+        p.skipSpace();
+        if (p.pos != text.length()) throw p.error("trailing characters");
+        return value;
+    }
+
+    /** Parses a JSON object body. */
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> parseObject(String text) {
+        Object value = parse(text);
+        if (!(value instanceof Map)) throw new IllegalArgumentException("Expected a JSON object");
+        return (Map<String, Object>) value;
+    }
+
+    private static final class Parser {
+        final String s;
+        int pos;
+
+        Parser(String s) { this.s = s; }
+
+        Object value() {
+            if (pos >= s.length()) throw error("unexpected end");
+            char c = s.charAt(pos);
+            switch (c) {
+                case '{': return object();
+                case '[': return array();
+                case '"': return string();
+                case 't': return literal("true", Boolean.TRUE);
+                case 'f': return literal("false", Boolean.FALSE);
+                case 'n': return literal("null", null);
+                default:
+                    if (c == '-' || (c >= '0' && c <= '9')) return number();
+                    throw error("unexpected '" + c + "'");
+            }
+        }
+
+        Map<String, Object> object() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            pos++;
+            skipSpace();
+            if (peek() == '}') { pos++; return map; }
+            while (true) {
+                skipSpace();
+                if (peek() != '"') throw error("expected a field name");
+                String name = string();
+                skipSpace();
+                expect(':');
+                skipSpace();
+                map.put(name, value());
+                skipSpace();
+                if (peek() == ',') { pos++; continue; }
+                expect('}');
+                return map;
+            }
+        }
+
+        List<Object> array() {
+            List<Object> list = new ArrayList<>();
+            pos++;
+            skipSpace();
+            if (peek() == ']') { pos++; return list; }
+            while (true) {
+                skipSpace();
+                list.add(value());
+                skipSpace();
+                if (peek() == ',') { pos++; continue; }
+                expect(']');
+                return list;
+            }
+        }
+
+        String string() {
+            pos++; // opening quote
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                if (pos >= s.length()) throw error("unterminated string");
+                char c = s.charAt(pos++);
+                if (c == '"') return sb.toString();
+                if (c != '\\') { sb.append(c); continue; }
+                if (pos >= s.length()) throw error("unterminated escape");
+                char e = s.charAt(pos++);
+                switch (e) {
+                    case '"': case '\\': case '/': sb.append(e); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        if (pos + 4 > s.length()) throw error("bad unicode escape");
+                        sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default: throw error("bad escape \\" + e);
+                }
+            }
+        }
+
+        Object number() {
+            int start = pos;
+            if (peek() == '-') pos++;
+            while (pos < s.length() && "0123456789.eE+-".indexOf(s.charAt(pos)) >= 0) pos++;
+            String n = s.substring(start, pos);
+            try {
+                if (n.indexOf('.') < 0 && n.indexOf('e') < 0 && n.indexOf('E') < 0) return Long.parseLong(n);
+                return Double.parseDouble(n);
+            } catch (NumberFormatException e) {
+                throw error("bad number " + n);
+            }
+        }
+
+        Object literal(String word, Object value) {
+            if (!s.startsWith(word, pos)) throw error("unexpected token");
+            pos += word.length();
+            return value;
+        }
+
+        char peek() { return pos < s.length() ? s.charAt(pos) : '\0'; }
+
+        void expect(char c) {
+            if (peek() != c) throw error("expected '" + c + "'");
+            pos++;
+        }
+
+        void skipSpace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Bad JSON at " + pos + ": " + message);
+        }
+    }
+}
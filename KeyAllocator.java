@@ -0,0 +1,164 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hands out unique int keys, never one it handed out or was told is in use.
+ *
+ * Keys are reserved from a shared ceiling in blocks of {@value #BLOCK} and
+ * handed out of a block one at a time. Blocks sit in a few cells, each on its
+ * own cache line: while only one thread allocates at a time, every key comes
+ * from the first cell, so keys are consecutive; once two threads collide
+ * there, allocation spreads over the cells by thread, and threads then touch
+ * the shared ceiling once per block instead of once per key.
+ *
+ * {@link #watermark()} is above every key handed out or marked used. Saving
+ * it with the data and passing it to {@link #markUsedBelow} after loading
+ * makes allocation continue above it, so a key is not handed out again even
+ * when the entity it named was deleted before the save. Keys reserved but not
+ * handed out by then are simply never used.
+ *
+ * With a stride above 1 only keys k with k % stride == residue are handed
+ * out, so allocators with the same stride and different residues never
+ * collide.
+ */
+public final class KeyAllocator {
+
+    /** Keys reserved from the ceiling at a time. */
+    public static final int BLOCK = 64;
+
+    // longs per cell: one 64-byte line
+    private static final int PAD = 8;
+
+    private final int cellCount;
+    // cell i at index i * PAD: (next key << 32) | limit; next >= limit when used up
+    private final AtomicLongArray cells;
+    // start of the next block to reserve
+    private final AtomicLong ceiling = new AtomicLong();
+    // every key below is taken: handed out by an earlier run, or marked used
+    private final AtomicInteger floor = new AtomicInteger();
+    private volatile boolean contended;
+    private volatile int stride = 1;
+    private volatile int residue;
+
+    /** An allocator whose first key is first. */
+    public KeyAllocator(int first) {
+        this.cellCount = Math.min(64, Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1);
+        this.cells = new AtomicLongArray(cellCount * PAD);
+        ceiling.set(first);
+        floor.set(first);
+    }
+
+    /** The next key; throws IllegalStateException once the int range is used up. */
+    public int next() {
+        if (!contended) {
+            // first cell: a failed compare-and-set is the sign of contention
+            while (true) {
+                long state = cells.get(0);
+                int next = (int) (state >>> 32), limit = (int) state;
+                if (next >= limit) {
+                    refill(0);
+                } else if (cells.compareAndSet(0, state, pack(next + stride, limit))) {
+                    return next;
+                } else {
+                    contended = true;
+                    break;
+                }
+            }
+        }
+        // own cell: one add, which also returns the block's limit; once the block
+        // is used up, next runs past the limit until the cell is refilled
+        int at = threadCell() * PAD;
+        while (true) {
+            long state = cells.getAndAdd(at, (long) stride << 32);
+            if (next(state) < limit(state)) return (int) next(state);
+            refill(at);
+        }
+    }
+
+    private int threadCell() {
+        int h = System.identityHashCode(Thread.currentThread());
+        return (h ^ (h >>> 16)) & (cellCount - 1);
+    }
+
+    // Gives the cell at index at a new block unless another thread already did
+    private void refill(int at) {
+        long size = (long) BLOCK * stride;
+        long start = ceiling.getAndAdd(size);
+        if (start + size > Integer.MAX_VALUE) throw new IllegalStateException("Key space exhausted");
+        long state;
+        do {
+            state = cells.get(at);
+            if (next(state) < limit(state)) return; // refilled meanwhile: the block goes unused
+        } while (!cells.compareAndSet(at, state, pack(start, start + size)));
+    }
+
+    private static long pack(long next, long limit) {
+        return next << 32 | limit;
+    }
+
+    private static long next(long state) { return state >>> 32; }
+
+    private static long limit(long state) { return state & 0xFFFFFFFFL; }
+
+    /** A key above every key handed out or marked used, for saving with the data. */
+    public int watermark() {
+        int max = floor.get();
+        for (int i = 0; i < cellCount; i++) {
+            long state = cells.get(i * PAD);
+            max = Math.max(max, (int) Math.min(next(state), limit(state)));
+        }
+        return max;
+    }
+
+    /**
+     * Makes sure key is never handed out, e.g. because an entity with that key
+     * was restored. Call it before keys are allocated concurrently with it.
+     */
+    public void markUsed(int key) {
+        if (key == Integer.MAX_VALUE) throw new IllegalStateException("Key space exhausted");
+        floor.accumulateAndGet(key + 1, Math::max);
+        long above = align(key + 1L);
+        if (ceiling.get() <= key) {
+            ceiling.accumulateAndGet(above, Math::max);
+            return;
+        }
+        // a reserved block may hold the key: skip past it
+        for (int i = 0; i < cellCount; i++) {
+            long state;
+            do {
+                state = cells.get(i * PAD);
+            } while (next(state) <= key && key < limit(state)
+                    && !cells.compareAndSet(i * PAD, state, pack(Math.min(above, limit(state)), limit(state))));
+        }
+    }
+
+    /** Makes sure no key below watermark is handed out: the counterpart of {@link #watermark()}. */
+    public void markUsedBelow(int watermark) {
+        if (watermark > 0) markUsed(watermark - 1);
+    }
+
+    /**
+     * Hands out only keys k with k % stride == residue from now on, each above
+     * every key handed out or marked used so far. Call it before keys are
+     * allocated concurrently with it.
+     */
+    public void setPartition(int residue, int stride) {
+        if (stride < 1 || residue < 0 || residue >= stride) {
+            throw new IllegalArgumentException("Key partition " + residue + " of " + stride);
+        }
+        int start = watermark();
+        this.stride = stride;
+        this.residue = residue;
+        for (int i = 0; i < cellCount; i++) cells.set(i * PAD, 0);
+        ceiling.set(align(start));
+        contended = false;
+    }
+
+    // Smallest key >= k in the partition
+    private long align(long k) {
+        return k + Math.floorMod(residue - k, (long) stride);
+    }
+}
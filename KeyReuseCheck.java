@@ -0,0 +1,186 @@
+package bench;
+
+import domain.Course;
+import domain.Enrollment;
+import domain.Student;
+import persistence.DataStore;
+import persistence.JournaledStore;
+import service.ChangeListener;
+import service.RegistrationManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Verifies that no student, course or enrollment id is ever issued twice.
+ * Threads add and delete students and courses and enroll and unenroll
+ * concurrently; then the newest students and courses are deleted, the data
+ * is saved and loaded again, and the next round continues on the loaded
+ * manager. This runs once per store: a SERIALIZED snapshot, a BINARY
+ * snapshot, and the journal (checkpointed every other round). Every id the
+ * listeners see added across all rounds is recorded, waitlist promotions
+ * included. Exits with status 1 on any violation.
+ *
+ * Usage: java -cp out bench.KeyReuseCheck [rounds] [opsPerThread]
+ */
+public class KeyReuseCheck {
+
+    private static final int DELETED_BEFORE_SAVE = 3;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int opsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        int threads = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+        for (String store : Arrays.asList("serialized", "binary", "journal")) {
+            File dir = Files.createTempDirectory("keyreuse").toFile();
+            try {
+                int issued = check(store, dir, rounds, threads, opsPerThread);
+                System.out.printf("%-10s %,10d ids issued over %d rounds, none twice%n", store, issued, rounds);
+            } finally {
+                for (File f : dir.listFiles()) f.delete();
+                dir.delete();
+            }
+        }
+        System.out.println("No id reuse detected.");
+    }
+
+    private static int check(String store, File dir, int rounds, int threads, int opsPerThread)
+            throws IOException, InterruptedException {
+        File snapshot = new File(dir, "data.snap");
+        DataStore data = new DataStore(snapshot.getPath(),
+                store.equals("serialized") ? DataStore.Format.SERIALIZED : DataStore.Format.BINARY);
+        JournaledStore journaled = store.equals("journal")
+                ? new JournaledStore(data, new File(dir, "journal.log"), 5, 3_600_000) : null;
+        IdRecorder recorder = new IdRecorder();
+
+        for (int round = 0; round < rounds; round++) {
+            RegistrationManager manager;
+            if (journaled != null) {
+                manager = journaled.open();
+            } else {
+                manager = data.load();
+                if (manager == null && snapshot.exists()) fail("cannot load " + snapshot);
+                if (manager == null) manager = new RegistrationManager();
+            }
+            manager.addChangeListener(recorder);
+            run(manager, threads, opsPerThread);
+            deleteNewest(manager);
+            manager.removeChangeListener(recorder);
+
+            if (journaled != null) {
+                if (round % 2 == 1 && !journaled.checkpoint()) fail("checkpoint failed");
+                journaled.close();
+            } else if (!data.save(manager)) {
+                fail("cannot save " + snapshot);
+            }
+        }
+        return recorder.issued.size();
+    }
+
+    private static void run(RegistrationManager manager, int threads, int opsPerThread)
+            throws InterruptedException {
+        List<String> studentIds = Collections.synchronizedList(new ArrayList<>());
+        List<String> courseIds = Collections.synchronizedList(new ArrayList<>());
+        for (Student s : manager.listStudents()) studentIds.add(s.getStudentId());
+        for (Course c : manager.listCourses()) courseIds.add(c.getCourseId());
+
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                    for (int i = 0; i < opsPerThread; i++) {
+                        int op = rnd.nextInt(100);
+                        if (op < 10 || studentIds.isEmpty()) {
+                            studentIds.add(manager.addStudent("Student", "s@uni.edu").getStudentId());
+                        } else if (op < 15 || courseIds.isEmpty()) {
+                            courseIds.add(manager.addCourse("Course", 1 + rnd.nextInt(5)).getCourseId());
+                        } else if (op < 17) {
+                            for (Student s : manager.addStudents(Arrays.asList("A", "B"), Arrays.asList("a@uni.edu", "b@uni.edu"))) {
+                                studentIds.add(s.getStudentId());
+                            }
+                        } else if (op < 18) {
+                            for (Course c : manager.addCourses(Arrays.asList("A", "B"), Arrays.asList(3, 0))) {
+                                courseIds.add(c.getCourseId());
+                            }
+                        } else if (op < 24) {
+                            manager.deleteStudent(pick(studentIds, rnd));
+                        } else if (op < 26) {
+                            manager.deleteCourse(pick(courseIds, rnd));
+                        } else if (op < 70) {
+                            manager.enroll(pick(studentIds, rnd), pick(courseIds, rnd));
+                        } else {
+                            manager.unenroll(pick(studentIds, rnd), pick(courseIds, rnd));
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            worker.start();
+        }
+        start.countDown();
+        done.await();
+    }
+
+    // Ids freed at the top of the range are the ones a load could hand out again
+    private static void deleteNewest(RegistrationManager manager) {
+        List<Student> students = manager.listStudents();
+        students.sort(Comparator.comparingInt(Student::getKey).reversed());
+        for (Student s : students.subList(0, Math.min(DELETED_BEFORE_SAVE, students.size()))) {
+            manager.deleteStudent(s.getStudentId());
+        }
+        List<Course> courses = manager.listCourses();
+        courses.sort(Comparator.comparingInt(Course::getKey).reversed());
+        for (Course c : courses.subList(0, Math.min(DELETED_BEFORE_SAVE, courses.size()))) {
+            manager.deleteCourse(c.getCourseId());
+        }
+    }
+
+    private static String pick(List<String> ids, ThreadLocalRandom rnd) {
+        synchronized (ids) {
+            return ids.get(rnd.nextInt(ids.size()));
+        }
+    }
+
+    private static final class IdRecorder implements ChangeListener {
+        final Set<String> issued = ConcurrentHashMap.newKeySet();
+
+        private void record(String id) {
+            if (!issued.add(id)) fail(id + " issued twice");
+        }
+
+        @Override public void studentAdded(Student s) { record(s.getStudentId()); }
+        @Override public void courseAdded(Course c) { record(c.getCourseId()); }
+        @Override public void enrolled(Enrollment e) { record(e.getEnrollmentId()); }
+        @Override public void studentUpdated(Student s) {}
+        @Override public void courseUpdated(Course c) {}
+        @Override public void studentDeleted(String studentId) {}
+        @Override public void courseDeleted(String courseId) {}
+        @Override public void unenrolled(String studentId, String courseId) {}
+        @Override public void waitlisted(String studentId, String courseId, int priority) {}
+        @Override public void waitlistLeft(String studentId, String courseId) {}
+        @Override public void batchStarted() {}
+        @Override public void batchFinished() {}
+    }
+
+    private static void fail(String message) {
+        System.err.println("FAILED: " + message);
+        System.exit(1);
+    }
+}
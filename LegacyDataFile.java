@@ -0,0 +1,123 @@
+package persistence;
+
+import service.RegistrationManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamField;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Reads the data files of the first version, which serialized students,
+ * courses and enrollments under string ids (serialVersionUID 1). Their
+ * classes have since changed shape, so {@link #input} reads them into the
+ * look-alike classes below, and {@link #convert} restores those into a
+ * current manager. Files of any other earlier version are left to fail.
+ */
+final class LegacyDataFile {
+
+    private LegacyDataFile() {}
+
+    // Same names, serialVersionUIDs and fields as the first version's classes.
+    // Student.enrolledCourseIds and Course.enrolledStudentIds repeat what the
+    // enrollments say and are not used.
+
+    static final class Manager implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private Map<String, Student> students;
+        private Map<String, Course> courses;
+        private List<Enrollment> enrollments;
+    }
+
+    static final class Student implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private String studentId;
+        private String name;
+        private String email;
+        private List<String> enrolledCourseIds;
+    }
+
+    static final class Course implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private String courseId;
+        private String courseName;
+        private int capacity;
+        private List<String> enrolledStudentIds;
+    }
+
+    static final class Enrollment implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private String enrollmentId;
+        private String studentId;
+        private String courseId;
+        private LocalDateTime timestamp;
+    }
+
+    private static final Map<String, Class<?>> LEGACY_CLASSES = Map.of(
+            "service.RegistrationManager", Manager.class,
+            "domain.Student", Student.class,
+            "domain.Course", Course.class,
+            "domain.Enrollment", Enrollment.class);
+
+    /**
+     * An object stream that reads current files as usual and the first
+     * version's manager as a {@link Manager}.
+     */
+    static ObjectInputStream input(InputStream in) throws IOException {
+        return new ObjectInputStream(in) {
+            @Override
+            protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+                ObjectStreamClass desc = super.readClassDescriptor();
+                Class<?> legacy = LEGACY_CLASSES.get(desc.getName());
+                if (legacy == null) return desc;
+                ObjectStreamClass local = ObjectStreamClass.lookup(legacy);
+                return sameShape(desc, local) ? local : desc;
+            }
+        };
+    }
+
+    // Stream data is laid out by field, so the look-alike must match field for field
+    private static boolean sameShape(ObjectStreamClass stream, ObjectStreamClass local) {
+        if (stream.getSerialVersionUID() != local.getSerialVersionUID()) return false;
+        ObjectStreamField[] a = stream.getFields(), b = local.getFields();
+        if (a.length != b.length) return false;
+        for (int i = 0; i < a.length; i++) {
+            if (!a[i].getName().equals(b[i].getName()) || a[i].getTypeCode() != b[i].getTypeCode()
+                    || !Objects.equals(a[i].getTypeString(), b[i].getTypeString())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A manager holding the legacy data under the same ids. Enrollments the
+     * first version gave an id already in use (it restarted its counters at
+     * the number of entries after a load) get new ids.
+     */
+    static RegistrationManager convert(Manager legacy) {
+        RegistrationManager manager = new RegistrationManager();
+        for (Student s : legacy.students.values()) manager.restoreStudent(s.studentId, s.name, s.email);
+        for (Course c : legacy.courses.values()) manager.restoreCourse(c.courseId, c.courseName, c.capacity);
+        Set<String> ids = new HashSet<>();
+        List<Enrollment> reissued = new ArrayList<>();
+        for (Enrollment e : legacy.enrollments) {
+            if (ids.add(e.enrollmentId)) manager.restoreEnrollment(e.enrollmentId, e.studentId, e.courseId, e.timestamp);
+            else reissued.add(e);
+        }
+        // only once every recorded id is marked used
+        for (Enrollment e : reissued) {
+            manager.restoreEnrollment(manager.generateEnrollmentId(), e.studentId, e.courseId, e.timestamp);
+        }
+        return manager;
+    }
+}
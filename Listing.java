@@ -0,0 +1,68 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Read-only point-in-time sequence of entries, such as a {@link SnapshotLog.View}
+ * or several views joined end to end. Reading it takes no lock.
+ */
+public interface Listing<T> extends Iterable<T> {
+
+    int size();
+
+    default boolean isEmpty() { return size() == 0; }
+
+    /** Up to limit entries after skipping offset. */
+    List<T> page(int offset, int limit);
+
+    /** All entries, copied. */
+    default List<T> toList() { return page(0, Integer.MAX_VALUE); }
+
+    Stream<T> stream();
+
+    /** A parallel stream, for aggregations over large listings. */
+    Stream<T> parallelStream();
+
+    /**
+     * The parts one after the other. Paging skips whole parts by their size,
+     * so it scans only the part the page starts in.
+     */
+    static <T> Listing<T> concat(List<? extends Listing<T>> parts) {
+        List<Listing<T>> all = List.copyOf(parts);
+        int total = 0;
+        for (Listing<T> part : all) total += part.size();
+        int size = total;
+        return new Listing<T>() {
+            @Override
+            public int size() { return size; }
+
+            @Override
+            public List<T> page(int offset, int limit) {
+                List<T> out = new ArrayList<>(Math.max(0, Math.min(limit, size - offset)));
+                int skip = Math.max(0, offset);
+                for (Listing<T> part : all) {
+                    if (out.size() >= limit) break;
+                    if (skip >= part.size()) {
+                        skip -= part.size();
+                        continue;
+                    }
+                    out.addAll(part.page(skip, limit - out.size()));
+                    skip = 0;
+                }
+                return out;
+            }
+
+            @Override
+            public Iterator<T> iterator() { return stream().iterator(); }
+
+            @Override
+            public Stream<T> stream() { return all.stream().flatMap(Listing::stream); }
+
+            @Override
+            public Stream<T> parallelStream() { return all.parallelStream().flatMap(Listing::parallelStream); }
+        };
+    }
+}
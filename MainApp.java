@@ -3,28 +3,178 @@ package app;
 import domain.Course;
 import domain.Enrollment;
 import domain.Student;
+import domain.Timetable;
+import persistence.AutoSaver;
+import persistence.ChangeFileSink;
+import persistence.CsvImporter;
 import persistence.DataStore;
+import persistence.Exporter;
+import persistence.ImportReport;
+import persistence.JournaledStore;
+import persistence.ShardedStore;
+import service.ChangeFeed;
 import service.RegistrationManager;
+import service.RegistrationService;
+import service.ShardedRegistrationManager;
+import service.TermReport;
+import util.Listing;
+import util.Metrics;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
 
 public class MainApp {
 
-    private static final String DATA_FILE = "data/registration_data.ser";
+    private static final String DATA_FILE = "data/registration_data.snap";
+    private static final String LEGACY_DATA_FILE = "data/registration_data.ser";
+    private static final String JOURNAL_FILE = "data/registration.journal";
+    private static final String SHARD_DIR = "data/shards";
+    private static final long JOURNAL_COMMIT_MILLIS = 10;
+    private static final long SNAPSHOT_INTERVAL_MILLIS = 60_000;
+    private static final long DEFAULT_AUTOSAVE_MILLIS = 5_000;
+    private static final int DEFAULT_HTTP_PORT = 8080;
+    private static final int CHANGE_FEED_CAPACITY = 1 << 16;
+    private static final long CHANGE_FEED_WAIT_MILLIS = 100;
 
     public static void main(String[] args) {
+        // --http[=port]: serve the JSON API instead of the console menu, on loopback only
+        // unless --http-bind=ADDRESS names another address (0.0.0.0 for every interface)
+        int httpPort = -1;
+        InetAddress httpBind = InetAddress.getLoopbackAddress();
+        for (String arg : args) {
+            if (arg.equals("--http")) {
+                httpPort = DEFAULT_HTTP_PORT;
+            } else if (arg.startsWith("--http=")) {
+                httpPort = parsePort(arg.substring(7));
+                if (httpPort < 0) {
+                    System.err.println("Usage: --http=PORT with PORT from 0 to 65535, not \"" + arg.substring(7) + "\".");
+                    return;
+                }
+            } else if (arg.startsWith("--http-bind=")) {
+                try {
+                    httpBind = InetAddress.getByName(arg.substring(12));
+                } catch (UnknownHostException e) {
+                    System.err.println("Usage: --http-bind=ADDRESS; cannot resolve \"" + arg.substring(12) + "\".");
+                    return;
+                }
+            }
+        }
+
+        // --shards=N: split courses over N in-process shards, saved as one snapshot file each
+        int shardCount = 0;
+        for (String arg : args) {
+            if (arg.startsWith("--shards=")) {
+                try {
+                    shardCount = Integer.parseInt(arg.substring(9));
+                } catch (NumberFormatException e) {
+                    shardCount = 0;
+                }
+                if (shardCount < 1) {
+                    System.err.println("Usage: --shards=N with N at least 1, not \"" + arg.substring(9) + "\".");
+                    return;
+                }
+            }
+        }
+        if (shardCount > 0 && Arrays.asList(args).contains("--journal")) {
+            System.err.println("Usage: --journal cannot be combined with --shards; shards are saved as snapshots.");
+            return;
+        }
+
         Scanner sc = new Scanner(System.in);
-        DataStore ds = new DataStore(DATA_FILE);
+        DataStore ds = new DataStore(DATA_FILE, DataStore.Format.BINARY);
+        // --journal: log every change as it happens and snapshot in the background
+        JournaledStore journal = Arrays.asList(args).contains("--journal")
+                ? new JournaledStore(ds, new File(JOURNAL_FILE), JOURNAL_COMMIT_MILLIS, SNAPSHOT_INTERVAL_MILLIS)
+                : null;
 
-        RegistrationManager manager = ds.load();
+        ShardedStore shards = shardCount > 0 ? new ShardedStore(new File(SHARD_DIR), shardCount) : null;
+        RegistrationService manager;
+        if (shards != null) {
+            try {
+                manager = shards.exists() ? shards.load() : null;
+            } catch (IllegalArgumentException e) {
+                System.err.println("Cannot load " + SHARD_DIR + ": " + e.getMessage());
+                return;
+            }
+            if (manager == null && shards.exists()) {
+                System.err.println("Cannot read a shard file in " + SHARD_DIR + "; move it away to start with empty data.");
+                return;
+            }
+            System.out.println("Sharded mode: " + shardCount + " shards, saved in " + SHARD_DIR + ".");
+        } else if (journal != null) {
+            try {
+                manager = journal.open();
+                System.out.println("Journal mode: changes are logged as they happen.");
+            } catch (IOException e) {
+                System.err.println("Cannot open journal: " + e.getMessage());
+                return;
+            }
+        } else {
+            DataStore legacy = new DataStore(LEGACY_DATA_FILE);
+            // first start after the switch to binary snapshots
+            DataStore source = ds.getFile().exists() || !legacy.getFile().exists() ? ds : legacy;
+            manager = source.load();
+            if (manager == null && source.getFile().exists()) {
+                // starting empty would overwrite the file with the next save
+                System.err.println("Cannot read " + source.getFile() + "; move it away to start with empty data.");
+                return;
+            }
+        }
         if (manager == null) {
-            manager = new RegistrationManager();
+            manager = shards != null ? new ShardedRegistrationManager(shardCount) : new RegistrationManager();
             System.out.println("Starting with empty data.");
         } else {
             System.out.println("Loaded saved data.");
         }
 
+        // --view-cache=N: keep up to N roster/schedule lists cached (0 = off)
+        for (String arg : args) {
+            if (arg.startsWith("--view-cache=")) manager.setViewCacheSize(Integer.parseInt(arg.substring(13)));
+        }
+
+        // --autosave=MILLIS: longest time a change waits to be saved (0 = only on quit and "s");
+        // the journal already saves every change
+        long autosaveMillis = DEFAULT_AUTOSAVE_MILLIS;
+        for (String arg : args) {
+            if (arg.startsWith("--autosave=")) autosaveMillis = Long.parseLong(arg.substring(11));
+        }
+        if (journal != null) autosaveMillis = 0;
+        AutoSaver autosave = autosaveMillis > 0 ? startAutosave(manager, ds, shards, autosaveMillis) : null;
+
+        // --changes=FILE: append every change to FILE for downstream consumers to tail
+        ChangeFeed feed = null;
+        ChangeFileSink changes = null;
+        for (String arg : args) {
+            if (arg.startsWith("--changes=")) {
+                Path file = Paths.get(arg.substring(10));
+                try {
+                    feed = new ChangeFeed(CHANGE_FEED_CAPACITY, CHANGE_FEED_WAIT_MILLIS, ChangeFileSink.nextSequence(file));
+                    manager.addChangeListener(feed);
+                    changes = new ChangeFileSink(feed, file);
+                } catch (IOException e) {
+                    System.err.println("Cannot open change file: " + e.getMessage());
+                    return;
+                }
+            }
+        }
+
+        if (httpPort >= 0) {
+            serveHttp(manager, ds, shards, journal, autosave, changes, new InetSocketAddress(httpBind, httpPort));
+            return;
+        }
+
         boolean running = true;
         while (running) {
             printMenu();
@@ -40,19 +190,104 @@ public class MainApp {
                 case "8": unenrollStudent(sc, manager); break;
                 case "9": deleteStudent(sc, manager); break;
                 case "10": deleteCourse(sc, manager); break;
-                case "s": saveData(manager, ds); break;
-                case "l": manager = loadData(ds, manager); break;
+                case "11": setCapacity(sc, manager); break;
+                case "12": showWaitlist(sc, manager); break;
+                case "13": setCourseRules(sc, manager); break;
+                case "i": importCsv(sc, manager); break;
+                case "m": showMetrics(sc, manager); break;
+                case "r": showReport(sc, manager); break;
+                case "e": exportData(sc, manager); break;
+                case "s": saveData(manager, ds, shards, journal, autosave); break;
+                case "l": {
+                    RegistrationService loaded = loadData(ds, shards, journal, manager);
+                    if (autosave != null && loaded != manager) {
+                        autosave.close();
+                        autosave = startAutosave(loaded, ds, shards, autosaveMillis);
+                    }
+                    if (feed != null && loaded != manager) {
+                        manager.removeChangeListener(feed);
+                        loaded.addChangeListener(feed);
+                    }
+                    manager = loaded;
+                    break;
+                }
                 case "q": running = false; break;
                 default: System.out.println("Unknown option."); break;
             }
         }
 
         // auto-save on exit
-        saveData(manager, ds);
+        saveData(manager, ds, shards, journal, autosave);
+        if (autosave != null) autosave.close();
+        closeChanges(changes);
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.err.println("Journal close failed: " + e.getMessage());
+            }
+        }
         System.out.println("Goodbye!");
         sc.close();
     }
 
+    // Serves until the process is interrupted, then saves like the console does on quit
+    private static void serveHttp(RegistrationService manager, DataStore ds, ShardedStore shards, JournaledStore journal,
+                                  AutoSaver autosave, ChangeFileSink changes, InetSocketAddress address) {
+        HttpApi api;
+        try {
+            api = new HttpApi(manager, address);
+        } catch (IOException e) {
+            System.err.println("Cannot start HTTP server on " + address + ": " + e.getMessage());
+            return;
+        }
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            api.stop(2);
+            saveData(manager, ds, shards, journal, autosave);
+            if (autosave != null) autosave.close();
+            closeChanges(changes);
+            if (journal != null) {
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    System.err.println("Journal close failed: " + e.getMessage());
+                }
+            }
+            stopped.countDown();
+        }, "http-shutdown"));
+        api.start();
+        InetAddress host = address.getAddress();
+        System.out.println("Serving http://" + (host.isLoopbackAddress() ? "localhost" : host.getHostAddress())
+                + ":" + api.getPort() + "/ on "
+                + (api.usesVirtualThreads() ? "virtual threads" : "a platform thread pool")
+                + ". Press Ctrl+C to stop.");
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // The port in text, or -1 if it is not a number from 0 to 65535
+    private static int parsePort(String text) {
+        try {
+            int port = Integer.parseInt(text);
+            return port >= 0 && port <= 0xFFFF ? port : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void closeChanges(ChangeFileSink changes) {
+        if (changes == null) return;
+        try {
+            changes.close();
+        } catch (IOException e) {
+            System.err.println("Change file close failed: " + e.getMessage());
+        }
+    }
+
     private static void printMenu() {
         System.out.println("\n--- Student Registration ---");
         System.out.println("1) Add student");
@@ -65,28 +300,42 @@ public class MainApp {
         System.out.println("8) Unenroll student from course");
         System.out.println("9) Delete student");
         System.out.println("10) Delete course");
+        System.out.println("11) Change course capacity");
+        System.out.println("12) Show course waitlist");
+        System.out.println("13) Set course meeting times / prerequisites");
+        System.out.println("i) Import CSV (students / courses / enrollments)");
+        System.out.println("m) Show metrics");
+        System.out.println("r) Term report (fill rates, oversubscribed courses, full schedules)");
+        System.out.println("e) Export to CSV/JSON (students / courses / enrollments / report)");
         System.out.println("s) Save now");
         System.out.println("l) Load data from disk (restart state)");
         System.out.println("q) Quit");
         System.out.print("Choose: ");
     }
 
-    private static void createStudent(Scanner sc, RegistrationManager manager) {
+    private static void showMetrics(Scanner sc, RegistrationService manager) {
+        System.out.print("Format (text/json) [text]: ");
+        if (sc.nextLine().trim().equalsIgnoreCase("json")) {
+            System.out.println(HttpApi.metricsJson(manager));
+            return;
+        }
+        System.out.println();
+        System.out.print(Metrics.dump());
+        System.out.println("View cache: " + manager.getViewCacheStats());
+    }
+
+    private static void createStudent(Scanner sc, RegistrationService manager) {
         System.out.print("Student name: ");
         String name = sc.nextLine().trim();
         if (name.isEmpty()) { System.out.println("Name cannot be empty."); return; }
         System.out.print("Email: ");
         String email = sc.nextLine().trim();
-        if (!isValidEmail(email)) { System.out.println("Invalid email format."); return; }
+        if (!Student.isValidEmail(email)) { System.out.println("Invalid email format."); return; }
         Student s = manager.addStudent(name, email);
         System.out.println("Added: " + s);
     }
 
-    private static boolean isValidEmail(String email) {
-        return email != null && email.contains("@") && email.indexOf("@") > 0 && email.indexOf("@") < email.length() - 1;
-    }
-
-    private static void createCourse(Scanner sc, RegistrationManager manager) {
+    private static void createCourse(Scanner sc, RegistrationService manager) {
         System.out.print("Course name: ");
         String name = sc.nextLine().trim();
         if (name.isEmpty()) { System.out.println("Name cannot be empty."); return; }
@@ -99,7 +348,7 @@ public class MainApp {
         System.out.println("Added: " + c);
     }
 
-    private static void enrollStudent(Scanner sc, RegistrationManager manager) {
+    private static void enrollStudent(Scanner sc, RegistrationService manager) {
         System.out.print("Student ID: ");
         String sid = sc.nextLine().trim();
         System.out.print("Course ID: ");
@@ -107,33 +356,35 @@ public class MainApp {
         String result = manager.enroll(sid, cid);
         if (result.startsWith("OK:")) {
             System.out.println("Enrollment successful. id=" + result.substring(3));
+        } else if (result.startsWith("WAITLISTED:")) {
+            System.out.println("Course is full; waitlisted at position " + result.substring(11) + ".");
         } else {
             System.out.println("Enrollment failed: " + result);
         }
     }
 
-    private static void listStudents(RegistrationManager manager) {
-        List<Student> all = manager.listStudents();
+    private static void listStudents(RegistrationService manager) {
+        Listing<Student> all = manager.listings().students();
         System.out.println("\nStudents:");
         if (all.isEmpty()) System.out.println(" (none)");
         for (Student s : all) System.out.println(" " + s);
     }
 
-    private static void listCourses(RegistrationManager manager) {
-        List<Course> all = manager.listCourses();
+    private static void listCourses(RegistrationService manager) {
+        Listing<Course> all = manager.listings().courses();
         System.out.println("\nCourses:");
         if (all.isEmpty()) System.out.println(" (none)");
         for (Course c : all) System.out.println(" " + c);
     }
 
-    private static void listEnrollments(RegistrationManager manager) {
-        List<Enrollment> all = manager.listEnrollments();
+    private static void listEnrollments(RegistrationService manager) {
+        Listing<Enrollment> all = manager.listings().enrollments();
         System.out.println("\nEnrollments:");
         if (all.isEmpty()) System.out.println(" (none)");
         for (Enrollment e : all) System.out.println(" " + e);
     }
 
-    private static void searchStudent(Scanner sc, RegistrationManager manager) {
+    private static void searchStudent(Scanner sc, RegistrationService manager) {
         System.out.print("Search name query: ");
         String q = sc.nextLine().trim();
         List<Student> found = manager.searchStudentsByName(q);
@@ -144,7 +395,7 @@ public class MainApp {
         }
     }
 
-    private static void unenrollStudent(Scanner sc, RegistrationManager manager) {
+    private static void unenrollStudent(Scanner sc, RegistrationService manager) {
         System.out.print("Student ID: ");
         String sid = sc.nextLine().trim();
         System.out.print("Course ID: ");
@@ -153,27 +404,186 @@ public class MainApp {
         System.out.println(ok ? "Unenrolled." : "No such enrollment.");
     }
 
-    private static void deleteStudent(Scanner sc, RegistrationManager manager) {
+    private static void deleteStudent(Scanner sc, RegistrationService manager) {
         System.out.print("Student ID to delete: ");
         String sid = sc.nextLine().trim();
         boolean ok = manager.deleteStudent(sid);
         System.out.println(ok ? "Deleted student and related enrollments." : "Student not found.");
     }
 
-    private static void deleteCourse(Scanner sc, RegistrationManager manager) {
+    private static void deleteCourse(Scanner sc, RegistrationService manager) {
         System.out.print("Course ID to delete: ");
         String cid = sc.nextLine().trim();
         boolean ok = manager.deleteCourse(cid);
         System.out.println(ok ? "Deleted course and related enrollments." : "Course not found.");
     }
 
-    private static void saveData(RegistrationManager manager, DataStore ds) {
-        boolean ok = ds.save(manager);
+    private static void setCapacity(Scanner sc, RegistrationService manager) {
+        System.out.print("Course ID: ");
+        String cid = sc.nextLine().trim();
+        System.out.print("New capacity (0 = unlimited): ");
+        int cap;
+        try { cap = Integer.parseInt(sc.nextLine().trim()); }
+        catch (NumberFormatException ex) { System.out.println("Invalid number."); return; }
+        boolean ok = manager.setCourseCapacity(cid, Math.max(0, cap));
+        System.out.println(ok ? "Updated: " + manager.findCourseById(cid) : "Course not found.");
+    }
+
+    private static void setCourseRules(Scanner sc, RegistrationService manager) {
+        System.out.print("Course ID: ");
+        String cid = sc.nextLine().trim();
+        if (manager.findCourseById(cid) == null) { System.out.println("Course not found."); return; }
+        System.out.print("Meeting times, e.g. MON 09:00-10:30; WED 09:00-10:30 (- = none, blank = keep): ");
+        String meetings = sc.nextLine().trim();
+        System.out.print("Prerequisite course IDs, space-separated (- = none, blank = keep): ");
+        String prerequisites = sc.nextLine().trim();
+        try {
+            Timetable times = meetings.isEmpty() || meetings.equals("-") ? Timetable.NONE : Timetable.parse(meetings);
+            if (!prerequisites.isEmpty()) {
+                manager.setCoursePrerequisites(cid, prerequisites.equals("-") ? List.of()
+                        : Arrays.asList(prerequisites.split("\\s+")));
+            }
+            if (!meetings.isEmpty()) manager.setCourseMeetings(cid, times);
+            System.out.println("Updated: " + manager.findCourseById(cid));
+        } catch (IllegalArgumentException ex) {
+            System.out.println("Not updated: " + ex.getMessage());
+        }
+    }
+
+    private static void showWaitlist(Scanner sc, RegistrationService manager) {
+        System.out.print("Course ID: ");
+        String cid = sc.nextLine().trim();
+        if (manager.findCourseById(cid) == null) { System.out.println("Course not found."); return; }
+        List<Student> waiting = manager.getWaitlist(cid);
+        System.out.println("\nWaitlist:");
+        if (waiting.isEmpty()) System.out.println(" (none)");
+        for (int i = 0; i < waiting.size(); i++) System.out.println(" " + (i + 1) + ". " + waiting.get(i));
+    }
+
+    private static void importCsv(Scanner sc, RegistrationService manager) {
+        System.out.print("Import what? (students/courses/enrollments): ");
+        String kind = sc.nextLine().trim().toLowerCase();
+        System.out.print("CSV file path: ");
+        String path = sc.nextLine().trim();
+        CsvImporter importer = new CsvImporter(manager);
+        ImportReport report;
+        try {
+            switch (kind) {
+                case "students": report = importer.importStudents(Paths.get(path)); break;
+                case "courses": report = importer.importCourses(Paths.get(path)); break;
+                case "enrollments": report = importer.importEnrollments(Paths.get(path)); break;
+                default: System.out.println("Unknown import type."); return;
+            }
+        } catch (IOException | RuntimeException ex) {
+            System.out.println("Import failed: " + ex.getMessage());
+            return;
+        }
+        System.out.println(report);
+        report.getErrors().forEach(e -> System.out.println(" " + e));
+        if (report.getFailed() > report.getErrors().size()) {
+            System.out.println(" ... " + (report.getFailed() - report.getErrors().size()) + " more errors");
+        }
+    }
+
+    private static void showReport(Scanner sc, RegistrationService manager) {
+        System.out.print("Courses for a full schedule [5]: ");
+        String full = sc.nextLine().trim();
+        System.out.print("Enrollments per (day/hour) [day]: ");
+        ChronoUnit interval = sc.nextLine().trim().equalsIgnoreCase("hour") ? ChronoUnit.HOURS : ChronoUnit.DAYS;
+        TermReport report;
+        try {
+            report = TermReport.compute(manager, full.isEmpty() ? 5 : Integer.parseInt(full), interval, true);
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid number.");
+            return;
+        }
+        System.out.printf("%,d courses, %,d enrollments, average fill rate %.1f%% (courses with a capacity)%n",
+                report.getCourses().size(), report.getEnrollmentCount(), report.getAverageFillRate() * 100);
+
+        List<TermReport.CourseLine> over = report.getOversubscribed();
+        System.out.println("Oversubscribed courses: " + over.size());
+        for (TermReport.CourseLine l : over.subList(0, Math.min(10, over.size()))) {
+            System.out.printf(" %s %-30s %d/%d enrolled, %d waiting%n",
+                    l.getCourseId(), l.getCourseName(), l.getEnrolled(), l.getCapacity(), l.getWaitlisted());
+        }
+
+        long[] sizes = report.getScheduleSizes();
+        System.out.println("Students by number of courses:");
+        for (int n = 0; n < sizes.length; n++) {
+            if (sizes[n] > 0) System.out.printf(" %3d courses: %,d%n", n, sizes[n]);
+        }
+        System.out.printf("Full schedules (%d+ courses): %,d students%n",
+                report.getFullScheduleCourses(), report.getFullScheduleStudents().size());
+
+        System.out.println("Enrollments per " + (interval == ChronoUnit.HOURS ? "hour" : "day") + ":");
+        for (Map.Entry<LocalDateTime, Long> e : report.getEnrollmentsOverTime().entrySet()) {
+            System.out.printf(" %s %,d%n", interval == ChronoUnit.HOURS ? e.getKey() : e.getKey().toLocalDate(), e.getValue());
+        }
+    }
+
+    private static void exportData(Scanner sc, RegistrationService manager) {
+        System.out.print("Export what? (students/courses/enrollments/report): ");
+        String kind = sc.nextLine().trim().toLowerCase();
+        System.out.print("Format (csv/json) [csv]: ");
+        Exporter.Format format = sc.nextLine().trim().equalsIgnoreCase("json") ? Exporter.Format.JSON : Exporter.Format.CSV;
+        System.out.print("Output file path: ");
+        String path = sc.nextLine().trim();
+        Exporter exporter = new Exporter(manager);
+        long start = System.nanoTime();
+        long rows;
+        try {
+            switch (kind) {
+                case "students": rows = exporter.exportStudents(Paths.get(path), format); break;
+                case "courses": rows = exporter.exportCourses(Paths.get(path), format); break;
+                case "enrollments": rows = exporter.exportEnrollments(Paths.get(path), format); break;
+                case "report":
+                    rows = Exporter.exportReport(TermReport.compute(manager, 5, ChronoUnit.DAYS, true), Paths.get(path), format);
+                    break;
+                default: System.out.println("Unknown export type."); return;
+            }
+        } catch (IOException | RuntimeException ex) {
+            System.out.println("Export failed: " + ex.getMessage());
+            return;
+        }
+        System.out.printf("Exported %,d rows to %s in %.1f ms%n", rows, path, (System.nanoTime() - start) / 1e6);
+    }
+
+    // Saves to the shard files in sharded mode, otherwise to the data file
+    private static AutoSaver startAutosave(RegistrationService manager, DataStore ds, ShardedStore shards,
+                                           long maxLossMillis) {
+        return shards != null ? new AutoSaver((ShardedRegistrationManager) manager, shards, maxLossMillis)
+                : new AutoSaver((RegistrationManager) manager, ds, maxLossMillis);
+    }
+
+    // Goes through the autosaver when there is one, so the two never write the file at once
+    private static void saveData(RegistrationService manager, DataStore ds, ShardedStore shards,
+                                 JournaledStore journal, AutoSaver autosave) {
+        boolean ok = journal != null ? journal.checkpoint()
+                : autosave != null ? autosave.saveNow()
+                : shards != null ? shards.save((ShardedRegistrationManager) manager)
+                : ds.save((RegistrationManager) manager);
         System.out.println(ok ? "Saved to disk." : "Save failed.");
     }
 
-    private static RegistrationManager loadData(DataStore ds, RegistrationManager current) {
-        RegistrationManager loaded = ds.load();
+    private static RegistrationService loadData(DataStore ds, ShardedStore shards, JournaledStore journal,
+                                                RegistrationService current) {
+        if (journal != null) {
+            try {
+                RegistrationManager recovered = journal.open();
+                System.out.println("Recovered data from snapshot and journal.");
+                return recovered;
+            } catch (IOException e) {
+                System.out.println("Recovery failed: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+        RegistrationService loaded;
+        try {
+            loaded = shards == null ? ds.load() : shards.exists() ? shards.load() : null;
+        } catch (IllegalArgumentException e) {
+            System.out.println("Cannot load " + SHARD_DIR + ": " + e.getMessage() + " Keeping current in-memory data.");
+            return current;
+        }
         if (loaded == null) {
             System.out.println("Load failed or no saved file. Keeping current in-memory data.");
             return current;
@@ -186,7 +596,7 @@ public class MainApp {
 
 
 // Compile:
-// javac -d out src/domain/*.java src/service/*.java src/persistence/*.java src/app/*.java
+// javac -d out *.java
 //
 // Run:
 // java -cp out app.MainApp
\ No newline at end of file
@@ -0,0 +1,52 @@
+package bench;
+
+import service.RegistrationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Heap footprint report: retained bytes per student, per course and per
+ * enrollment, measured as the used-heap delta (after GC) while a manager
+ * is populated.
+ *
+ * Usage: java -Xmx4g -cp out bench.MemoryFootprint [enrollments]
+ */
+public class MemoryFootprint {
+
+    public static void main(String[] args) {
+        int enrollmentCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int studentCount = Math.max(10, enrollmentCount / 5);
+        int courseCount = Math.max(10, enrollmentCount / 100);
+        Random rnd = new Random(42);
+
+        long empty = SnapshotBench.usedHeap();
+        RegistrationManager manager = new RegistrationManager();
+        List<String> studentIds = new ArrayList<>(studentCount);
+        List<String> courseIds = new ArrayList<>(courseCount);
+        for (int i = 0; i < studentCount; i++) {
+            studentIds.add(manager.addStudent(Dataset.name(rnd), "student" + i + "@uni.edu").getStudentId());
+        }
+        long withStudents = SnapshotBench.usedHeap();
+        for (int i = 0; i < courseCount; i++) {
+            courseIds.add(manager.addCourse("Course " + i, 0).getCourseId());
+        }
+        long withCourses = SnapshotBench.usedHeap();
+        int made = 0;
+        while (made < enrollmentCount) {
+            String sid = studentIds.get(rnd.nextInt(studentCount));
+            String cid = courseIds.get(rnd.nextInt(courseCount));
+            if (manager.enroll(sid, cid).startsWith("OK:")) made++;
+        }
+        long full = SnapshotBench.usedHeap();
+
+        // id lists are benchmark scaffolding, not manager state; ~ one reference + id String each
+        System.out.printf("%,d students, %,d courses, %,d enrollments%n", studentCount, courseCount, made);
+        System.out.printf("per student    %8.1f B%n", (withStudents - empty) / (double) studentCount);
+        System.out.printf("per course     %8.1f B%n", (withCourses - withStudents) / (double) courseCount);
+        System.out.printf("per enrollment %8.1f B%n", (full - withCourses) / (double) made);
+        System.out.printf("total          %,d B%n", full - empty);
+        if (manager.listEnrollments().size() != made) throw new IllegalStateException();
+    }
+}
@@ -0,0 +1,98 @@
+package util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide registry of named counters, operation timers and histograms.
+ * Instrumented code looks its instruments up once, into static finals, so
+ * the hot path is a LongAdder increment or a histogram record and never a
+ * map lookup.
+ *
+ * Names are dotted, component first ("manager.enroll", "datastore.save").
+ */
+public final class Metrics {
+
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<String, OpTimer> TIMERS = new ConcurrentHashMap<>();
+    private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    private Metrics() {}
+
+    public static LongAdder counter(String name) {
+        return COUNTERS.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /** Timer that times every call. */
+    public static OpTimer timer(String name) {
+        return timer(name, 1);
+    }
+
+    /** Timer that times one call in samplePeriod; the first registration decides the period. */
+    public static OpTimer timer(String name, int samplePeriod) {
+        return TIMERS.computeIfAbsent(name, n -> new OpTimer(samplePeriod));
+    }
+
+    public static Histogram histogram(String name, String unit) {
+        return HISTOGRAMS.computeIfAbsent(name, n -> new Histogram(unit));
+    }
+
+    /** Current counter values by name. */
+    public static Map<String, Long> counters() {
+        Map<String, Long> out = new TreeMap<>();
+        COUNTERS.forEach((name, adder) -> out.put(name, adder.sum()));
+        return out;
+    }
+
+    /** Timers that have been called, by name. */
+    public static Map<String, OpTimer> timers() {
+        Map<String, OpTimer> out = new TreeMap<>();
+        TIMERS.forEach((name, t) -> {
+            if (t.getCalls() > 0) out.put(name, t);
+        });
+        return out;
+    }
+
+    /** Copies of every histogram that has recorded something, by name. */
+    public static Map<String, Histogram.Snapshot> histograms() {
+        Map<String, Histogram.Snapshot> out = new TreeMap<>();
+        HISTOGRAMS.forEach((name, h) -> {
+            Histogram.Snapshot s = h.snapshot();
+            if (s.getCount() > 0) out.put(name, s);
+        });
+        return out;
+    }
+
+    /** Human-readable dump: counters, timers (in microseconds), then histograms. */
+    public static String dump() {
+        StringBuilder sb = new StringBuilder("Counters:\n");
+        Map<String, Long> counters = counters();
+        if (counters.isEmpty()) sb.append(" (none)\n");
+        counters.forEach((name, value) -> sb.append(String.format(" %-40s %,14d%n", name, value)));
+
+        sb.append("Timers (us):\n");
+        Map<String, OpTimer> timers = timers();
+        if (timers.isEmpty()) sb.append(" (none)\n");
+        else sb.append(String.format(" %-32s %12s %9s %9s %9s %9s %9s %9s%n",
+                "", "calls", "sampled", "mean", "p50", "p99", "p99.9", "max"));
+        timers.forEach((name, t) -> {
+            Histogram.Snapshot s = t.latencies();
+            sb.append(String.format(" %-32s %,12d %,9d %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                    name, t.getCalls(), s.getCount(), s.getMean() / 1e3, s.getPercentile(50) / 1e3,
+                    s.getPercentile(99) / 1e3, s.getPercentile(99.9) / 1e3, s.getMax() / 1e3));
+        });
+
+        Map<String, Histogram.Snapshot> histograms = histograms();
+        if (!histograms.isEmpty()) {
+            sb.append("Histograms:\n");
+            sb.append(String.format(" %-32s %6s %9s %12s %12s %12s %12s%n",
+                    "", "unit", "count", "mean", "p50", "p99", "max"));
+            histograms.forEach((name, s) -> sb.append(String.format(" %-32s %6s %,9d %12.0f %12d %12d %12d%n",
+                    name, s.getUnit(), s.getCount(), s.getMean(), s.getPercentile(50),
+                    s.getPercentile(99), s.getMax())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,207 @@
+package service;
+
+import domain.Student;
+import util.IntLinkedMap;
+
+import java.util.*;
+
+/**
+ * Incrementally maintained trigram index over lower-cased student names.
+ *
+ * Every student gets an ordinal in insertion order; each trigram maps to a
+ * sorted array of the ordinals whose name contains it. A query walks the
+ * shortest posting list of its trigrams in ordinal order and verifies each
+ * candidate with {@code contains}, so results match a full scan exactly and
+ * come out in insertion order. Queries shorter than a trigram scan the cached
+ * lower-case names, stopping as soon as a page is full.
+ *
+ * Not thread-safe: RegistrationManager mutates it under its exclusive lock
+ * and queries it under the shared lock.
+ */
+class NameIndex {
+
+    private static final int GRAM = 3;
+
+    private static final class Posting {
+        int[] ords = new int[4];
+        int size;
+
+        void insert(int ord) {
+            int pos = size == 0 || ords[size - 1] < ord ? size : Arrays.binarySearch(ords, 0, size, ord);
+            if (pos >= 0 && pos < size) return; // already present
+            if (pos < 0) pos = -pos - 1;
+            if (size == ords.length) ords = Arrays.copyOf(ords, size * 2);
+            System.arraycopy(ords, pos, ords, pos + 1, size - pos);
+            ords[pos] = ord;
+            size++;
+        }
+
+        // ord is above every ordinal held
+        void append(int ord) {
+            if (size == ords.length) ords = Arrays.copyOf(ords, size * 2);
+            ords[size++] = ord;
+        }
+
+        // every ordinal of other is above every ordinal held
+        void appendAll(Posting other) {
+            if (size + other.size > ords.length) ords = Arrays.copyOf(ords, Math.max(size * 2, size + other.size));
+            System.arraycopy(other.ords, 0, ords, size, other.size);
+            size += other.size;
+        }
+
+        void remove(int ord) {
+            int pos = Arrays.binarySearch(ords, 0, size, ord);
+            if (pos < 0) return;
+            System.arraycopy(ords, pos + 1, ords, pos, size - pos - 1);
+            size--;
+        }
+    }
+
+    private final Map<String, Posting> postings = new HashMap<>();
+    private final IntLinkedMap<Integer> ordinals = new IntLinkedMap<>();
+    private Student[] byOrdinal = new Student[16];
+    private String[] lowerNames = new String[16];
+    private int nextOrdinal;
+
+    void add(Student s) {
+        if (nextOrdinal == byOrdinal.length) {
+            if (ordinals.size() < nextOrdinal / 2) {
+                compact();
+            } else {
+                byOrdinal = Arrays.copyOf(byOrdinal, nextOrdinal * 2);
+                lowerNames = Arrays.copyOf(lowerNames, nextOrdinal * 2);
+            }
+        }
+        int ord = nextOrdinal++;
+        ordinals.put(s.getKey(), ord);
+        byOrdinal[ord] = s;
+        index(ord, s.getName().toLowerCase());
+    }
+
+    /**
+     * Adds new students in list order. The arrays grow once for the whole
+     * batch, and the batch's postings are gathered apart and then appended to
+     * the index with one lookup per distinct trigram, rather than one per
+     * trigram of every name.
+     */
+    void addAll(List<Student> batch) {
+        int needed = nextOrdinal + batch.size();
+        if (needed > byOrdinal.length && ordinals.size() < nextOrdinal / 2) {
+            compact();
+            needed = nextOrdinal + batch.size();
+        }
+        if (needed > byOrdinal.length) {
+            int capacity = Math.max(needed, byOrdinal.length * 2);
+            byOrdinal = Arrays.copyOf(byOrdinal, capacity);
+            lowerNames = Arrays.copyOf(lowerNames, capacity);
+        }
+        ordinals.reserve(batch.size());
+        Map<String, Posting> fresh = new HashMap<>();
+        for (Student s : batch) {
+            int ord = nextOrdinal++;
+            ordinals.put(s.getKey(), ord);
+            byOrdinal[ord] = s;
+            String lower = s.getName().toLowerCase();
+            lowerNames[ord] = lower;
+            for (String g : grams(lower)) fresh.computeIfAbsent(g, k -> new Posting()).append(ord);
+        }
+        for (Map.Entry<String, Posting> e : fresh.entrySet()) {
+            Posting p = postings.putIfAbsent(e.getKey(), e.getValue());
+            if (p != null) p.appendAll(e.getValue());
+        }
+    }
+
+    void remove(int studentKey) {
+        Integer ord = ordinals.remove(studentKey);
+        if (ord == null) return;
+        unindex(ord);
+        byOrdinal[ord] = null;
+    }
+
+    /** Re-indexes a student whose name changed, keeping its position. */
+    void rename(Student s) {
+        Integer ord = ordinals.get(s.getKey());
+        if (ord == null) {
+            add(s);
+            return;
+        }
+        unindex(ord);
+        index(ord, s.getName().toLowerCase());
+    }
+
+    private void index(int ord, String lower) {
+        lowerNames[ord] = lower;
+        for (String g : grams(lower)) postings.computeIfAbsent(g, k -> new Posting()).insert(ord);
+    }
+
+    private void unindex(int ord) {
+        for (String g : grams(lowerNames[ord])) {
+            Posting p = postings.get(g);
+            if (p == null) continue;
+            p.remove(ord);
+            if (p.size == 0) postings.remove(g);
+        }
+        lowerNames[ord] = null;
+    }
+
+    private static Set<String> grams(String lower) {
+        Set<String> out = new HashSet<>();
+        for (int i = 0; i + GRAM <= lower.length(); i++) out.add(lower.substring(i, i + GRAM));
+        return out;
+    }
+
+    // Renumbers live students densely; ordinals of deleted students are reused
+    private void compact() {
+        Student[] live = new Student[ordinals.size()];
+        int n = 0;
+        for (int i = 0; i < nextOrdinal; i++) {
+            if (byOrdinal[i] != null) live[n++] = byOrdinal[i];
+        }
+        clear(Math.max(16, n * 2));
+        for (Student s : live) add(s);
+    }
+
+    void clear(int capacity) {
+        postings.clear();
+        ordinals.clear();
+        byOrdinal = new Student[capacity];
+        lowerNames = new String[capacity];
+        nextOrdinal = 0;
+    }
+
+    /**
+     * Students whose lower-cased name contains the lower-cased query, in
+     * insertion order, skipping {@code offset} matches and returning at most
+     * {@code limit}.
+     */
+    List<Student> search(String q, int offset, int limit) {
+        String lower = q.toLowerCase();
+        List<Student> out = new ArrayList<>(Math.min(limit, 64));
+        if (limit <= 0) return out;
+        int skip = Math.max(0, offset);
+        if (lower.length() < GRAM) {
+            for (int ord = 0; ord < nextOrdinal; ord++) {
+                String name = lowerNames[ord];
+                if (name == null || !name.contains(lower)) continue;
+                if (skip > 0) { skip--; continue; }
+                out.add(byOrdinal[ord]);
+                if (out.size() == limit) break;
+            }
+            return out;
+        }
+        Posting shortest = null;
+        for (String g : grams(lower)) {
+            Posting p = postings.get(g);
+            if (p == null) return out;
+            if (shortest == null || p.size < shortest.size) shortest = p;
+        }
+        for (int i = 0; i < shortest.size; i++) {
+            int ord = shortest.ords[i];
+            if (!lowerNames[ord].contains(lower)) continue;
+            if (skip > 0) { skip--; continue; }
+            out.add(byOrdinal[ord]);
+            if (out.size() == limit) break;
+        }
+        return out;
+    }
+}
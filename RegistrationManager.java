@@ -2,24 +2,157 @@ package service;
 
 import domain.Course;
 import domain.Enrollment;
+import domain.Ids;
 import domain.Student;
+import domain.Timetable;
+import util.IntLinkedMap;
+import util.IntLinkedSet;
+import util.KeyAllocator;
+import util.Metrics;
+import util.OpTimer;
+import util.SnapshotLog;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
-public class RegistrationManager implements Serializable {
-    private static final long serialVersionUID = 1L;
+/**
+ * Thread-safe registration service.
+ *
+ * Adding or deleting students and courses takes the exclusive structure lock.
+ * Enroll/unenroll take the shared structure lock plus a striped per-course
+ * lock, so enrollments into different courses run in parallel while the
+ * capacity check and seat claim for one course stay atomic.
+ *
+ * A full course queues new requests on its waitlist. Whenever a seat frees
+ * up (unenroll, student deletion, capacity increase) the first waiting
+ * students are enrolled under the same lock that freed it.
+ *
+ * Listings are read from {@link #snapshot()}: append-only logs of students,
+ * courses and enrollments where a removal stamps the entity with the current
+ * epoch instead of unlinking it. A snapshot takes every course lock, so it
+ * waits for in-flight operations and briefly holds up new ones, captures the
+ * logs and moves to the next epoch in constant time, then reads without any
+ * lock.
+ *
+ * Courses may have weekly meeting times and prerequisite courses. A student
+ * whose schedule clashes with a course's meeting times, or who holds no
+ * enrollment in one of its prerequisites (directly or indirectly required),
+ * is turned away by enroll, by batches and when their turn on a waitlist
+ * comes; see {@link ScheduleValidator}. A clash check and the enrollment it
+ * allows run under a striped per-student lock, taken after the course lock,
+ * so two courses enrolled into concurrently cannot clash either. The rules
+ * apply when enrolling: later changes leave existing enrollments alone.
+ *
+ * Schedules and rosters are served from a bounded LRU cache of read-only
+ * lists. Every change to a student's or course's enrollments invalidates
+ * exactly that student's schedule and that course's roster. The lists hold
+ * the live entities, so renames and capacity changes need no invalidation.
+ *
+ * Entities are keyed internally by int keys; string ids ("S1000") are
+ * parsed and produced only at this public API.
+ */
+public class RegistrationManager implements RegistrationService, Serializable {
+    private static final long serialVersionUID = 3L;
 
-    private final Map<String, Student> students = new LinkedHashMap<>();
-    private final Map<String, Course> courses = new LinkedHashMap<>();
-    private final List<Enrollment> enrollments = new ArrayList<>();
+    private static final int COURSE_LOCK_STRIPES = 64; // power of two
+    public static final int DEFAULT_VIEW_CACHE_SIZE = 4096;
+    private static final int[] ALL_STRIPES = new int[COURSE_LOCK_STRIPES];
+    static {
+        for (int i = 0; i < COURSE_LOCK_STRIPES; i++) ALL_STRIPES[i] = i;
+    }
+
+    private static final String FULL = "Course is full.";
+    private static final String DUPLICATE = "Student already enrolled in this course.";
+    private static final String STUDENT_NOT_FOUND = "Student not found.";
+    private static final String COURSE_NOT_FOUND = "Course not found.";
+    private static final String WAITLISTED = "WAITLISTED:";
+    private static final String MISSING_PREREQUISITE = "Missing prerequisite ";
+    private static final String CONFLICT = "Schedule conflict with ";
+
+    // Instruments, registered once per process; see util.Metrics. Sub-microsecond
+    // reads are timed one call in 64 and enroll-path operations one in 8, so the
+    // clock reads stay a small fraction of the work; rarer operations every call.
+    private static final int HOT_SAMPLE_PERIOD = 64;
+    private static final int ENROLL_SAMPLE_PERIOD = 8;
+    private static final OpTimer T_ADD_STUDENT = Metrics.timer("manager.addStudent");
+    private static final OpTimer T_ADD_STUDENTS = Metrics.timer("manager.addStudents");
+    private static final OpTimer T_LIST_STUDENTS = Metrics.timer("manager.listStudents");
+    private static final OpTimer T_FIND_STUDENT_BY_ID = Metrics.timer("manager.findStudentById", HOT_SAMPLE_PERIOD);
+    private static final OpTimer T_SEARCH_STUDENTS_BY_NAME = Metrics.timer("manager.searchStudentsByName");
+    private static final OpTimer T_RENAME_STUDENT = Metrics.timer("manager.renameStudent");
+    private static final OpTimer T_DELETE_STUDENT = Metrics.timer("manager.deleteStudent");
+    private static final OpTimer T_ADD_COURSE = Metrics.timer("manager.addCourse");
+    private static final OpTimer T_ADD_COURSES = Metrics.timer("manager.addCourses");
+    private static final OpTimer T_LIST_COURSES = Metrics.timer("manager.listCourses");
+    private static final OpTimer T_FIND_COURSE_BY_ID = Metrics.timer("manager.findCourseById", HOT_SAMPLE_PERIOD);
+    private static final OpTimer T_DELETE_COURSE = Metrics.timer("manager.deleteCourse");
+    private static final OpTimer T_SET_COURSE_CAPACITY = Metrics.timer("manager.setCourseCapacity", ENROLL_SAMPLE_PERIOD);
+    private static final OpTimer T_SET_COURSE_RULES = Metrics.timer("manager.setCourseRules");
+    private static final OpTimer T_ENROLL = Metrics.timer("manager.enroll", ENROLL_SAMPLE_PERIOD);
+    private static final OpTimer T_ENROLL_BATCH = Metrics.timer("manager.enrollBatch");
+    private static final OpTimer T_ENROLL_ALL = Metrics.timer("manager.enrollAll");
+    private static final OpTimer T_UNENROLL = Metrics.timer("manager.unenroll", ENROLL_SAMPLE_PERIOD);
+    private static final OpTimer T_UNENROLL_ALL = Metrics.timer("manager.unenrollAll");
+    private static final OpTimer T_LIST_ENROLLMENTS = Metrics.timer("manager.listEnrollments");
+    private static final OpTimer T_GET_COURSES_FOR_STUDENT = Metrics.timer("manager.getCoursesForStudent", HOT_SAMPLE_PERIOD);
+    private static final OpTimer T_GET_STUDENTS_FOR_COURSE = Metrics.timer("manager.getStudentsForCourse", HOT_SAMPLE_PERIOD);
+    private static final OpTimer T_GET_WAITLIST_POSITION = Metrics.timer("manager.getWaitlistPosition", HOT_SAMPLE_PERIOD);
+    private static final OpTimer T_GET_WAITLIST = Metrics.timer("manager.getWaitlist", ENROLL_SAMPLE_PERIOD);
+    private static final OpTimer T_LEAVE_WAITLIST = Metrics.timer("manager.leaveWaitlist", ENROLL_SAMPLE_PERIOD);
+    private static final OpTimer T_SNAPSHOT = Metrics.timer("manager.snapshot", ENROLL_SAMPLE_PERIOD);
+    private static final LongAdder C_ENROLLED = Metrics.counter("manager.enroll.enrolled");
+    private static final LongAdder C_WAITLISTED = Metrics.counter("manager.enroll.waitlisted");
+    private static final LongAdder C_REJECTED_DUPLICATE = Metrics.counter("manager.enroll.rejected.duplicate");
+    private static final LongAdder C_REJECTED_FULL = Metrics.counter("manager.enroll.rejected.full");
+    private static final LongAdder C_REJECTED_STUDENT_NOT_FOUND = Metrics.counter("manager.enroll.rejected.studentNotFound");
+    private static final LongAdder C_REJECTED_COURSE_NOT_FOUND = Metrics.counter("manager.enroll.rejected.courseNotFound");
+    private static final LongAdder C_REJECTED_PREREQUISITE = Metrics.counter("manager.enroll.rejected.prerequisite");
+    private static final LongAdder C_REJECTED_CONFLICT = Metrics.counter("manager.enroll.rejected.conflict");
+    private static final LongAdder C_REJECTED_NOT_ENROLLED = Metrics.counter("manager.unenroll.rejected.notEnrolled");
+    private static final LongAdder C_PROMOTED = Metrics.counter("manager.waitlist.promoted");
+    private static final LongAdder C_PROMOTION_DROPPED = Metrics.counter("manager.waitlist.dropped");
+    private static final LongAdder C_BATCH_APPLIED = Metrics.counter("manager.batch.applied");
+    private static final LongAdder C_BATCH_REJECTED = Metrics.counter("manager.batch.rejected");
+    private static final LongAdder[] C_BATCH_FAILURES = new LongAdder[BatchResult.Status.values().length];
+    static {
+        for (BatchResult.Status status : BatchResult.Status.values()) {
+            C_BATCH_FAILURES[status.ordinal()] = Metrics.counter("manager.batch.item." + status.name().toLowerCase());
+        }
+    }
+
+    private final IntLinkedMap<Student> students = new IntLinkedMap<>();
+    private final IntLinkedMap<Course> courses = new IntLinkedMap<>();
+    private final EnrollmentIndex enrollments = new EnrollmentIndex();
+    private final IntLinkedMap<Waitlist> waitlists = new IntLinkedMap<>();
+
+    // Key allocators; their watermarks are saved with the data so that a key is
+    // never handed out twice, even after its entity was deleted
+    private transient KeyAllocator studentKeys;
+    private transient KeyAllocator courseKeys;
+    private transient KeyAllocator enrollmentKeys;
+    // (student, course, enrollment) watermarks, set only while serializing
+    private int[] keyWatermarks;
 
-    // Simple id generators
-    private transient AtomicInteger studentSeq = new AtomicInteger(1000);
-    private transient AtomicInteger courseSeq = new AtomicInteger(2000);
-    private transient AtomicInteger enrollSeq = new AtomicInteger(3000);
+    private transient ReentrantReadWriteLock structureLock;
+    private transient Object[] courseLocks;
+    private transient Object[] studentLocks;
+    private transient List<ChangeListener> listeners;
+    private transient NameIndex nameIndex;
+    private transient AtomicLong epoch;
+    private transient SnapshotLog<Student> studentLog;
+    private transient SnapshotLog<Course> courseLog;
+    private transient SnapshotLog<Enrollment> enrollmentLog;
+    private transient ViewCache viewCache;
+    private transient ScheduleValidator validator;
 
     public RegistrationManager() {
         ensureTransientInits();
@@ -27,122 +160,1205 @@ public class RegistrationManager implements Serializable {
 
     // Called after deserialization (if needed)
     private void ensureTransientInits() {
-        if (studentSeq == null) studentSeq = new AtomicInteger(1000 + students.size());
-        if (courseSeq == null) courseSeq = new AtomicInteger(2000 + courses.size());
-        if (enrollSeq == null) enrollSeq = new AtomicInteger(3000 + enrollments.size());
+        if (studentKeys == null) {
+            studentKeys = new KeyAllocator(1000);
+            courseKeys = new KeyAllocator(2000);
+            enrollmentKeys = new KeyAllocator(3000);
+            // deserialized: saves from before watermarks were kept have only the keys in use
+            for (Student s : students) studentKeys.markUsed(s.getKey());
+            for (Course c : courses) courseKeys.markUsed(c.getKey());
+            for (Enrollment e : enrollments.all()) enrollmentKeys.markUsed(e.getKey());
+            if (keyWatermarks != null) {
+                studentKeys.markUsedBelow(keyWatermarks[0]);
+                courseKeys.markUsedBelow(keyWatermarks[1]);
+                enrollmentKeys.markUsedBelow(keyWatermarks[2]);
+            }
+            keyWatermarks = null;
+        }
+        if (structureLock == null) structureLock = new ReentrantReadWriteLock();
+        if (courseLocks == null) {
+            courseLocks = new Object[COURSE_LOCK_STRIPES];
+            for (int i = 0; i < courseLocks.length; i++) courseLocks[i] = new Object();
+        }
+        if (studentLocks == null) {
+            studentLocks = new Object[COURSE_LOCK_STRIPES]; // same striping as courses
+            for (int i = 0; i < studentLocks.length; i++) studentLocks[i] = new Object();
+        }
+        if (listeners == null) listeners = new CopyOnWriteArrayList<>();
+        if (nameIndex == null) {
+            nameIndex = new NameIndex();
+            for (Student s : students) nameIndex.add(s);
+        }
+        if (viewCache == null) viewCache = new ViewCache(DEFAULT_VIEW_CACHE_SIZE);
+        if (validator == null) validator = new ScheduleValidator(courses, enrollments);
+        if (epoch == null) {
+            epoch = new AtomicLong(1);
+            studentLog = new SnapshotLog<>();
+            for (Student s : students) studentLog.add(s);
+            courseLog = new SnapshotLog<>();
+            for (Course c : courses) courseLog.add(c);
+            enrollmentLog = new SnapshotLog<>();
+            for (Enrollment e : enrollments.all()) enrollmentLog.add(e);
+        }
+    }
+
+    /** Replaces the schedule/roster cache with an empty one holding up to maxViews lists; 0 turns caching off. */
+    public void setViewCacheSize(int maxViews) {
+        runExclusive(() -> viewCache = new ViewCache(maxViews));
+    }
+
+    public CacheStats getViewCacheStats() { return viewCache.stats(); }
+
+    private static long scheduleKey(int studentKey) { return studentKey & 0xFFFFFFFFL; }
+    private static long rosterKey(int courseKey) { return (1L << 32) | (courseKey & 0xFFFFFFFFL); }
+
+    // Caller has just changed the student's enrollments in the course
+    private void invalidateViews(int studentKey, int courseKey) {
+        ViewCache cache = viewCache;
+        cache.invalidate(scheduleKey(studentKey));
+        cache.invalidate(rosterKey(courseKey));
+    }
+
+    public void addChangeListener(ChangeListener listener) { listeners.add(listener); }
+    public void removeChangeListener(ChangeListener listener) { listeners.remove(listener); }
+
+    // Called by every changing operation once it has released its locks, unless
+    // the caller still holds the structure lock (e.g. inside runExclusive)
+    private void locksReleased() {
+        if (structureLock.getReadHoldCount() > 0 || structureLock.isWriteLockedByCurrentThread()) return;
+        for (ChangeListener l : listeners) l.locksReleased();
+    }
+
+    /** Runs an action while no other operation on this manager is in flight. */
+    public void runExclusive(Runnable action) {
+        structureLock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Point-in-time view of all students, courses and enrollments. Taking it
+     * holds the shared structure lock and all course locks for a constant
+     * amount of work: it waits for operations in flight, and writers wait for
+     * it meanwhile. Reading the snapshot takes no lock.
+     */
+    public RegistrationSnapshot snapshot() {
+        return snapshot(false);
     }
 
-    public String generateStudentId() { ensureTransientInits(); return "S" + studentSeq.getAndIncrement(); }
-    public String generateCourseId() { ensureTransientInits(); return "C" + courseSeq.getAndIncrement(); }
-    public String generateEnrollmentId() { ensureTransientInits(); return "E" + enrollSeq.getAndIncrement(); }
+    /** This manager's {@link #snapshot()}. */
+    public RegistrationService.Listings listings() {
+        return snapshot();
+    }
+
+    /**
+     * Like {@link #snapshot()}; forSaving also copies every waitlist and the
+     * fields of every student and course (name, email, capacity, meetings,
+     * prerequisites) under the same locks, so a save sees one instant even
+     * while students are renamed or courses changed. This costs time in
+     * proportion to the data, with writers held up meanwhile.
+     */
+    public RegistrationSnapshot snapshot(boolean forSaving) {
+        long t0 = T_SNAPSHOT.start();
+        structureLock.readLock().lock();
+        try {
+            return withStripes(courseLocks, ALL_STRIPES, 0, () -> {
+                long e = epoch.getAndIncrement();
+                SnapshotLog.View<Student> studentView = studentLog.view(e);
+                SnapshotLog.View<Course> courseView = courseLog.view(e);
+                List<RegistrationSnapshot.StudentState> studentStates = null;
+                List<RegistrationSnapshot.CourseState> courseStates = null;
+                if (forSaving) {
+                    // field writers hold the exclusive structure lock or the course's lock
+                    studentStates = new ArrayList<>(studentView.size());
+                    for (Student s : studentView) studentStates.add(new RegistrationSnapshot.StudentState(s));
+                    courseStates = new ArrayList<>(courseView.size());
+                    for (Course c : courseView) courseStates.add(new RegistrationSnapshot.CourseState(c));
+                }
+                // keys are allocated before their entities are added, so these cover the views
+                return new RegistrationSnapshot(studentView, courseView, enrollmentLog.view(e),
+                        forSaving ? copyWaitlistsLocked() : null,
+                        forSaving ? Collections.unmodifiableList(studentStates) : null,
+                        forSaving ? Collections.unmodifiableList(courseStates) : null,
+                        studentKeys.watermark(), courseKeys.watermark(), enrollmentKeys.watermark());
+            });
+        } finally {
+            structureLock.readLock().unlock();
+            T_SNAPSHOT.stop(t0);
+        }
+    }
+
+    // (studentKey, courseKey, priority) per waiting student, course by course in line order.
+    // Caller holds every course lock.
+    private int[] copyWaitlistsLocked() {
+        int n = 0;
+        for (Waitlist w : waitlists) n += w.size();
+        int[] out = new int[n * 3];
+        int i = 0;
+        for (Course c : courses) {
+            Waitlist w = waitlists.get(c.getKey());
+            for (int key : w.students()) {
+                out[i++] = key;
+                out[i++] = c.getKey();
+                out[i++] = w.priorityOf(key);
+            }
+        }
+        return out;
+    }
+
+    private Object courseLock(int courseKey) {
+        return courseLocks[stripe(courseKey)];
+    }
+
+    private Object studentLock(int studentKey) {
+        return studentLocks[stripe(studentKey)];
+    }
+
+    private static int stripe(int key) {
+        int h = key * 0x9E3779B9;
+        h ^= (h >>> 16);
+        return h & (COURSE_LOCK_STRIPES - 1);
+    }
+
+    // Runs body holding the locks of all given courses, taken in stripe order so
+    // that two batches never wait on each other in a cycle
+    private <T> T withCourseLocks(int[] courseKeys, Supplier<T> body) {
+        return withStripes(courseLocks, distinctStripes(courseKeys), 0, body);
+    }
+
+    // Likewise for students; student locks are only ever taken after course locks
+    private <T> T withStudentLocks(int[] studentKeys, Supplier<T> body) {
+        return withStripes(studentLocks, distinctStripes(studentKeys), 0, body);
+    }
+
+    private static int[] distinctStripes(int[] keys) {
+        int[] stripes = new int[keys.length];
+        for (int i = 0; i < stripes.length; i++) stripes[i] = stripe(keys[i]);
+        Arrays.sort(stripes);
+        int distinct = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            if (i == 0 || stripes[i] != stripes[i - 1]) stripes[distinct++] = stripes[i];
+        }
+        return Arrays.copyOf(stripes, distinct);
+    }
+
+    private <T> T withStripes(Object[] locks, int[] stripes, int i, Supplier<T> body) {
+        if (i == stripes.length) return body.get();
+        synchronized (locks[stripes[i]]) {
+            return withStripes(locks, stripes, i + 1, body);
+        }
+    }
+
+    public String generateStudentId() { return Ids.student(studentKeys.next()); }
+    public String generateCourseId() { return Ids.course(courseKeys.next()); }
+    public String generateEnrollmentId() { return Ids.enrollment(enrollmentKeys.next()); }
+
+    /**
+     * Makes this manager allocate only keys k with k % count == index, each
+     * above every key it handed out or holds, so that count managers
+     * partitioned this way never hand out the same id. Used by
+     * {@link ShardedRegistrationManager}; not persisted.
+     */
+    public void setKeyPartition(int index, int count) {
+        if (count < 1 || index < 0 || index >= count) {
+            throw new IllegalArgumentException("Key partition " + index + " of " + count);
+        }
+        runExclusive(() -> {
+            studentKeys.setPartition(index, count);
+            courseKeys.setPartition(index, count);
+            enrollmentKeys.setPartition(index, count);
+        });
+    }
+
+    /**
+     * Makes sure no student, course or enrollment key below the given
+     * watermarks is handed out again; pass the watermarks of a
+     * {@link RegistrationSnapshot} after restoring it.
+     */
+    public void restoreKeyWatermarks(int studentWatermark, int courseWatermark, int enrollmentWatermark) {
+        runExclusive(() -> {
+            studentKeys.markUsedBelow(studentWatermark);
+            courseKeys.markUsedBelow(courseWatermark);
+            enrollmentKeys.markUsedBelow(enrollmentWatermark);
+        });
+    }
+
+    // Another entity with the key would be silently replaced in the map
+    private static IllegalStateException keyInUse(String id) {
+        return new IllegalStateException("Id " + id + " is already in use");
+    }
 
     // Student operations
     public Student addStudent(String name, String email) {
-        String id = generateStudentId();
-        Student s = new Student(id, name, email);
-        students.put(id, s);
+        long t0 = T_ADD_STUDENT.start();
+        Student s = new Student(studentKeys.next(), name, email);
+        structureLock.writeLock().lock();
+        try {
+            if (students.get(s.getKey()) != null) throw keyInUse(s.getStudentId());
+            putStudent(s);
+            for (ChangeListener l : listeners) l.studentAdded(s);
+        } finally {
+            structureLock.writeLock().unlock();
+            T_ADD_STUDENT.stop(t0);
+            locksReleased();
+        }
         return s;
     }
 
-    public List<Student> listStudents() { return new ArrayList<>(students.values()); }
+    /** All students, copied from a fresh {@link #snapshot()}; page or stream the snapshot for large listings. */
+    public List<Student> listStudents() {
+        long t0 = T_LIST_STUDENTS.start();
+        List<Student> all = snapshot().students().toList();
+        T_LIST_STUDENTS.stop(t0);
+        return all;
+    }
 
-    public Student findStudentById(String id) { return students.get(id); }
+    public Student findStudentById(String id) {
+        long t0 = T_FIND_STUDENT_BY_ID.start();
+        structureLock.readLock().lock();
+        try {
+            return students.get(Ids.parseStudent(id));
+        } finally {
+            structureLock.readLock().unlock();
+            T_FIND_STUDENT_BY_ID.stop(t0);
+        }
+    }
 
     public List<Student> searchStudentsByName(String q) {
-        String lower = q.toLowerCase();
-        return students.values().stream()
-                .filter(s -> s.getName().toLowerCase().contains(lower))
-                .collect(Collectors.toList());
+        return searchStudentsByName(q, 0, Integer.MAX_VALUE);
+    }
+
+    /** One page of name matches in insertion order; a short query stops scanning once the page is full. */
+    public List<Student> searchStudentsByName(String q, int offset, int limit) {
+        long t0 = T_SEARCH_STUDENTS_BY_NAME.start();
+        structureLock.readLock().lock();
+        try {
+            return nameIndex.search(q, offset, limit);
+        } finally {
+            structureLock.readLock().unlock();
+            T_SEARCH_STUDENTS_BY_NAME.stop(t0);
+        }
+    }
+
+    /** Renames a student and keeps the name index current; returns false if the student does not exist. */
+    public boolean renameStudent(String studentId, String name) {
+        long t0 = T_RENAME_STUDENT.start();
+        structureLock.writeLock().lock();
+        try {
+            Student s = students.get(Ids.parseStudent(studentId));
+            if (s == null) return false;
+            s.setName(name);
+            nameIndex.rename(s);
+            for (ChangeListener l : listeners) l.studentUpdated(s);
+            return true;
+        } finally {
+            structureLock.writeLock().unlock();
+            T_RENAME_STUDENT.stop(t0);
+            locksReleased();
+        }
     }
 
+    /** Deletes the student with their enrollments and waitlist entries; freed seats go to waiting students. */
     public boolean deleteStudent(String studentId) {
-        Student removed = students.remove(studentId);
-        if (removed == null) return false;
-        // remove enrollments and update courses
-        List<Enrollment> toRemove = enrollments.stream()
-                .filter(e -> e.getStudentId().equals(studentId))
-                .collect(Collectors.toList());
-        for (Enrollment e : toRemove) {
-            unenroll(e.getStudentId(), e.getCourseId());
+        return deleteStudent(studentId, true);
+    }
+
+    private boolean deleteStudent(String studentId, boolean promote) {
+        long t0 = T_DELETE_STUDENT.start();
+        structureLock.writeLock().lock();
+        try {
+            int key = Ids.parseStudent(studentId);
+            Student removed = students.remove(key);
+            if (removed == null) return false;
+            studentLog.remove(removed, epoch.get());
+            nameIndex.remove(key);
+            for (Course c : courses) {
+                Waitlist w = waitlists.get(c.getKey());
+                if (w != null && w.remove(key)) {
+                    for (ChangeListener l : listeners) l.waitlistLeft(studentId, c.getCourseId());
+                }
+            }
+            // remove enrollments and update courses
+            List<Enrollment> dropped = enrollments.forStudent(key);
+            for (Enrollment e : dropped) {
+                unenrollLocked(e.getStudentKey(), e.getCourseKey());
+                for (ChangeListener l : listeners) l.unenrolled(studentId, Ids.course(e.getCourseKey()));
+            }
+            enrollments.dropStudent(key);
+            viewCache.invalidate(scheduleKey(key));
+            for (ChangeListener l : listeners) l.studentDeleted(studentId);
+            if (promote) {
+                for (Enrollment e : dropped) promoteLocked(courses.get(e.getCourseKey()));
+            }
+            return true;
+        } finally {
+            structureLock.writeLock().unlock();
+            T_DELETE_STUDENT.stop(t0);
+            locksReleased();
         }
-        return true;
     }
 
     // Course operations
     public Course addCourse(String name, int capacity) {
-        String id = generateCourseId();
-        Course c = new Course(id, name, capacity);
-        courses.put(id, c);
+        return addCourse(name, capacity, Timetable.NONE, Collections.emptyList());
+    }
+
+    /**
+     * Adds a course with weekly meeting times and prerequisites. Throws
+     * IllegalArgumentException if a prerequisite does not exist.
+     */
+    public Course addCourse(String name, int capacity, Timetable meetings, List<String> prerequisiteIds) {
+        long t0 = T_ADD_COURSE.start();
+        Course c = new Course(courseKeys.next(), name, capacity);
+        c.setMeetings(meetings);
+        structureLock.writeLock().lock();
+        try {
+            if (courses.get(c.getKey()) != null) throw keyInUse(c.getCourseId());
+            if (!prerequisiteIds.isEmpty()) c.setPrerequisiteKeys(prerequisiteKeys(c, prerequisiteIds));
+            putCourse(c);
+            for (ChangeListener l : listeners) l.courseAdded(c);
+        } finally {
+            structureLock.writeLock().unlock();
+            T_ADD_COURSE.stop(t0);
+            locksReleased();
+        }
         return c;
     }
 
-    public List<Course> listCourses() { return new ArrayList<>(courses.values()); }
+    /** All courses, copied from a fresh {@link #snapshot()}. */
+    public List<Course> listCourses() {
+        long t0 = T_LIST_COURSES.start();
+        List<Course> all = snapshot().courses().toList();
+        T_LIST_COURSES.stop(t0);
+        return all;
+    }
 
-    public Course findCourseById(String id) { return courses.get(id); }
+    public Course findCourseById(String id) {
+        long t0 = T_FIND_COURSE_BY_ID.start();
+        structureLock.readLock().lock();
+        try {
+            return courses.get(Ids.parseCourse(id));
+        } finally {
+            structureLock.readLock().unlock();
+            T_FIND_COURSE_BY_ID.stop(t0);
+        }
+    }
 
     public boolean deleteCourse(String courseId) {
-        Course removed = courses.remove(courseId);
-        if (removed == null) return false;
-        // remove enrollments and update students
-        List<Enrollment> toRemove = enrollments.stream()
-                .filter(e -> e.getCourseId().equals(courseId))
-                .collect(Collectors.toList());
-        for (Enrollment e : toRemove) {
-            unenroll(e.getStudentId(), e.getCourseId());
+        long t0 = T_DELETE_COURSE.start();
+        structureLock.writeLock().lock();
+        try {
+            int key = Ids.parseCourse(courseId);
+            Course removed = courses.remove(key);
+            if (removed == null) return false;
+            courseLog.remove(removed, epoch.get());
+            Waitlist line = waitlists.remove(key);
+            if (line != null) {
+                for (int student : line.students()) {
+                    for (ChangeListener l : listeners) l.waitlistLeft(Ids.student(student), courseId);
+                }
+            }
+            // remove enrollments and update students
+            for (Enrollment e : enrollments.forCourse(key)) {
+                unenrollLocked(e.getStudentKey(), e.getCourseKey());
+                for (ChangeListener l : listeners) l.unenrolled(Ids.student(e.getStudentKey()), courseId);
+            }
+            enrollments.dropCourse(key);
+            // courses that required it no longer do
+            for (Course other : courses) {
+                int[] required = other.getPrerequisiteKeys();
+                int[] kept = Arrays.stream(required).filter(k -> k != key).toArray();
+                if (kept.length < required.length) other.setPrerequisiteKeys(kept);
+            }
+            validator.prerequisitesChanged();
+            viewCache.invalidate(rosterKey(key));
+            for (ChangeListener l : listeners) l.courseDeleted(courseId);
+            return true;
+        } finally {
+            structureLock.writeLock().unlock();
+            T_DELETE_COURSE.stop(t0);
+            locksReleased();
         }
-        return true;
     }
 
     // Enrollment operations
+
+    /**
+     * Enrolls the student, or queues them on the waitlist if the course is
+     * full. Returns "OK:&lt;enrollmentId&gt;", "WAITLISTED:&lt;position&gt;" or an
+     * error message.
+     */
     public String enroll(String studentId, String courseId) {
-        Student s = findStudentById(studentId);
-        Course c = findCourseById(courseId);
-        if (s == null) return "Student not found.";
-        if (c == null) return "Course not found.";
-        if (!c.hasSpace()) return "Course is full.";
+        return enroll(studentId, courseId, 0);
+    }
+
+    /**
+     * Like {@link #enroll(String, String)}; if the student has to wait they are
+     * served before students of lower priority and after earlier students of
+     * the same priority. A student already waiting keeps their place.
+     */
+    public String enroll(String studentId, String courseId, int priority) {
+        long t0 = T_ENROLL.start();
+        String result = enrollOrWait(studentId, courseId, priority);
+        countEnrollResult(result);
+        T_ENROLL.stop(t0);
+        locksReleased();
+        return result;
+    }
+
+    private String enrollOrWait(String studentId, String courseId, int priority) {
+        structureLock.readLock().lock();
+        try {
+            Student s = students.get(Ids.parseStudent(studentId));
+            Course c = courses.get(Ids.parseCourse(courseId));
+            if (s == null) return STUDENT_NOT_FOUND;
+            if (c == null) return COURSE_NOT_FOUND;
+            synchronized (courseLock(c.getKey())) {
+                String result = enrollLocked(s, c);
+                if (!result.equals(FULL)) return result;
+                Waitlist w = waitlists.get(c.getKey());
+                if (w.contains(s.getKey())) return WAITLISTED + w.position(s.getKey());
+                int position = w.add(s.getKey(), priority);
+                for (ChangeListener l : listeners) l.waitlisted(studentId, courseId, priority);
+                return WAITLISTED + position;
+            }
+        } finally {
+            structureLock.readLock().unlock();
+        }
+    }
+
+    private static void countEnrollResult(String result) {
+        if (result.startsWith("OK:")) C_ENROLLED.increment();
+        else if (result.startsWith(WAITLISTED)) C_WAITLISTED.increment();
+        else if (result.equals(DUPLICATE)) C_REJECTED_DUPLICATE.increment();
+        else if (result.equals(FULL)) C_REJECTED_FULL.increment();
+        else if (result.equals(STUDENT_NOT_FOUND)) C_REJECTED_STUDENT_NOT_FOUND.increment();
+        else if (result.equals(COURSE_NOT_FOUND)) C_REJECTED_COURSE_NOT_FOUND.increment();
+        else if (result.startsWith(MISSING_PREREQUISITE)) C_REJECTED_PREREQUISITE.increment();
+        else if (result.startsWith(CONFLICT)) C_REJECTED_CONFLICT.increment();
+    }
+
+    // Caller holds the course's lock or the exclusive structure lock
+    private String enrollLocked(Student s, Course c) {
         // prevent duplicate
-        boolean already = enrollments.stream()
-                .anyMatch(en -> en.getStudentId().equals(studentId) && en.getCourseId().equals(courseId));
-        if (already) return "Student already enrolled in this course.";
-        // create enrollment
-        String eId = generateEnrollmentId();
-        Enrollment en = new Enrollment(eId, studentId, courseId);
+        if (enrollments.contains(s.getKey(), c.getKey())) return DUPLICATE;
+        // waiting students get freed seats first
+        promoteLocked(c);
+        if (enrollments.contains(s.getKey(), c.getKey())) return DUPLICATE;
+        return enrollCheckedLocked(s, c);
+    }
+
+    // Enrolls the student if the course has space and its rules allow it; returns
+    // "OK:<enrollmentId>", FULL or the broken rule. Caller holds the course's lock
+    // or the exclusive structure lock.
+    private String enrollCheckedLocked(Student s, Course c) {
+        if (c.getMeetings().isEmpty()) return enrollIfAllowedLocked(s, c);
+        synchronized (studentLock(s.getKey())) {
+            return enrollIfAllowedLocked(s, c);
+        }
+    }
+
+    private String enrollIfAllowedLocked(Student s, Course c) {
+        int missing = validator.missingPrerequisite(s, c, null);
+        if (missing >= 0) return MISSING_PREREQUISITE + Ids.course(missing) + ".";
+        int clash = validator.conflictingCourse(s, c, null);
+        if (clash >= 0) return CONFLICT + Ids.course(clash) + ".";
+        if (!c.hasSpace()) return FULL;
+        return "OK:" + addEnrollmentLocked(s, c).getEnrollmentId();
+    }
+
+    // Caller holds the course's lock or the exclusive structure lock
+    private Enrollment addEnrollmentLocked(Student s, Course c) {
+        return addEnrollmentLocked(s, c, LocalDateTime.now());
+    }
+
+    private Enrollment addEnrollmentLocked(Student s, Course c, LocalDateTime timestamp) {
+        Enrollment en = new Enrollment(enrollmentKeys.next(), s.getKey(), c.getKey(), timestamp);
         enrollments.add(en);
-        s.enrollCourse(courseId);
-        c.addStudent(studentId);
-        return "OK:" + eId;
+        enrollmentLog.add(en);
+        s.enrollCourse(c.getKey());
+        c.addStudent(s.getKey());
+        invalidateViews(s.getKey(), c.getKey());
+        for (ChangeListener l : listeners) l.enrolled(en);
+        return en;
+    }
+
+    // Fills free seats from the head of the waitlist. A student whose schedule
+    // now clashes with the course, or who dropped a prerequisite, leaves the
+    // line instead. Caller holds the course's lock or the exclusive structure
+    // lock, but no student lock.
+    private void promoteLocked(Course c) {
+        if (c == null) return;
+        Waitlist w = waitlists.get(c.getKey());
+        while (c.hasSpace() && !w.isEmpty()) {
+            Student s = students.get(w.poll());
+            if (s == null) continue;
+            for (ChangeListener l : listeners) l.waitlistLeft(s.getStudentId(), c.getCourseId());
+            if (enrollments.contains(s.getKey(), c.getKey())) continue;
+            if (enrollCheckedLocked(s, c).startsWith("OK:")) {
+                C_PROMOTED.increment();
+            } else {
+                C_PROMOTION_DROPPED.increment();
+            }
+        }
+    }
+
+    /** 1-based waitlist position of the student in the course, or 0 if not waiting. */
+    public int getWaitlistPosition(String studentId, String courseId) {
+        long t0 = T_GET_WAITLIST_POSITION.start();
+        structureLock.readLock().lock();
+        try {
+            int courseKey = Ids.parseCourse(courseId);
+            Waitlist w = waitlists.get(courseKey);
+            if (w == null) return 0;
+            synchronized (courseLock(courseKey)) {
+                return w.position(Ids.parseStudent(studentId));
+            }
+        } finally {
+            structureLock.readLock().unlock();
+            T_GET_WAITLIST_POSITION.stop(t0);
+        }
     }
 
+    /** Students waiting for the course, in the order they will be enrolled. */
+    public List<Student> getWaitlist(String courseId) {
+        long t0 = T_GET_WAITLIST.start();
+        structureLock.readLock().lock();
+        try {
+            int courseKey = Ids.parseCourse(courseId);
+            Waitlist w = waitlists.get(courseKey);
+            if (w == null) return new ArrayList<>();
+            int[] line;
+            synchronized (courseLock(courseKey)) {
+                line = w.students();
+            }
+            List<Student> out = new ArrayList<>(line.length);
+            for (int key : line) out.add(students.get(key));
+            return out;
+        } finally {
+            structureLock.readLock().unlock();
+            T_GET_WAITLIST.stop(t0);
+        }
+    }
+
+    public boolean leaveWaitlist(String studentId, String courseId) {
+        long t0 = T_LEAVE_WAITLIST.start();
+        structureLock.readLock().lock();
+        try {
+            int courseKey = Ids.parseCourse(courseId);
+            Waitlist w = waitlists.get(courseKey);
+            if (w == null) return false;
+            synchronized (courseLock(courseKey)) {
+                if (!w.remove(Ids.parseStudent(studentId))) return false;
+                for (ChangeListener l : listeners) l.waitlistLeft(studentId, courseId);
+                return true;
+            }
+        } finally {
+            structureLock.readLock().unlock();
+            T_LEAVE_WAITLIST.stop(t0);
+            locksReleased();
+        }
+    }
+
+    /**
+     * Changes a course's capacity; if seats open up, waiting students are
+     * enrolled right away. Returns false if the course does not exist.
+     */
+    public boolean setCourseCapacity(String courseId, int capacity) {
+        long t0 = T_SET_COURSE_CAPACITY.start();
+        structureLock.readLock().lock();
+        try {
+            Course c = courses.get(Ids.parseCourse(courseId));
+            if (c == null) return false;
+            synchronized (courseLock(c.getKey())) {
+                c.setCapacity(capacity);
+                for (ChangeListener l : listeners) l.courseUpdated(c);
+                promoteLocked(c);
+                return true;
+            }
+        } finally {
+            structureLock.readLock().unlock();
+            T_SET_COURSE_CAPACITY.stop(t0);
+            locksReleased();
+        }
+    }
+
+    /**
+     * Sets the course's weekly meeting times ({@link Timetable#NONE} for none).
+     * Enrolled students stay enrolled even if the new times clash with their
+     * schedules. Returns false if the course does not exist.
+     */
+    public boolean setCourseMeetings(String courseId, Timetable meetings) {
+        long t0 = T_SET_COURSE_RULES.start();
+        structureLock.writeLock().lock();
+        try {
+            Course c = courses.get(Ids.parseCourse(courseId));
+            if (c == null) return false;
+            c.setMeetings(meetings);
+            for (ChangeListener l : listeners) l.courseUpdated(c);
+            return true;
+        } finally {
+            structureLock.writeLock().unlock();
+            T_SET_COURSE_RULES.stop(t0);
+            locksReleased();
+        }
+    }
+
+    /**
+     * Sets the courses a student must hold an enrollment in before enrolling;
+     * their own prerequisites are required as well. Enrolled students stay
+     * enrolled. Returns false if the course does not exist; throws
+     * IllegalArgumentException if a prerequisite does not exist or already
+     * requires the course.
+     */
+    public boolean setCoursePrerequisites(String courseId, List<String> prerequisiteIds) {
+        long t0 = T_SET_COURSE_RULES.start();
+        structureLock.writeLock().lock();
+        try {
+            Course c = courses.get(Ids.parseCourse(courseId));
+            if (c == null) return false;
+            c.setPrerequisiteKeys(prerequisiteKeys(c, prerequisiteIds));
+            validator.prerequisitesChanged();
+            for (ChangeListener l : listeners) l.courseUpdated(c);
+            return true;
+        } finally {
+            structureLock.writeLock().unlock();
+            T_SET_COURSE_RULES.stop(t0);
+            locksReleased();
+        }
+    }
+
+    // Prerequisite ids as keys, without repeats. Caller holds the exclusive structure lock.
+    private int[] prerequisiteKeys(Course c, List<String> prerequisiteIds) {
+        IntLinkedSet keys = new IntLinkedSet(prerequisiteIds.size());
+        for (String id : prerequisiteIds) {
+            int key = Ids.parseCourse(id);
+            if (!courses.containsKey(key)) throw new IllegalArgumentException("Prerequisite " + id + " not found.");
+            if (key == c.getKey()) throw new IllegalArgumentException("A course cannot require itself.");
+            if (validator.requires(key, c.getKey())) {
+                throw new IllegalArgumentException(id + " already requires " + c.getCourseId() + ".");
+            }
+            keys.add(key);
+        }
+        return keys.toArray();
+    }
+
+    /** Removes the enrollment; the freed seat goes to the first waiting student. */
     public boolean unenroll(String studentId, String courseId) {
-        Optional<Enrollment> found = enrollments.stream()
-                .filter(e -> e.getStudentId().equals(studentId) && e.getCourseId().equals(courseId))
-                .findFirst();
-        if (!found.isPresent()) return false;
-        Enrollment e = found.get();
-        enrollments.remove(e);
-        Student s = findStudentById(studentId);
-        Course c = findCourseById(courseId);
-        if (s != null) s.unenrollCourse(courseId);
-        if (c != null) c.removeStudent(studentId);
+        return unenroll(studentId, courseId, true);
+    }
+
+    private boolean unenroll(String studentId, String courseId, boolean promote) {
+        long t0 = T_UNENROLL.start();
+        structureLock.readLock().lock();
+        try {
+            int studentKey = Ids.parseStudent(studentId), courseKey = Ids.parseCourse(courseId);
+            synchronized (courseLock(courseKey)) {
+                if (!unenrollLocked(studentKey, courseKey)) {
+                    C_REJECTED_NOT_ENROLLED.increment();
+                    return false;
+                }
+                for (ChangeListener l : listeners) l.unenrolled(studentId, courseId);
+                if (promote) promoteLocked(courses.get(courseKey));
+                return true;
+            }
+        } finally {
+            structureLock.readLock().unlock();
+            T_UNENROLL.stop(t0);
+            locksReleased();
+        }
+    }
+
+    // Caller holds the course's lock or the exclusive structure lock
+    private boolean unenrollLocked(int studentKey, int courseKey) {
+        Enrollment e = enrollments.remove(studentKey, courseKey);
+        if (e == null) return false;
+        enrollmentLog.remove(e, epoch.get());
+        Student s = students.get(studentKey);
+        Course c = courses.get(courseKey);
+        if (s != null) s.unenrollCourse(courseKey);
+        if (c != null) c.removeStudent(studentKey);
+        invalidateViews(studentKey, courseKey);
         return true;
     }
 
-    public List<Enrollment> listEnrollments() { return new ArrayList<>(enrollments); }
+    // Caller holds the exclusive structure lock
+    private void putStudent(Student s) {
+        students.put(s.getKey(), s);
+        studentLog.add(s);
+        viewCache.invalidate(scheduleKey(s.getKey()));
+        enrollments.addStudent(s.getKey());
+        nameIndex.add(s);
+    }
+
+    // Caller holds the exclusive structure lock
+    private void putCourse(Course c) {
+        courses.put(c.getKey(), c);
+        courseLog.add(c);
+        viewCache.invalidate(rosterKey(c.getKey()));
+        enrollments.addCourse(c.getKey());
+        waitlists.put(c.getKey(), new Waitlist());
+        if (c.hasPrerequisites()) validator.prerequisitesChanged();
+    }
+
+    // Caller holds the exclusive structure lock; like putStudent for each, with
+    // every map, log and index grown once and the name index built in bulk
+    private void putStudents(List<Student> batch) {
+        int[] keys = new int[batch.size()];
+        students.reserve(batch.size());
+        for (int i = 0; i < keys.length; i++) {
+            Student s = batch.get(i);
+            keys[i] = s.getKey();
+            students.put(keys[i], s);
+            viewCache.invalidate(scheduleKey(keys[i]));
+        }
+        studentLog.addAll(batch);
+        enrollments.addStudents(keys);
+        nameIndex.addAll(batch);
+    }
+
+    // Caller holds the exclusive structure lock; like putCourse for each
+    private void putCourses(List<Course> batch) {
+        int[] keys = new int[batch.size()];
+        courses.reserve(batch.size());
+        waitlists.reserve(batch.size());
+        boolean rules = false;
+        for (int i = 0; i < keys.length; i++) {
+            Course c = batch.get(i);
+            keys[i] = c.getKey();
+            courses.put(keys[i], c);
+            waitlists.put(keys[i], new Waitlist());
+            viewCache.invalidate(rosterKey(keys[i]));
+            rules |= c.hasPrerequisites();
+        }
+        courseLog.addAll(batch);
+        enrollments.addCourses(keys);
+        if (rules) validator.prerequisitesChanged();
+    }
+
+    // Bulk operations: the whole batch runs under one exclusive lock instead of
+    // a lock round-trip per row. Results are in input order. Every row is
+    // built and its key checked before the first is added, so a batch that
+    // throws adds nothing; then the maps, logs and indexes take the rows in bulk.
+
+    public List<Student> addStudents(List<String> names, List<String> emails) {
+        long t0 = T_ADD_STUDENTS.start();
+        List<Student> added = new ArrayList<>(names.size());
+        runExclusive(() -> {
+            for (int i = 0; i < names.size(); i++) {
+                Student s = new Student(studentKeys.next(), names.get(i), emails.get(i));
+                if (students.get(s.getKey()) != null) throw keyInUse(s.getStudentId());
+                added.add(s);
+            }
+            putStudents(added);
+            for (Student s : added) {
+                for (ChangeListener l : listeners) l.studentAdded(s);
+            }
+        });
+        T_ADD_STUDENTS.stop(t0);
+        locksReleased();
+        return added;
+    }
+
+    public List<Course> addCourses(List<String> names, List<Integer> capacities) {
+        long t0 = T_ADD_COURSES.start();
+        List<Course> added = new ArrayList<>(names.size());
+        runExclusive(() -> {
+            for (int i = 0; i < names.size(); i++) {
+                Course c = new Course(courseKeys.next(), names.get(i), capacities.get(i));
+                if (courses.get(c.getKey()) != null) throw keyInUse(c.getCourseId());
+                added.add(c);
+            }
+            putCourses(added);
+            for (Course c : added) {
+                for (ChangeListener l : listeners) l.courseAdded(c);
+            }
+        });
+        T_ADD_COURSES.stop(t0);
+        locksReleased();
+        return added;
+    }
+
+    /**
+     * Enrolls each (studentIds[i], courseIds[i]) pair; each result uses the
+     * {@link #enroll} protocol, except that a full course is reported as
+     * "Course is full." instead of joining its waitlist.
+     */
+    public List<String> enrollBatch(List<String> studentIds, List<String> courseIds) {
+        long t0 = T_ENROLL_BATCH.start();
+        List<String> results = new ArrayList<>(studentIds.size());
+        runExclusive(() -> {
+            for (int i = 0; i < studentIds.size(); i++) {
+                Student s = students.get(Ids.parseStudent(studentIds.get(i)));
+                Course c = courses.get(Ids.parseCourse(courseIds.get(i)));
+                if (s == null) results.add(STUDENT_NOT_FOUND);
+                else if (c == null) results.add(COURSE_NOT_FOUND);
+                else results.add(enrollLocked(s, c));
+            }
+        });
+        for (String result : results) countEnrollResult(result);
+        T_ENROLL_BATCH.stop(t0);
+        locksReleased();
+        return results;
+    }
+
+    // All-or-nothing batches: every item is validated under the locks of all
+    // the batch's courses, then either all are applied or none. Listeners see
+    // an applied batch between batchStarted and batchFinished.
+
+    /** Enrolls a cohort of students in one course, or none of them. Full courses are not waitlisted. */
+    public BatchResult enrollAll(List<String> studentIds, String courseId) {
+        return applyBatch(studentIds, Collections.nCopies(studentIds.size(), courseId), true, true);
+    }
+
+    /** Enrolls one student in every given course, or in none of them. Full courses are not waitlisted. */
+    public BatchResult enrollAll(String studentId, List<String> courseIds) {
+        return applyBatch(Collections.nCopies(courseIds.size(), studentId), courseIds, true, false);
+    }
+
+    /** Unenrolls a cohort of students from one course, or none of them; freed seats are then promoted. */
+    public BatchResult unenrollAll(List<String> studentIds, String courseId) {
+        return applyBatch(studentIds, Collections.nCopies(studentIds.size(), courseId), false, true);
+    }
+
+    /** Unenrolls one student from every given course, or from none of them; freed seats are then promoted. */
+    public BatchResult unenrollAll(String studentId, List<String> courseIds) {
+        return applyBatch(Collections.nCopies(courseIds.size(), studentId), courseIds, false, false);
+    }
+
+    private BatchResult applyBatch(List<String> studentIds, List<String> courseIds, boolean enroll, boolean cohort) {
+        OpTimer timer = enroll ? T_ENROLL_ALL : T_UNENROLL_ALL;
+        long t0 = timer.start();
+        BatchResult result = applyBatchLocked(studentIds, courseIds, enroll, cohort);
+        if (result.isApplied()) {
+            C_BATCH_APPLIED.increment();
+        } else {
+            C_BATCH_REJECTED.increment();
+            for (BatchResult.Item item : result.getFailures()) C_BATCH_FAILURES[item.getStatus().ordinal()].increment();
+        }
+        timer.stop(t0);
+        locksReleased();
+        return result;
+    }
+
+    private BatchResult applyBatchLocked(List<String> studentIds, List<String> courseIds, boolean enroll, boolean cohort) {
+        int n = studentIds.size();
+        List<BatchResult.Item> items = new ArrayList<>(n);
+        Student[] batchStudents = new Student[n];
+        Course[] batchCourses = new Course[n];
+        structureLock.readLock().lock();
+        try {
+            IntLinkedMap<Course> touched = new IntLinkedMap<>();
+            for (int i = 0; i < n; i++) {
+                BatchResult.Item item = new BatchResult.Item(studentIds.get(i), courseIds.get(i));
+                items.add(item);
+                batchStudents[i] = students.get(Ids.parseStudent(item.getStudentId()));
+                batchCourses[i] = courses.get(Ids.parseCourse(item.getCourseId()));
+                if (batchStudents[i] == null) item.setStatus(BatchResult.Status.STUDENT_NOT_FOUND);
+                else if (batchCourses[i] == null) item.setStatus(BatchResult.Status.COURSE_NOT_FOUND);
+                else touched.put(batchCourses[i].getKey(), batchCourses[i]);
+            }
+            return withCourseLocks(touched.keys(), () -> {
+                if (!enroll) return validateAndApplyLocked(items, batchStudents, batchCourses, touched, false, cohort);
+                for (Course c : touched) promoteLocked(c); // waiting students keep their claim on free seats
+                boolean meets = false;
+                for (Course c : touched) meets |= !c.getMeetings().isEmpty();
+                if (!meets) return validateAndApplyLocked(items, batchStudents, batchCourses, touched, true, cohort);
+                // clash checks need the students' locks until the enrollments are made
+                int[] studentKeys = new int[n];
+                int found = 0;
+                for (Student s : batchStudents) {
+                    if (s != null) studentKeys[found++] = s.getKey();
+                }
+                return withStudentLocks(Arrays.copyOf(studentKeys, found),
+                        () -> validateAndApplyLocked(items, batchStudents, batchCourses, touched, true, cohort));
+            });
+        } finally {
+            structureLock.readLock().unlock();
+        }
+    }
+
+    // Validates the batch and applies it if every item is valid. Caller holds the
+    // locks of all the batch's courses and, for enrollments into courses with
+    // meeting times, of all its students.
+    private BatchResult validateAndApplyLocked(List<BatchResult.Item> items, Student[] batchStudents, Course[] batchCourses,
+                                               IntLinkedMap<Course> touched, boolean enroll, boolean cohort) {
+        boolean valid = enroll
+                ? validateEnrollments(items, batchStudents, batchCourses, touched, cohort)
+                : validateUnenrollments(items, batchStudents, batchCourses, cohort);
+        if (!valid) {
+            for (BatchResult.Item item : items) {
+                if (!item.hasStatus()) item.setStatus(BatchResult.Status.NOT_APPLIED);
+            }
+            return new BatchResult(items, false);
+        }
+        for (ChangeListener l : listeners) l.batchStarted();
+        try {
+            LocalDateTime now = LocalDateTime.now(); // one instant for the whole batch
+            for (int i = 0; i < items.size(); i++) {
+                BatchResult.Item item = items.get(i);
+                if (enroll) {
+                    Enrollment en = addEnrollmentLocked(batchStudents[i], batchCourses[i], now);
+                    item.succeed(BatchResult.Status.ENROLLED, en.getEnrollmentId());
+                } else {
+                    unenrollLocked(batchStudents[i].getKey(), batchCourses[i].getKey());
+                    for (ChangeListener l : listeners) l.unenrolled(item.getStudentId(), item.getCourseId());
+                    item.succeed(BatchResult.Status.UNENROLLED, null);
+                }
+            }
+            if (!enroll) {
+                for (Course c : touched) promoteLocked(c);
+            }
+        } finally {
+            for (ChangeListener l : listeners) l.batchFinished();
+        }
+        return new BatchResult(items, true);
+    }
+
+    // Every pair of a batch shares its course (cohort) or its student, so pairs
+    // are told apart by the other key.
+
+    // Marks every item that cannot be enrolled; true if none. A schedule may bring
+    // its own prerequisites but must not clash with itself. Caller holds the
+    // courses' locks and, if any of them has meeting times, the students' locks.
+    private boolean validateEnrollments(List<BatchResult.Item> items, Student[] batchStudents,
+                                        Course[] batchCourses, IntLinkedMap<Course> touched, boolean cohort) {
+        IntLinkedMap<int[]> seatsLeft = new IntLinkedMap<>(touched.size());
+        for (Course c : touched) {
+            int free = c.getCapacity() == 0 ? Integer.MAX_VALUE : c.getCapacity() - c.getEnrolledCount();
+            seatsLeft.put(c.getKey(), new int[] { free });
+        }
+        IntLinkedSet batchCourseKeys = null, accepted = null;
+        if (!cohort) {
+            batchCourseKeys = new IntLinkedSet(touched.size());
+            for (int key : touched.keys()) batchCourseKeys.add(key);
+            accepted = new IntLinkedSet(touched.size());
+        }
+        IntLinkedSet seen = new IntLinkedSet(items.size());
+        boolean valid = true;
+        for (int i = 0; i < items.size(); i++) {
+            BatchResult.Item item = items.get(i);
+            if (item.hasStatus()) {
+                valid = false;
+                continue;
+            }
+            Student s = batchStudents[i];
+            Course c = batchCourses[i];
+            int[] seats = seatsLeft.get(c.getKey());
+            if (!seen.add(cohort ? s.getKey() : c.getKey())) item.setStatus(BatchResult.Status.DUPLICATE);
+            else if (enrollments.contains(s.getKey(), c.getKey())) item.setStatus(BatchResult.Status.ALREADY_ENROLLED);
+            else if (validator.missingPrerequisite(s, c, batchCourseKeys) >= 0) item.setStatus(BatchResult.Status.MISSING_PREREQUISITE);
+            else if (validator.conflictingCourse(s, c, accepted) >= 0) item.setStatus(BatchResult.Status.SCHEDULE_CONFLICT);
+            else if (seats[0] <= 0) item.setStatus(BatchResult.Status.COURSE_FULL);
+            else seats[0]--;
+            if (!item.hasStatus() && accepted != null) accepted.add(c.getKey());
+            valid &= !item.hasStatus();
+        }
+        return valid;
+    }
+
+    // Marks every item that is not a current enrollment; true if none. Caller holds the courses' locks.
+    private boolean validateUnenrollments(List<BatchResult.Item> items, Student[] batchStudents,
+                                          Course[] batchCourses, boolean cohort) {
+        IntLinkedSet seen = new IntLinkedSet(items.size());
+        boolean valid = true;
+        for (int i = 0; i < items.size(); i++) {
+            BatchResult.Item item = items.get(i);
+            if (item.hasStatus()) {
+                valid = false;
+                continue;
+            }
+            int studentKey = batchStudents[i].getKey(), courseKey = batchCourses[i].getKey();
+            if (!seen.add(cohort ? studentKey : courseKey)) item.setStatus(BatchResult.Status.DUPLICATE);
+            else if (!enrollments.contains(studentKey, courseKey)) item.setStatus(BatchResult.Status.NOT_ENROLLED);
+            valid &= !item.hasStatus();
+        }
+        return valid;
+    }
+
+    /** All enrollments in the order they were made, copied from a fresh {@link #snapshot()}. */
+    public List<Enrollment> listEnrollments() {
+        long t0 = T_LIST_ENROLLMENTS.start();
+        List<Enrollment> all = snapshot().enrollments().toList();
+        T_LIST_ENROLLMENTS.stop(t0);
+        return all;
+    }
 
+    /** The student's courses in enrollment order; unmodifiable and possibly shared with other callers. */
     public List<Course> getCoursesForStudent(String studentId) {
-        return enrollments.stream()
-                .filter(e -> e.getStudentId().equals(studentId))
-                .map(e -> findCourseById(e.getCourseId()))
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+        long t0 = T_GET_COURSES_FOR_STUDENT.start();
+        structureLock.readLock().lock();
+        try {
+            int key = Ids.parseStudent(studentId);
+            if (!students.containsKey(key)) return Collections.emptyList();
+            return viewCache.get(scheduleKey(key), () -> Collections.unmodifiableList(
+                    enrollments.forStudent(key).stream()
+                            .map(e -> courses.get(e.getCourseKey()))
+                            .filter(Objects::nonNull)
+                            .collect(Collectors.toList())));
+        } finally {
+            structureLock.readLock().unlock();
+            T_GET_COURSES_FOR_STUDENT.stop(t0);
+        }
     }
 
+    /** The course's students in enrollment order; unmodifiable and possibly shared with other callers. */
     public List<Student> getStudentsForCourse(String courseId) {
-        return enrollments.stream()
-                .filter(e -> e.getCourseId().equals(courseId))
-                .map(e -> findStudentById(e.getStudentId()))
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+        long t0 = T_GET_STUDENTS_FOR_COURSE.start();
+        structureLock.readLock().lock();
+        try {
+            int key = Ids.parseCourse(courseId);
+            if (!courses.containsKey(key)) return Collections.emptyList();
+            return viewCache.get(rosterKey(key), () -> Collections.unmodifiableList(
+                    enrollments.forCourse(key).stream()
+                            .map(e -> students.get(e.getStudentKey()))
+                            .filter(Objects::nonNull)
+                            .collect(Collectors.toList())));
+        } finally {
+            structureLock.readLock().unlock();
+            T_GET_STUDENTS_FOR_COURSE.stop(t0);
+        }
+    }
+
+    // Recovery: re-apply recorded state with its original ids and timestamps.
+    // These bypass capacity checks, promotion and listeners and are idempotent,
+    // so a journal may be replayed over a snapshot that already contains part
+    // of it. Promotions were recorded as enrollments of their own.
+
+    public void restoreStudent(String id, String name, String email) {
+        int key = Ids.parseStudent(id);
+        if (key >= 0) restoreStudent(key, name, email);
+    }
+
+    public void restoreStudent(int key, String name, String email) {
+        runExclusive(() -> {
+            Student s = students.get(key);
+            if (s == null) {
+                putStudent(new Student(key, name, email));
+            } else {
+                s.setName(name);
+                s.setEmail(email);
+                nameIndex.rename(s);
+            }
+            studentKeys.markUsed(key);
+        });
+    }
+
+    public void restoreCourse(String id, String name, int capacity) {
+        int key = Ids.parseCourse(id);
+        if (key >= 0) restoreCourse(key, name, capacity);
+    }
+
+    public void restoreCourse(int key, String name, int capacity) {
+        runExclusive(() -> {
+            Course c = courses.get(key);
+            if (c == null) {
+                putCourse(new Course(key, name, capacity));
+                validator.prerequisitesChanged(); // courses restored earlier may require it
+            } else {
+                c.setCourseName(name);
+                c.setCapacity(capacity);
+            }
+            courseKeys.markUsed(key);
+        });
+    }
+
+    /** Like {@link #restoreCourse(String, String, int)}, also setting meeting times and prerequisites as recorded. */
+    public void restoreCourse(String id, String name, int capacity, Timetable meetings, List<String> prerequisiteIds) {
+        int key = Ids.parseCourse(id);
+        if (key < 0) return;
+        int[] required = prerequisiteIds.stream().mapToInt(Ids::parseCourse).filter(k -> k >= 0 && k != key).toArray();
+        runExclusive(() -> {
+            restoreCourse(key, name, capacity);
+            Course c = courses.get(key);
+            c.setMeetings(meetings);
+            c.setPrerequisiteKeys(required);
+            validator.prerequisitesChanged();
+        });
+    }
+
+    public void restoreEnrollment(String enrollmentId, String studentId, String courseId, LocalDateTime timestamp) {
+        int key = Ids.parseEnrollment(enrollmentId);
+        if (key >= 0) {
+            restoreEnrollment(new Enrollment(key, Ids.parseStudent(studentId), Ids.parseCourse(courseId), timestamp));
+        }
+    }
+
+    public void restoreEnrollment(Enrollment e) {
+        runExclusive(() -> {
+            enrollmentKeys.markUsed(e.getKey());
+            Student s = students.get(e.getStudentKey());
+            Course c = courses.get(e.getCourseKey());
+            if (s == null || c == null) return;
+            waitlists.get(c.getKey()).remove(s.getKey());
+            if (enrollments.contains(s.getKey(), c.getKey())) return;
+            enrollments.add(e);
+            enrollmentLog.add(e);
+            s.enrollCourse(c.getKey());
+            c.addStudent(s.getKey());
+            invalidateViews(s.getKey(), c.getKey());
+        });
+    }
+
+    /** Appends the student to the course's waitlist unless already waiting or enrolled. */
+    public void restoreWaitlistEntry(String studentId, String courseId, int priority) {
+        runExclusive(() -> {
+            int studentKey = Ids.parseStudent(studentId), courseKey = Ids.parseCourse(courseId);
+            Waitlist w = waitlists.get(courseKey);
+            if (w == null || !students.containsKey(studentKey) || enrollments.contains(studentKey, courseKey)) return;
+            w.add(studentKey, priority);
+        });
+    }
+
+    public void restoreWaitlistRemoval(String studentId, String courseId) {
+        runExclusive(() -> {
+            Waitlist w = waitlists.get(Ids.parseCourse(courseId));
+            if (w != null) w.remove(Ids.parseStudent(studentId));
+        });
+    }
+
+    /** Unenrolls without promoting waiting students. */
+    public boolean restoreUnenroll(String studentId, String courseId) {
+        return unenroll(studentId, courseId, false);
+    }
+
+    /** Deletes the student without promoting waiting students. */
+    public boolean restoreStudentDeletion(String studentId) {
+        return deleteStudent(studentId, false);
+    }
+
+    /** Visits every waitlist entry as (studentId, courseId, priority), course by course in line order. */
+    public void forEachWaitlistEntry(WaitlistVisitor visitor) {
+        structureLock.readLock().lock();
+        try {
+            for (Course c : courses) {
+                Waitlist w = waitlists.get(c.getKey());
+                synchronized (courseLock(c.getKey())) {
+                    for (int key : w.students()) visitor.visit(Ids.student(key), c.getCourseId(), w.priorityOf(key));
+                }
+            }
+        } finally {
+            structureLock.readLock().unlock();
+        }
+    }
+
+    public interface WaitlistVisitor {
+        void visit(String studentId, String courseId, int priority);
+    }
+
+    // Serialize a consistent view: no structural change or enrollment in flight
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        structureLock.writeLock().lock();
+        try {
+            keyWatermarks = new int[] { studentKeys.watermark(), courseKeys.watermark(), enrollmentKeys.watermark() };
+            out.defaultWriteObject();
+        } finally {
+            keyWatermarks = null;
+            structureLock.writeLock().unlock();
+        }
     }
 
     // For saving/loading with serialization we ensure transient fields are restored
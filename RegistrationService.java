@@ -0,0 +1,84 @@
+package service;
+
+import domain.Course;
+import domain.Enrollment;
+import domain.Student;
+import domain.Timetable;
+import util.Listing;
+
+import java.util.List;
+
+/**
+ * The registration operations offered by both {@link RegistrationManager}
+ * and {@link ShardedRegistrationManager}, so that the console, the HTTP API,
+ * the importer, the exporter and the autosaver run on either. The
+ * operations are documented on RegistrationManager; where sharding changes
+ * their meaning, ShardedRegistrationManager says how.
+ */
+public interface RegistrationService {
+
+    /** Students, courses and enrollments as of one instant, read without a lock. */
+    interface Listings {
+        /** Students in the order they were added. */
+        Listing<Student> students();
+
+        /** Courses in the order they were added (shard by shard when sharded). */
+        Listing<Course> courses();
+
+        /** Enrollments in the order they were made (shard by shard when sharded). */
+        Listing<Enrollment> enrollments();
+    }
+
+    /**
+     * Point-in-time listings; see {@link RegistrationManager#snapshot()}. A
+     * sharded service takes one snapshot per shard, each at its own instant.
+     */
+    Listings listings();
+
+    void setViewCacheSize(int maxViews);
+    CacheStats getViewCacheStats();
+
+    void addChangeListener(ChangeListener listener);
+    void removeChangeListener(ChangeListener listener);
+
+    // Students
+
+    Student addStudent(String name, String email);
+    List<Student> addStudents(List<String> names, List<String> emails);
+    List<Student> listStudents();
+    Student findStudentById(String id);
+    List<Student> searchStudentsByName(String q);
+    List<Student> searchStudentsByName(String q, int offset, int limit);
+    boolean renameStudent(String studentId, String name);
+    boolean deleteStudent(String studentId);
+
+    // Courses
+
+    Course addCourse(String name, int capacity);
+    Course addCourse(String name, int capacity, Timetable meetings, List<String> prerequisiteIds);
+    List<Course> addCourses(List<String> names, List<Integer> capacities);
+    List<Course> listCourses();
+    Course findCourseById(String id);
+    boolean deleteCourse(String courseId);
+    boolean setCourseCapacity(String courseId, int capacity);
+    boolean setCourseMeetings(String courseId, Timetable meetings);
+    boolean setCoursePrerequisites(String courseId, List<String> prerequisiteIds);
+
+    // Enrollments and waitlists
+
+    String enroll(String studentId, String courseId);
+    String enroll(String studentId, String courseId, int priority);
+    boolean unenroll(String studentId, String courseId);
+    List<String> enrollBatch(List<String> studentIds, List<String> courseIds);
+    BatchResult enrollAll(List<String> studentIds, String courseId);
+    BatchResult enrollAll(String studentId, List<String> courseIds);
+    BatchResult unenrollAll(List<String> studentIds, String courseId);
+    BatchResult unenrollAll(String studentId, List<String> courseIds);
+    List<Student> getStudentsForCourse(String courseId);
+    List<Course> getCoursesForStudent(String studentId);
+    List<Enrollment> listEnrollments();
+    int getWaitlistPosition(String studentId, String courseId);
+    List<Student> getWaitlist(String courseId);
+    boolean leaveWaitlist(String studentId, String courseId);
+    void forEachWaitlistEntry(RegistrationManager.WaitlistVisitor visitor);
+}
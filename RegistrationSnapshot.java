@@ -0,0 +1,125 @@
+package service;
+
+import domain.Course;
+import domain.Enrollment;
+import domain.Ids;
+import domain.Student;
+import domain.Timetable;
+import util.SnapshotLog;
+
+import java.util.List;
+
+/**
+ * Consistent point-in-time view of which students, courses and enrollments
+ * exist, taken by {@link RegistrationManager#snapshot()} under all course
+ * locks in constant time. Reading it takes no lock, so it may be iterated,
+ * paged or streamed at leisure while writers carry on; it never reflects
+ * changes made after it was taken.
+ *
+ * Only membership is frozen: the entities themselves are the live objects,
+ * so a renamed student or a course's current seat count shows through.
+ * Snapshots taken for saving also hold every waitlist and a copy of each
+ * student's and course's fields as they were, see
+ * {@link RegistrationManager#snapshot(boolean)}.
+ */
+public final class RegistrationSnapshot implements RegistrationService.Listings {
+
+    private final SnapshotLog.View<Student> students;
+    private final SnapshotLog.View<Course> courses;
+    private final SnapshotLog.View<Enrollment> enrollments;
+    private final int[] waitlists; // (studentKey, courseKey, priority) triples; null if not captured
+    private final List<StudentState> studentStates; // null if not captured
+    private final List<CourseState> courseStates;   // null if not captured
+    private final int studentKeyWatermark;
+    private final int courseKeyWatermark;
+    private final int enrollmentKeyWatermark;
+
+    RegistrationSnapshot(SnapshotLog.View<Student> students, SnapshotLog.View<Course> courses,
+                         SnapshotLog.View<Enrollment> enrollments, int[] waitlists,
+                         List<StudentState> studentStates, List<CourseState> courseStates,
+                         int studentKeyWatermark, int courseKeyWatermark, int enrollmentKeyWatermark) {
+        this.students = students;
+        this.courses = courses;
+        this.enrollments = enrollments;
+        this.waitlists = waitlists;
+        this.studentStates = studentStates;
+        this.courseStates = courseStates;
+        this.studentKeyWatermark = studentKeyWatermark;
+        this.courseKeyWatermark = courseKeyWatermark;
+        this.enrollmentKeyWatermark = enrollmentKeyWatermark;
+    }
+
+    /** Students in the order they were added. */
+    @Override
+    public SnapshotLog.View<Student> students() { return students; }
+
+    /** Courses in the order they were added. */
+    @Override
+    public SnapshotLog.View<Course> courses() { return courses; }
+
+    /** Enrollments in the order they were made. */
+    @Override
+    public SnapshotLog.View<Enrollment> enrollments() { return enrollments; }
+
+    /** Whether the snapshot was taken for saving and holds waitlists and field copies. */
+    public boolean isForSaving() { return waitlists != null; }
+
+    /**
+     * Every student's fields as they were when the snapshot was taken, in the
+     * order of {@link #students()}.
+     *
+     * @throws IllegalStateException if the snapshot was not taken for saving
+     */
+    public List<StudentState> studentStates() {
+        if (studentStates == null) throw new IllegalStateException("Snapshot was taken without field copies.");
+        return studentStates;
+    }
+
+    /**
+     * Every course's fields as they were when the snapshot was taken, in the
+     * order of {@link #courses()}.
+     *
+     * @throws IllegalStateException if the snapshot was not taken for saving
+     */
+    public List<CourseState> courseStates() {
+        if (courseStates == null) throw new IllegalStateException("Snapshot was taken without field copies.");
+        return courseStates;
+    }
+
+    /**
+     * Keys the manager had handed out are all below these, including keys of
+     * entities deleted since; saved so that a restored manager never hands
+     * them out again (see {@link RegistrationManager#restoreKeyWatermarks}).
+     */
+    public int getStudentKeyWatermark() { return studentKeyWatermark; }
+    public int getCourseKeyWatermark() { return courseKeyWatermark; }
+    public int getEnrollmentKeyWatermark() { return enrollmentKeyWatermark; }
+
+    /**
+     * Visits every waitlist entry as (studentId, courseId, priority), course by
+     * course in line order.
+     *
+     * @throws IllegalStateException if the snapshot was taken without waitlists
+     */
+    public void forEachWaitlistEntry(RegistrationManager.WaitlistVisitor visitor) {
+        if (waitlists == null) throw new IllegalStateException("Snapshot was taken without waitlists.");
+        for (int i = 0; i < waitlists.length; i += 3) {
+            visitor.visit(Ids.student(waitlists[i]), Ids.course(waitlists[i + 1]), waitlists[i + 2]);
+        }
+    }
+
+    /** A student's saved fields, copied under the snapshot's locks. */
+    public record StudentState(String studentId, String name, String email) {
+        StudentState(Student s) {
+            this(s.getStudentId(), s.getName(), s.getEmail());
+        }
+    }
+
+    /** A course's saved fields, copied under the snapshot's locks. */
+    public record CourseState(String courseId, String name, int capacity, Timetable meetings,
+                              List<String> prerequisiteIds) {
+        CourseState(Course c) {
+            this(c.getCourseId(), c.getCourseName(), c.getCapacity(), c.getMeetings(), List.copyOf(c.getPrerequisiteIds()));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package bench;
+
+import domain.Enrollment;
+import persistence.Exporter;
+import service.TermReport;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Term report and export throughput on a large dataset: the report computed
+ * with a sequential and a parallel stream, and enrollment exports to CSV and
+ * JSON against the old way of listing all enrollments and printing
+ * toString() per line. Reports the best of several rounds.
+ *
+ * Usage: java -Xmx4g -cp out bench.ReportBench [enrollments]
+ */
+public class ReportBench {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int enrollmentCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        long t0 = System.nanoTime();
+        Dataset data = new Dataset(enrollmentCount, 42);
+        System.out.printf("dataset: %,d students, %,d courses, %,d enrollments (built in %.1f s), %d cores%n",
+                data.studentIds.size(), data.courseIds.size(), data.enrollments, (System.nanoTime() - t0) / 1e9,
+                Runtime.getRuntime().availableProcessors());
+
+        for (boolean parallel : new boolean[] { false, true }) {
+            long best = Long.MAX_VALUE;
+            TermReport report = null;
+            for (int i = 0; i < ROUNDS; i++) {
+                long start = System.nanoTime();
+                report = TermReport.compute(data.manager, 5, ChronoUnit.HOURS, parallel);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            if (report.getEnrollmentCount() != data.enrollments) throw new IllegalStateException("report lost enrollments");
+            System.out.printf("report %-10s %8.1f ms  %,6.1f M enrollments/s  (%,d full schedules)%n",
+                    parallel ? "parallel" : "sequential", best / 1e6, data.enrollments / (best / 1e3),
+                    report.getFullScheduleStudents().size());
+        }
+
+        File file = File.createTempFile("report-bench", ".out");
+        file.deleteOnExit();
+        Exporter exporter = new Exporter(data.manager);
+        export("toString lines", file, data.enrollments, out -> {
+            List<Enrollment> all = data.manager.listEnrollments();
+            for (Enrollment e : all) {
+                out.write(e.toString());
+                out.write('\n');
+            }
+        });
+        export("csv", file, data.enrollments, out -> exporter.exportEnrollments(out, Exporter.Format.CSV));
+        export("json", file, data.enrollments, out -> exporter.exportEnrollments(out, Exporter.Format.JSON));
+    }
+
+    private interface Export {
+        void run(Writer out) throws IOException;
+    }
+
+    private static void export(String label, File file, int rows, Export export) throws IOException {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            try (Writer out = new BufferedWriter(new FileWriter(file), 1 << 16)) {
+                export.run(out);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("export %-14s %8.1f ms  %,6.2f M rows/s  %,7.1f MB/s  (%,d bytes)%n", label, best / 1e6,
+                rows / (best / 1e3), file.length() / (best / 1e3), file.length());
+    }
+}
@@ -0,0 +1,129 @@
+package service;
+
+import domain.Course;
+import domain.Student;
+import domain.Timetable;
+import util.IntLinkedMap;
+import util.IntLinkedSet;
+
+/**
+ * Enrollment-time checks of a course's meeting times and prerequisites.
+ *
+ * A clash check compares the course's {@link Timetable} with the timetable of
+ * each course in the student's schedule: one AND of two int masks for courses
+ * on different days, a few longs otherwise, so the cost grows with the
+ * schedule but not with how often the courses meet.
+ *
+ * A prerequisite check looks up the course's prerequisite closure (every
+ * course it requires, directly or through its prerequisites) and asks the
+ * enrollment index whether the student holds each one. The closures of all
+ * courses are computed together the first time one is needed after a change,
+ * so changing prerequisites costs one rebuild however many courses change at
+ * once (a snapshot load, for example).
+ *
+ * Meeting times and prerequisites change only under RegistrationManager's
+ * exclusive lock; the checks run under the shared lock.
+ */
+final class ScheduleValidator {
+
+    private static final int[] NONE = new int[0];
+
+    private final IntLinkedMap<Course> courses;
+    private final EnrollmentIndex enrollments;
+    // course key -> prerequisite closure, for courses with prerequisites; null until rebuilt
+    private volatile IntLinkedMap<int[]> closures;
+
+    ScheduleValidator(IntLinkedMap<Course> courses, EnrollmentIndex enrollments) {
+        this.courses = courses;
+        this.enrollments = enrollments;
+    }
+
+    /** Call after any course's prerequisites changed or a course was added or deleted. */
+    void prerequisitesChanged() {
+        closures = null;
+    }
+
+    /** Every course the course requires, directly or indirectly. */
+    int[] closure(int courseKey) {
+        IntLinkedMap<int[]> all = closures;
+        if (all == null) all = rebuild();
+        int[] closure = all.get(courseKey);
+        return closure == null ? NONE : closure;
+    }
+
+    /** True if required is the course itself or one of its prerequisites, directly or indirectly. */
+    boolean requires(int courseKey, int required) {
+        if (courseKey == required) return true;
+        for (int key : closure(courseKey)) {
+            if (key == required) return true;
+        }
+        return false;
+    }
+
+    /**
+     * A prerequisite of c the student holds no enrollment in and that is not
+     * in alsoTaking (courses the same batch enrolls the student in); -1 if none.
+     */
+    int missingPrerequisite(Student s, Course c, IntLinkedSet alsoTaking) {
+        if (!c.hasPrerequisites()) return -1;
+        for (int key : closure(c.getKey())) {
+            if (!enrollments.contains(s.getKey(), key) && (alsoTaking == null || !alsoTaking.contains(key))) return key;
+        }
+        return -1;
+    }
+
+    /**
+     * A course of the student's schedule, or of alsoTaking, that meets at the
+     * same time as c; -1 if none. Caller holds the student's lock, so no
+     * other enrollment of the student is added meanwhile.
+     */
+    int conflictingCourse(Student s, Course c, IntLinkedSet alsoTaking) {
+        Timetable meetings = c.getMeetings();
+        if (meetings.isEmpty()) return -1;
+        int clash = s.findEnrolledCourse(key -> clashes(key, c.getKey(), meetings));
+        if (clash >= 0 || alsoTaking == null) return clash;
+        for (int key : alsoTaking.toArray()) {
+            if (clashes(key, c.getKey(), meetings)) return key;
+        }
+        return -1;
+    }
+
+    private boolean clashes(int courseKey, int newKey, Timetable meetings) {
+        if (courseKey == newKey) return false;
+        Course other = courses.get(courseKey);
+        return other != null && other.getMeetings().overlaps(meetings);
+    }
+
+    // Closures of all courses with prerequisites. Runs under the shared lock, so
+    // prerequisites cannot change meanwhile; concurrent callers build once.
+    private synchronized IntLinkedMap<int[]> rebuild() {
+        IntLinkedMap<int[]> all = closures;
+        if (all != null) return all;
+        all = new IntLinkedMap<>();
+        IntLinkedSet onPath = new IntLinkedSet();
+        for (Course c : courses) {
+            if (c.hasPrerequisites()) closure(c, all, onPath);
+        }
+        closures = all;
+        return all;
+    }
+
+    // Depth-first; cycles (only possible in restored data) are cut where they close
+    private int[] closure(Course c, IntLinkedMap<int[]> all, IntLinkedSet onPath) {
+        int[] done = all.get(c.getKey());
+        if (done != null) return done;
+        if (!c.hasPrerequisites() || !onPath.add(c.getKey())) return NONE;
+        IntLinkedSet required = new IntLinkedSet();
+        for (int key : c.getPrerequisiteKeys()) {
+            Course p = courses.get(key);
+            if (p == null) continue; // deleted since
+            required.add(key);
+            for (int k : closure(p, all, onPath)) required.add(k);
+        }
+        onPath.remove(c.getKey());
+        required.remove(c.getKey());
+        int[] closure = required.toArray();
+        all.put(c.getKey(), closure);
+        return closure;
+    }
+}
@@ -0,0 +1,534 @@
+package service;
+
+import domain.Course;
+import domain.Enrollment;
+import domain.Ids;
+import domain.Student;
+import domain.Timetable;
+import util.Listing;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The RegistrationManager API over several managers ("shards"), each with its
+ * own locks, caches and store, so that courses with their rosters, capacities
+ * and waitlists are split between them.
+ *
+ * Shard i allocates only keys k with k % shards == i (see
+ * {@link RegistrationManager#setKeyPartition}), so ids never collide and a
+ * course id names its shard. New courses are placed round-robin. Enroll,
+ * unenroll, rosters, waitlists and capacity changes go to the course's shard
+ * alone and return exactly what that shard returns.
+ *
+ * Students enroll on every shard, so shard 0 holds the student directory and
+ * the other shards a replica of it. Adding, renaming and deleting a student
+ * is applied to shard 0 first and then to every replica; a deletion cascades
+ * through the enrollments and waitlists of each shard. Schedules and the
+ * course and enrollment listings are gathered from all shards.
+ *
+ * Replicas are written through the restore methods, which notify no
+ * listeners, so shards are persisted as snapshots (persistence.ShardedStore)
+ * rather than journals. Change listeners hear each student change once, from
+ * the directory, and every shard's course, enrollment and waitlist changes.
+ *
+ * Course rules stay within a shard: prerequisites must be on the course's
+ * shard, and meeting times need a single shard, since a clash check sees
+ * only the courses of the shard it runs on.
+ */
+public class ShardedRegistrationManager implements RegistrationService {
+
+    private final RegistrationManager[] shards;
+    private final AtomicInteger nextCourseShard = new AtomicInteger();
+    // Serializes student writes so a replica never outlives a deletion racing with its creation
+    private final Object directoryLock = new Object();
+    // Listeners as registered with shards 1..N-1, keyed by the caller's listener
+    private final Map<ChangeListener, ChangeListener> replicaListeners = new ConcurrentHashMap<>();
+
+    /** Routes over shardCount new, empty managers. */
+    public ShardedRegistrationManager(int shardCount) {
+        this(emptyShards(shardCount));
+    }
+
+    /**
+     * Routes over existing managers, e.g. loaded from a previous run; shards.get(i)
+     * becomes shard i. Replicas are brought in line with shard 0's directory,
+     * since shards may have been saved at slightly different moments.
+     *
+     * @throws IllegalArgumentException if a shard holds courses of another shard,
+     *         i.e. the shards were saved with a different shard count
+     */
+    public ShardedRegistrationManager(List<RegistrationManager> shards) {
+        if (shards.isEmpty()) throw new IllegalArgumentException("At least one shard is required.");
+        this.shards = shards.toArray(new RegistrationManager[0]);
+        for (int i = 0; i < this.shards.length; i++) {
+            this.shards[i].setKeyPartition(i, this.shards.length);
+            for (Course c : this.shards[i].listCourses()) {
+                if (shardOf(c.getKey()) != i) {
+                    throw new IllegalArgumentException("Course " + c.getCourseId() + " belongs to shard "
+                            + shardOf(c.getKey()) + " of " + this.shards.length + " but was found in shard " + i + ".");
+                }
+            }
+        }
+        reconcileReplicas();
+    }
+
+    private static List<RegistrationManager> emptyShards(int shardCount) {
+        if (shardCount < 1) throw new IllegalArgumentException("At least one shard is required.");
+        List<RegistrationManager> out = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) out.add(new RegistrationManager());
+        return out;
+    }
+
+    private void reconcileReplicas() {
+        RegistrationManager directory = shards[0];
+        List<Student> all = directory.listStudents();
+        for (int i = 1; i < shards.length; i++) {
+            RegistrationManager shard = shards[i];
+            for (Student s : all) {
+                Student replica = shard.findStudentById(s.getStudentId());
+                if (replica == null || !replica.getName().equals(s.getName())
+                        || !Objects.equals(replica.getEmail(), s.getEmail())) {
+                    shard.restoreStudent(s.getKey(), s.getName(), s.getEmail());
+                }
+            }
+            for (Student s : shard.listStudents()) {
+                if (directory.findStudentById(s.getStudentId()) == null) shard.restoreStudentDeletion(s.getStudentId());
+            }
+        }
+    }
+
+    public int getShardCount() { return shards.length; }
+
+    /** The manager behind shard i, for persistence and diagnostics. */
+    public RegistrationManager getShard(int i) { return shards[i]; }
+
+    private int shardOf(int courseKey) {
+        return courseKey < 0 ? 0 : courseKey % shards.length;
+    }
+
+    // The shard owning a course id; a malformed id goes to shard 0, which reports it not found
+    private RegistrationManager owner(String courseId) {
+        return shards[shardOf(Ids.parseCourse(courseId))];
+    }
+
+    // Row indexes of courseIds grouped by owning shard
+    private List<List<Integer>> rowsByShard(List<String> courseIds) {
+        List<List<Integer>> rows = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) rows.add(new ArrayList<>());
+        for (int row = 0; row < courseIds.size(); row++) {
+            rows.get(shardOf(Ids.parseCourse(courseIds.get(row)))).add(row);
+        }
+        return rows;
+    }
+
+    private static <T> List<T> select(List<T> values, List<Integer> rows) {
+        List<T> out = new ArrayList<>(rows.size());
+        for (int row : rows) out.add(values.get(row));
+        return out;
+    }
+
+    /** Replaces every shard's schedule/roster cache; see {@link RegistrationManager#setViewCacheSize}. */
+    public void setViewCacheSize(int maxViewsPerShard) {
+        for (RegistrationManager shard : shards) shard.setViewCacheSize(maxViewsPerShard);
+    }
+
+    /**
+     * Students from the directory's snapshot; courses and enrollments from
+     * every shard's snapshot, shard by shard. Each shard is snapshotted at its
+     * own instant, so an enrollment may name a student or course that the
+     * other listings no longer or do not yet hold.
+     */
+    public RegistrationService.Listings listings() {
+        List<Listing<Course>> courseParts = new ArrayList<>(shards.length);
+        List<Listing<Enrollment>> enrollmentParts = new ArrayList<>(shards.length);
+        Listing<Student> students = null;
+        for (RegistrationManager shard : shards) {
+            RegistrationSnapshot s = shard.snapshot();
+            if (students == null) students = s.students();
+            courseParts.add(s.courses());
+            enrollmentParts.add(s.enrollments());
+        }
+        Listing<Student> directory = students;
+        Listing<Course> courses = Listing.concat(courseParts);
+        Listing<Enrollment> enrollments = Listing.concat(enrollmentParts);
+        return new RegistrationService.Listings() {
+            @Override
+            public Listing<Student> students() { return directory; }
+
+            @Override
+            public Listing<Course> courses() { return courses; }
+
+            @Override
+            public Listing<Enrollment> enrollments() { return enrollments; }
+        };
+    }
+
+    /** Registers the listener with every shard; student changes are heard from the directory only. */
+    public void addChangeListener(ChangeListener listener) {
+        shards[0].addChangeListener(listener);
+        if (shards.length == 1) return;
+        ChangeListener replica = new ReplicaListener(listener);
+        replicaListeners.put(listener, replica);
+        for (int i = 1; i < shards.length; i++) shards[i].addChangeListener(replica);
+    }
+
+    public void removeChangeListener(ChangeListener listener) {
+        shards[0].removeChangeListener(listener);
+        ChangeListener replica = replicaListeners.remove(listener);
+        if (replica == null) return;
+        for (int i = 1; i < shards.length; i++) shards[i].removeChangeListener(replica);
+    }
+
+    // Passes on a replica shard's changes except those to its copy of the directory,
+    // which shard 0 reports already; cascades of a student deletion do pass
+    private static final class ReplicaListener implements ChangeListener {
+        private final ChangeListener target;
+
+        ReplicaListener(ChangeListener target) {
+            this.target = target;
+        }
+
+        @Override public void studentAdded(Student s) {}
+        @Override public void studentUpdated(Student s) {}
+        @Override public void studentDeleted(String studentId) {}
+        @Override public void courseAdded(Course c) { target.courseAdded(c); }
+        @Override public void courseUpdated(Course c) { target.courseUpdated(c); }
+        @Override public void courseDeleted(String courseId) { target.courseDeleted(courseId); }
+        @Override public void enrolled(Enrollment e) { target.enrolled(e); }
+        @Override public void unenrolled(String studentId, String courseId) { target.unenrolled(studentId, courseId); }
+        @Override public void waitlisted(String studentId, String courseId, int priority) {
+            target.waitlisted(studentId, courseId, priority);
+        }
+        @Override public void waitlistLeft(String studentId, String courseId) { target.waitlistLeft(studentId, courseId); }
+        @Override public void batchStarted() { target.batchStarted(); }
+        @Override public void batchFinished() { target.batchFinished(); }
+        @Override public void locksReleased() { target.locksReleased(); }
+    }
+
+    /** View cache counters summed over all shards. */
+    public CacheStats getViewCacheStats() {
+        long hits = 0, misses = 0, evictions = 0, size = 0, capacity = 0;
+        for (RegistrationManager shard : shards) {
+            CacheStats s = shard.getViewCacheStats();
+            hits += s.getHits();
+            misses += s.getMisses();
+            evictions += s.getEvictions();
+            size += s.getSize();
+            capacity += s.getCapacity();
+        }
+        return new CacheStats(hits, misses, evictions, size, capacity);
+    }
+
+    // Student operations: the directory on shard 0, then every replica
+
+    public Student addStudent(String name, String email) {
+        synchronized (directoryLock) {
+            Student s = shards[0].addStudent(name, email);
+            for (int i = 1; i < shards.length; i++) shards[i].restoreStudent(s.getKey(), name, email);
+            return s;
+        }
+    }
+
+    public List<Student> addStudents(List<String> names, List<String> emails) {
+        synchronized (directoryLock) {
+            List<Student> added = shards[0].addStudents(names, emails);
+            IntStream.range(1, shards.length).parallel().forEach(i -> {
+                for (Student s : added) shards[i].restoreStudent(s.getKey(), s.getName(), s.getEmail());
+            });
+            return added;
+        }
+    }
+
+    public List<Student> listStudents() { return shards[0].listStudents(); }
+
+    public Student findStudentById(String id) { return shards[0].findStudentById(id); }
+
+    public List<Student> searchStudentsByName(String q) { return shards[0].searchStudentsByName(q); }
+
+    public List<Student> searchStudentsByName(String q, int offset, int limit) {
+        return shards[0].searchStudentsByName(q, offset, limit);
+    }
+
+    public boolean renameStudent(String studentId, String name) {
+        synchronized (directoryLock) {
+            if (!shards[0].renameStudent(studentId, name)) return false;
+            for (int i = 1; i < shards.length; i++) shards[i].renameStudent(studentId, name);
+            return true;
+        }
+    }
+
+    /**
+     * Deletes the student from the directory, then from every other shard in
+     * parallel with their enrollments and waitlist entries; freed seats go to
+     * waiting students on each shard.
+     */
+    public boolean deleteStudent(String studentId) {
+        synchronized (directoryLock) {
+            if (!shards[0].deleteStudent(studentId)) return false;
+            IntStream.range(1, shards.length).parallel().forEach(i -> shards[i].deleteStudent(studentId));
+            return true;
+        }
+    }
+
+    // Course operations: the course's shard alone
+
+    public Course addCourse(String name, int capacity) {
+        return nextCourseShard().addCourse(name, capacity);
+    }
+
+    /**
+     * Adds a course with rules: round-robin without prerequisites, otherwise
+     * on the shard of its prerequisites.
+     *
+     * @throws IllegalArgumentException if the prerequisites are on different
+     *         shards, if meeting times are given while there are several
+     *         shards, or as {@link RegistrationManager#addCourse(String, int, Timetable, List)}
+     */
+    public Course addCourse(String name, int capacity, Timetable meetings, List<String> prerequisiteIds) {
+        requireSingleShard(meetings);
+        if (prerequisiteIds.isEmpty()) return nextCourseShard().addCourse(name, capacity, meetings, prerequisiteIds);
+        int shard = shardOf(Ids.parseCourse(prerequisiteIds.get(0)));
+        for (String id : prerequisiteIds) {
+            if (shardOf(Ids.parseCourse(id)) != shard) {
+                throw new IllegalArgumentException("Prerequisites " + String.join(", ", prerequisiteIds)
+                        + " are on different shards.");
+            }
+        }
+        return shards[shard].addCourse(name, capacity, meetings, prerequisiteIds);
+    }
+
+    private RegistrationManager nextCourseShard() {
+        return shards[Math.floorMod(nextCourseShard.getAndIncrement(), shards.length)];
+    }
+
+    private void requireSingleShard(Timetable meetings) {
+        if (shards.length > 1 && meetings != null && !meetings.isEmpty()) {
+            throw new IllegalArgumentException("Meeting times need a single shard; clash checks see one shard's courses only.");
+        }
+    }
+
+    /** Adds the courses round-robin, one batch per shard; results are in input order. */
+    public List<Course> addCourses(List<String> names, List<Integer> capacities) {
+        int first = nextCourseShard.getAndAdd(names.size());
+        Course[] added = new Course[names.size()];
+        IntStream.range(0, shards.length).parallel().forEach(i -> {
+            List<Integer> rows = new ArrayList<>();
+            for (int row = Math.floorMod(i - first, shards.length); row < names.size(); row += shards.length) rows.add(row);
+            if (rows.isEmpty()) return;
+            List<Course> created = shards[i].addCourses(select(names, rows), select(capacities, rows));
+            for (int k = 0; k < rows.size(); k++) added[rows.get(k)] = created.get(k);
+        });
+        return new ArrayList<>(Arrays.asList(added));
+    }
+
+    /** All courses of all shards, ordered by id. */
+    public List<Course> listCourses() {
+        return Arrays.stream(shards).parallel()
+                .flatMap(shard -> shard.listCourses().stream())
+                .sorted(Comparator.comparingInt(Course::getKey))
+                .collect(Collectors.toList());
+    }
+
+    public Course findCourseById(String id) { return owner(id).findCourseById(id); }
+
+    public boolean deleteCourse(String courseId) { return owner(courseId).deleteCourse(courseId); }
+
+    public boolean setCourseCapacity(String courseId, int capacity) {
+        return owner(courseId).setCourseCapacity(courseId, capacity);
+    }
+
+    /**
+     * Like {@link RegistrationManager#setCourseMeetings}; with several shards
+     * only {@link Timetable#NONE} is accepted, see the class comment.
+     */
+    public boolean setCourseMeetings(String courseId, Timetable meetings) {
+        requireSingleShard(meetings);
+        return owner(courseId).setCourseMeetings(courseId, meetings);
+    }
+
+    /**
+     * Like {@link RegistrationManager#setCoursePrerequisites}; the
+     * prerequisites must be on the course's shard.
+     */
+    public boolean setCoursePrerequisites(String courseId, List<String> prerequisiteIds) {
+        RegistrationManager owner = owner(courseId);
+        if (owner.findCourseById(courseId) == null) return false;
+        for (String id : prerequisiteIds) {
+            if (owner(id) != owner && findCourseById(id) != null) {
+                throw new IllegalArgumentException("Prerequisite " + id + " is on another shard than " + courseId + ".");
+            }
+        }
+        return owner.setCoursePrerequisites(courseId, prerequisiteIds);
+    }
+
+    // Enrollment operations
+
+    public String enroll(String studentId, String courseId) {
+        return owner(courseId).enroll(studentId, courseId);
+    }
+
+    public String enroll(String studentId, String courseId, int priority) {
+        return owner(courseId).enroll(studentId, courseId, priority);
+    }
+
+    public boolean unenroll(String studentId, String courseId) {
+        return owner(courseId).unenroll(studentId, courseId);
+    }
+
+    public int getWaitlistPosition(String studentId, String courseId) {
+        return owner(courseId).getWaitlistPosition(studentId, courseId);
+    }
+
+    public List<Student> getWaitlist(String courseId) { return owner(courseId).getWaitlist(courseId); }
+
+    public boolean leaveWaitlist(String studentId, String courseId) {
+        return owner(courseId).leaveWaitlist(studentId, courseId);
+    }
+
+    /** Every shard's waitlist entries, shard by shard; see {@link RegistrationManager#forEachWaitlistEntry}. */
+    public void forEachWaitlistEntry(RegistrationManager.WaitlistVisitor visitor) {
+        for (RegistrationManager shard : shards) shard.forEachWaitlistEntry(visitor);
+    }
+
+    public List<Student> getStudentsForCourse(String courseId) {
+        return owner(courseId).getStudentsForCourse(courseId);
+    }
+
+    /** The student's courses, shard by shard and in enrollment order within each; unmodifiable. */
+    public List<Course> getCoursesForStudent(String studentId) {
+        if (shards.length == 1) return shards[0].getCoursesForStudent(studentId);
+        List<Course> out = new ArrayList<>();
+        for (RegistrationManager shard : shards) out.addAll(shard.getCoursesForStudent(studentId));
+        return Collections.unmodifiableList(out);
+    }
+
+    /** All enrollments of all shards in the order they were made. */
+    public List<Enrollment> listEnrollments() {
+        return Arrays.stream(shards).parallel()
+                .flatMap(shard -> shard.listEnrollments().stream())
+                .sorted(Comparator.comparingLong(Enrollment::getTimestampNanos).thenComparingInt(Enrollment::getKey))
+                .collect(Collectors.toList());
+    }
+
+    /** Like {@link RegistrationManager#enrollBatch}, with each shard's part of the batch run in parallel. */
+    public List<String> enrollBatch(List<String> studentIds, List<String> courseIds) {
+        List<List<Integer>> rows = rowsByShard(courseIds);
+        String[] results = new String[courseIds.size()];
+        IntStream.range(0, shards.length).parallel().forEach(i -> {
+            List<Integer> part = rows.get(i);
+            if (part.isEmpty()) return;
+            List<String> shardResults = shards[i].enrollBatch(select(studentIds, part), select(courseIds, part));
+            for (int k = 0; k < part.size(); k++) results[part.get(k)] = shardResults.get(k);
+        });
+        return new ArrayList<>(Arrays.asList(results));
+    }
+
+    /** A cohort shares one course and so one shard; see {@link RegistrationManager#enrollAll(List, String)}. */
+    public BatchResult enrollAll(List<String> studentIds, String courseId) {
+        return owner(courseId).enrollAll(studentIds, courseId);
+    }
+
+    public BatchResult unenrollAll(List<String> studentIds, String courseId) {
+        return owner(courseId).unenrollAll(studentIds, courseId);
+    }
+
+    /**
+     * Enrolls the student in every course or in none. Each shard's part is
+     * all-or-nothing on that shard; if a part is rejected, the parts applied
+     * before it are undone by ordinary unenrollments, which listeners see and
+     * which hand the freed seats to waiting students. Other readers may see
+     * the applied parts in the meantime.
+     */
+    public BatchResult enrollAll(String studentId, List<String> courseIds) {
+        return scheduleBatch(studentId, courseIds, true);
+    }
+
+    /**
+     * Unenrolls the student from every course or from none. The whole batch is
+     * checked against the student's schedule before any shard applies its part,
+     * as freed seats are promoted at once and cannot be taken back; only a
+     * concurrent change to the same student can leave it partly applied.
+     */
+    public BatchResult unenrollAll(String studentId, List<String> courseIds) {
+        return scheduleBatch(studentId, courseIds, false);
+    }
+
+    private BatchResult scheduleBatch(String studentId, List<String> courseIds, boolean enroll) {
+        List<List<Integer>> rows = rowsByShard(courseIds);
+        int used = 0, last = 0;
+        for (int i = 0; i < shards.length; i++) {
+            if (!rows.get(i).isEmpty()) {
+                used++;
+                last = i;
+            }
+        }
+        if (used <= 1) {
+            return enroll ? shards[last].enrollAll(studentId, courseIds) : shards[last].unenrollAll(studentId, courseIds);
+        }
+        if (!enroll) {
+            BatchResult rejected = checkUnenrollments(studentId, courseIds);
+            if (rejected != null) return rejected;
+        }
+
+        BatchResult.Item[] items = new BatchResult.Item[courseIds.size()];
+        List<Integer> appliedShards = new ArrayList<>();
+        boolean rejected = false;
+        for (int i = 0; i < shards.length; i++) {
+            List<Integer> part = rows.get(i);
+            if (part.isEmpty()) continue;
+            if (rejected) {
+                for (int row : part) items[row] = notApplied(studentId, courseIds.get(row));
+                continue;
+            }
+            List<String> partIds = select(courseIds, part);
+            BatchResult result = enroll ? shards[i].enrollAll(studentId, partIds) : shards[i].unenrollAll(studentId, partIds);
+            for (int k = 0; k < part.size(); k++) items[part.get(k)] = result.getItems().get(k);
+            if (result.isApplied()) appliedShards.add(i);
+            else rejected = true;
+        }
+        if (rejected && enroll) {
+            for (int i : appliedShards) {
+                for (int row : rows.get(i)) {
+                    shards[i].unenroll(studentId, courseIds.get(row));
+                    items[row] = notApplied(studentId, courseIds.get(row));
+                }
+            }
+        }
+        return new BatchResult(Arrays.asList(items), !rejected);
+    }
+
+    private static BatchResult.Item notApplied(String studentId, String courseId) {
+        BatchResult.Item item = new BatchResult.Item(studentId, courseId);
+        item.setStatus(BatchResult.Status.NOT_APPLIED);
+        return item;
+    }
+
+    // The rejected result if any item of an unenroll batch would fail, else null
+    private BatchResult checkUnenrollments(String studentId, List<String> courseIds) {
+        boolean known = findStudentById(studentId) != null;
+        Set<Integer> enrolled = new HashSet<>();
+        for (Course c : getCoursesForStudent(studentId)) enrolled.add(c.getKey());
+        Set<Integer> seen = new HashSet<>();
+        List<BatchResult.Item> items = new ArrayList<>(courseIds.size());
+        boolean valid = true;
+        for (String courseId : courseIds) {
+            BatchResult.Item item = new BatchResult.Item(studentId, courseId);
+            Course c = findCourseById(courseId);
+            if (!known) item.setStatus(BatchResult.Status.STUDENT_NOT_FOUND);
+            else if (c == null) item.setStatus(BatchResult.Status.COURSE_NOT_FOUND);
+            else if (!seen.add(c.getKey())) item.setStatus(BatchResult.Status.DUPLICATE);
+            else if (!enrolled.contains(c.getKey())) item.setStatus(BatchResult.Status.NOT_ENROLLED);
+            valid &= !item.hasStatus();
+            items.add(item);
+        }
+        if (valid) return null;
+        for (BatchResult.Item item : items) {
+            if (!item.hasStatus()) item.setStatus(BatchResult.Status.NOT_APPLIED);
+        }
+        return new BatchResult(items, false);
+    }
+}
@@ -0,0 +1,67 @@
+package persistence;
+
+import service.RegistrationManager;
+import service.ShardedRegistrationManager;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Persists a ShardedRegistrationManager as one binary snapshot per shard,
+ * dir/shard-0.snap to dir/shard-(N-1).snap. Shards are saved and loaded in
+ * parallel, each through its own DataStore; a shard without a file starts
+ * empty.
+ */
+public class ShardedStore {
+
+    private final DataStore[] stores;
+
+    public ShardedStore(File dir, int shardCount) {
+        if (shardCount < 1) throw new IllegalArgumentException("At least one shard is required.");
+        stores = new DataStore[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            stores[i] = new DataStore(new File(dir, "shard-" + i + ".snap").getPath(), DataStore.Format.BINARY);
+        }
+    }
+
+    public int getShardCount() { return stores.length; }
+
+    public DataStore getStore(int shard) { return stores[shard]; }
+
+    /** Whether any shard has a file, readable or not. */
+    public boolean exists() {
+        for (DataStore store : stores) {
+            if (store.getFile().exists()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Loads every shard; null if a shard file exists but cannot be read.
+     *
+     * @throws IllegalArgumentException if the files were saved with a different shard count
+     */
+    public ShardedRegistrationManager load() {
+        RegistrationManager[] loaded = new RegistrationManager[stores.length];
+        IntStream.range(0, stores.length).parallel().forEach(i -> {
+            RegistrationManager m = stores[i].load();
+            loaded[i] = m != null || stores[i].getFile().exists() ? m : new RegistrationManager();
+        });
+        for (RegistrationManager m : loaded) {
+            if (m == null) return null;
+        }
+        return new ShardedRegistrationManager(Arrays.asList(loaded));
+    }
+
+    /** Saves every shard, even if one fails; true if all were saved. */
+    public boolean save(ShardedRegistrationManager manager) {
+        if (manager.getShardCount() != stores.length) {
+            throw new IllegalArgumentException("Store has " + stores.length + " shards, manager "
+                    + manager.getShardCount() + ".");
+        }
+        return IntStream.range(0, stores.length).parallel()
+                .filter(i -> !stores[i].save(manager.getShard(i)))
+                .count() == 0;
+    }
+}
@@ -0,0 +1,60 @@
+package bench;
+
+import persistence.DataStore;
+import service.RegistrationManager;
+
+import java.io.File;
+
+/**
+ * Compares the Java-serialization snapshot with the binary snapshot:
+ * save time, load (startup) time, file size and heap retained after load.
+ *
+ * Usage: java -cp out bench.SnapshotBench [enrollments]
+ */
+public class SnapshotBench {
+
+    public static void main(String[] args) {
+        int enrollmentCount = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+
+        Dataset data = new Dataset(enrollmentCount, 42);
+        RegistrationManager manager = data.manager;
+        System.out.printf("dataset: %,d students, %,d courses, %,d enrollments%n",
+                data.studentIds.size(), data.courseIds.size(), data.enrollments);
+
+        File dir = new File(System.getProperty("java.io.tmpdir"), "snapshot-bench");
+        measure("serialized", new DataStore(new File(dir, "bench.ser").getPath()), manager);
+        measure("binary", new DataStore(new File(dir, "bench.snap").getPath(), DataStore.Format.BINARY), manager);
+    }
+
+    private static void measure(String label, DataStore store, RegistrationManager manager) {
+        final int rounds = 5;
+        long saveNanos = Long.MAX_VALUE, loadNanos = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            long t0 = System.nanoTime();
+            if (!store.save(manager)) throw new IllegalStateException(label + " save failed");
+            saveNanos = Math.min(saveNanos, System.nanoTime() - t0);
+        }
+        RegistrationManager loaded = null;
+        for (int i = 0; i < rounds; i++) {
+            loaded = null;
+            long t0 = System.nanoTime();
+            loaded = store.load();
+            loadNanos = Math.min(loadNanos, System.nanoTime() - t0);
+        }
+        loaded = null;
+        long before = usedHeap();
+        loaded = store.load();
+        long retained = usedHeap() - before;
+        if (loaded == null || loaded.listEnrollments().size() != manager.listEnrollments().size()) {
+            throw new IllegalStateException(label + " round trip lost data");
+        }
+        System.out.printf("%-10s save %7.1f ms | load %7.1f ms | file %,12d B | heap after load %,12d B%n",
+                label, saveNanos / 1e6, loadNanos / 1e6, store.getFile().length(), retained);
+    }
+
+    static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
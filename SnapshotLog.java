@@ -0,0 +1,220 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Append-only log of entries in insertion order from which point-in-time
+ * views are taken in O(1), for readers that must not hold up writers.
+ *
+ * Removing an entry does not touch the log's array: it stamps the entry with
+ * the current epoch. A view remembers the array, its length and the epoch it
+ * was taken in, and yields every entry below that length that was not removed
+ * by then. Appends only write past the lengths that views have captured, and
+ * compaction copies live entries into a fresh array, so an array is never
+ * changed under a view that uses it.
+ *
+ * The owner supplies the epochs: removals are stamped with the current epoch,
+ * and after taking a view in epoch E the owner moves on to E + 1 before any
+ * further removal. Appends, removals and view() synchronize on the log;
+ * iterating a view takes no lock.
+ */
+public final class SnapshotLog<T extends SnapshotLog.Entry> {
+
+    /**
+     * Base class of logged entities; holds the epoch in which the entity was
+     * removed from its log, 0 while it is live.
+     */
+    public abstract static class Entry {
+        volatile long removedIn;
+
+        protected Entry() {}
+    }
+
+    private static final int MIN_CAPACITY = 16;
+
+    private Object[] entries = new Object[MIN_CAPACITY];
+    private int length; // slots in use, including removed entries
+    private int live;
+
+    public synchronized int size() { return live; }
+
+    /** Appends a live entry that is not in any log yet. */
+    public synchronized void add(T entry) {
+        if (entry.removedIn != 0) throw new IllegalArgumentException("Entry was already removed");
+        if (length == entries.length) compact(Math.max(MIN_CAPACITY, live * 2));
+        entries[length++] = entry;
+        live++;
+    }
+
+    /** Appends live entries that are in no log yet, in list order, growing the log at most once. */
+    public synchronized void addAll(List<? extends T> batch) {
+        for (T entry : batch) {
+            if (entry.removedIn != 0) throw new IllegalArgumentException("Entry was already removed");
+        }
+        if (length + batch.size() > entries.length) compact(Math.max(MIN_CAPACITY, (live + batch.size()) * 2));
+        for (T entry : batch) entries[length++] = entry;
+        live += batch.size();
+    }
+
+    /** Marks a live entry of this log as removed in the given epoch (at least 1). */
+    public synchronized void remove(T entry, long epoch) {
+        if (entry.removedIn != 0) return;
+        entry.removedIn = epoch;
+        live--;
+        // drop removed entries once they outnumber live ones; amortized O(1) per removal
+        if (length - live > Math.max(MIN_CAPACITY, live)) compact(Math.max(MIN_CAPACITY, live * 2));
+    }
+
+    // Copies live entries into a new array; the old one stays intact for views
+    private void compact(int capacity) {
+        Object[] fresh = new Object[capacity];
+        int n = 0;
+        for (int i = 0; i < length; i++) {
+            if (((Entry) entries[i]).removedIn == 0) fresh[n++] = entries[i];
+        }
+        entries = fresh;
+        length = n;
+    }
+
+    /** The entries live at the end of the given epoch, as of now and until that epoch ends. */
+    public synchronized View<T> view(long epoch) {
+        return new View<>(entries, length, live, epoch);
+    }
+
+    /** Immutable point-in-time view of a log, in insertion order. */
+    public static final class View<T> implements Listing<T> {
+        private final Object[] entries;
+        private final int length;
+        private final int size;
+        private final long epoch;
+
+        private View(Object[] entries, int length, int size, long epoch) {
+            this.entries = entries;
+            this.length = length;
+            this.size = size;
+            this.epoch = epoch;
+        }
+
+        @Override
+        public int size() { return size; }
+
+        @Override
+        public boolean isEmpty() { return size == 0; }
+
+        private boolean visible(int slot) {
+            long removed = ((Entry) entries[slot]).removedIn;
+            return removed == 0 || removed > epoch;
+        }
+
+        private int advance(int slot) {
+            while (slot < length && !visible(slot)) slot++;
+            return slot;
+        }
+
+        /** Up to limit entries after skipping offset; skipping is a scan. */
+        @Override
+        @SuppressWarnings("unchecked")
+        public List<T> page(int offset, int limit) {
+            List<T> out = new ArrayList<>(Math.max(0, Math.min(limit, size - offset)));
+            int skipped = 0;
+            for (int i = advance(0); i < length && out.size() < limit; i = advance(i + 1)) {
+                if (skipped < offset) skipped++;
+                else out.add((T) entries[i]);
+            }
+            return out;
+        }
+
+        /** All entries, copied. */
+        @Override
+        public List<T> toList() {
+            return page(0, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                private int next = advance(0);
+
+                @Override
+                public boolean hasNext() {
+                    return next < length;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public T next() {
+                    if (next >= length) throw new NoSuchElementException();
+                    T value = (T) entries[next];
+                    next = advance(next + 1);
+                    return value;
+                }
+            };
+        }
+
+        @Override
+        public Stream<T> stream() {
+            return StreamSupport.stream(Spliterators.spliterator(iterator(), size,
+                    Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.SIZED), false);
+        }
+
+        /** A parallel stream that splits the view's slots in halves, for aggregations over large logs. */
+        @Override
+        public Stream<T> parallelStream() {
+            return StreamSupport.stream(new Slots(0, length), true);
+        }
+
+        // Visible entries in slots [next, end); sizes are estimates, as removed slots are skipped
+        private final class Slots implements Spliterator<T> {
+            private static final int MIN_SPLIT = 4096;
+
+            private int next;
+            private final int end;
+
+            Slots(int from, int to) {
+                next = from;
+                end = to;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public boolean tryAdvance(Consumer<? super T> action) {
+                while (next < end && !visible(next)) next++;
+                if (next >= end) return false;
+                action.accept((T) entries[next++]);
+                return true;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void forEachRemaining(Consumer<? super T> action) {
+                for (int i = next; i < end; i++) {
+                    if (visible(i)) action.accept((T) entries[i]);
+                }
+                next = end;
+            }
+
+            @Override
+            public Spliterator<T> trySplit() {
+                int mid = (next + end) >>> 1;
+                if (mid - next < MIN_SPLIT) return null;
+                Slots prefix = new Slots(next, mid);
+                next = mid;
+                return prefix;
+            }
+
+            @Override
+            public long estimateSize() { return end - next; }
+
+            @Override
+            public int characteristics() { return ORDERED | NONNULL | IMMUTABLE; }
+        }
+    }
+}
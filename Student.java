@@ -1,45 +1,73 @@
 package domain;
 
+import util.IntLinkedSet;
+import util.SnapshotLog;
+
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.function.IntPredicate;
 
-public class Student implements Serializable {
-    private static final long serialVersionUID = 1L;
+public class Student extends SnapshotLog.Entry implements Serializable {
+    private static final long serialVersionUID = 3L;
 
-    private final String studentId;
+    private final int key;
     private String name;
     private String email;
-    private List<String> enrolledCourseIds = new ArrayList<>();
+    private final IntLinkedSet enrolledCourses = new IntLinkedSet();
+    private transient Set<String> enrolledCourseIds;
 
-    public Student(String studentId, String name, String email) {
-        this.studentId = studentId;
+    public Student(int key, String name, String email) {
+        this.key = key;
         this.name = name;
         this.email = email;
     }
 
-    public String getStudentId() { return studentId; }
+    public int getKey() { return key; }
+    public String getStudentId() { return Ids.student(key); }
     public String getName() { return name; }
     public String getEmail() { return email; }
-    public List<String> getEnrolledCourseIds() { return enrolledCourseIds; }
 
+    /** Unmodifiable live view of the ids of the student's courses, in enrollment order. */
+    public synchronized Set<String> getEnrolledCourseIds() {
+        if (enrolledCourseIds == null) {
+            enrolledCourseIds = new IdSetView(this, enrolledCourses, Ids::course, Ids::parseCourse);
+        }
+        return enrolledCourseIds;
+    }
+
+    public synchronized boolean isEnrolledIn(int courseKey) { return enrolledCourses.contains(courseKey); }
+
+    /** First of the student's courses (in enrollment order) that passes the test, or -1. */
+    public synchronized int findEnrolledCourse(IntPredicate test) {
+        for (PrimitiveIterator.OfInt it = enrolledCourses.iterator(); it.hasNext(); ) {
+            int courseKey = it.nextInt();
+            if (test.test(courseKey)) return courseKey;
+        }
+        return -1;
+    }
+
+    // For managed students use RegistrationManager.renameStudent, which keeps the name index current
     public void setName(String name) { this.name = name; }
     public void setEmail(String email) { this.email = email; }
 
-    public void enrollCourse(String courseId) {
-        if (!enrolledCourseIds.contains(courseId)) {
-            enrolledCourseIds.add(courseId);
-        }
+    // A student can be enrolled into different courses concurrently
+    public synchronized void enrollCourse(int courseKey) {
+        enrolledCourses.add(courseKey);
+    }
+
+    public synchronized void unenrollCourse(int courseKey) {
+        enrolledCourses.remove(courseKey);
     }
 
-    public void unenrollCourse(String courseId) {
-        enrolledCourseIds.remove(courseId);
+    /** Minimal shape check: an '@' with at least one character on each side. */
+    public static boolean isValidEmail(String email) {
+        return email != null && email.contains("@") && email.indexOf("@") > 0 && email.indexOf("@") < email.length() - 1;
     }
 
     @Override
     public String toString() {
-        return String.format("%s | %s | %s", studentId, name, email);
+        return String.format("%s | %s | %s", getStudentId(), name, email);
     }
 
     @Override
@@ -48,11 +76,11 @@ public class Student implements Serializable {
         if (o == null || getClass() != o.getClass()) return false;
 
         Student s = (Student) o;
-        return Objects.equals(studentId, s.studentId);
+        return key == s.key;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(studentId);
+        return Integer.hashCode(key);
     }
 }
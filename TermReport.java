@@ -0,0 +1,186 @@
+package service;
+
+import domain.Course;
+import domain.Enrollment;
+import domain.Student;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Term figures for the registrar, computed from one {@link RegistrationService#listings()}:
+ * fill rate and waitlist per course, oversubscribed courses, how many courses
+ * students take (and who has a full schedule), and enrollments per day or
+ * hour.
+ *
+ * Enrollment counts come from a single pass over the snapshot's enrollments,
+ * optionally as a parallel stream: per-course and per-student counts go into
+ * shared atomic arrays indexed by key, and every split keeps its own
+ * time buckets, merged when the splits join. Capacities and waitlists are
+ * read live, right after the snapshot is taken. A sharded service snapshots
+ * each shard at its own instant, so enrollments of students or courses that
+ * the listings do not hold are left out of the per-course and per-student
+ * counts.
+ */
+public final class TermReport {
+
+    /** One course's line of the report. */
+    public static final class CourseLine {
+        private final Course course;
+        private final int capacity;
+        private final int enrolled;
+        private final int waitlisted;
+
+        CourseLine(Course course, int enrolled, int waitlisted) {
+            this.course = course;
+            this.capacity = course.getCapacity();
+            this.enrolled = enrolled;
+            this.waitlisted = waitlisted;
+        }
+
+        public String getCourseId() { return course.getCourseId(); }
+        public String getCourseName() { return course.getCourseName(); }
+        /** 0 means unlimited. */
+        public int getCapacity() { return capacity; }
+        public int getEnrolled() { return enrolled; }
+        public int getWaitlisted() { return waitlisted; }
+
+        /** Enrolled over capacity; 0 for unlimited courses. */
+        public double getFillRate() { return capacity == 0 ? 0 : (double) enrolled / capacity; }
+
+        /** More students enrolled or waiting than the course has seats. */
+        public boolean isOversubscribed() { return capacity > 0 && enrolled + waitlisted > capacity; }
+
+        double demand() { return capacity == 0 ? 0 : (double) (enrolled + waitlisted) / capacity; }
+    }
+
+    private final List<CourseLine> courses;
+    private final long[] scheduleSizes;
+    private final int fullScheduleCourses;
+    private final List<Student> fullSchedule;
+    private final ChronoUnit interval;
+    private final SortedMap<LocalDateTime, Long> enrollmentsOverTime;
+    private final long enrollmentCount;
+
+    private TermReport(List<CourseLine> courses, long[] scheduleSizes, int fullScheduleCourses,
+                       List<Student> fullSchedule, ChronoUnit interval,
+                       SortedMap<LocalDateTime, Long> enrollmentsOverTime, long enrollmentCount) {
+        this.courses = courses;
+        this.scheduleSizes = scheduleSizes;
+        this.fullScheduleCourses = fullScheduleCourses;
+        this.fullSchedule = fullSchedule;
+        this.interval = interval;
+        this.enrollmentsOverTime = enrollmentsOverTime;
+        this.enrollmentCount = enrollmentCount;
+    }
+
+    /**
+     * Computes the report.
+     *
+     * @param fullScheduleCourses number of courses from which a schedule counts as full
+     * @param interval            bucket width of the enrollments-over-time series, at most a day
+     * @param parallel            aggregate the enrollments with a parallel stream
+     */
+    public static TermReport compute(RegistrationService manager, int fullScheduleCourses,
+                                     ChronoUnit interval, boolean parallel) {
+        if (interval.compareTo(ChronoUnit.DAYS) > 0 || interval.compareTo(ChronoUnit.SECONDS) < 0) {
+            throw new IllegalArgumentException("Interval must be between seconds and days: " + interval);
+        }
+        RegistrationService.Listings snapshot = manager.listings();
+        int maxCourseKey = 0, maxStudentKey = 0;
+        for (Course c : snapshot.courses()) maxCourseKey = Math.max(maxCourseKey, c.getKey());
+        for (Student s : snapshot.students()) maxStudentKey = Math.max(maxStudentKey, s.getKey());
+        Map<String, Integer> waiting = new HashMap<>();
+        manager.forEachWaitlistEntry((studentId, courseId, priority) -> waiting.merge(courseId, 1, Integer::sum));
+
+        AtomicIntegerArray perCourse = new AtomicIntegerArray(maxCourseKey + 1);
+        AtomicIntegerArray perStudent = new AtomicIntegerArray(maxStudentKey + 1);
+        long bucketNanos = interval.getDuration().toNanos();
+        Stream<Enrollment> enrollments = parallel
+                ? snapshot.enrollments().parallelStream() : snapshot.enrollments().stream();
+        Buckets buckets = enrollments.collect(Buckets::new, (b, e) -> {
+            if (e.getCourseKey() < perCourse.length()) perCourse.incrementAndGet(e.getCourseKey());
+            if (e.getStudentKey() < perStudent.length()) perStudent.incrementAndGet(e.getStudentKey());
+            b.add(Math.floorDiv(e.getTimestampNanos(), bucketNanos));
+        }, Buckets::merge);
+
+        List<CourseLine> lines = new ArrayList<>(snapshot.courses().size());
+        for (Course c : snapshot.courses()) {
+            lines.add(new CourseLine(c, perCourse.get(c.getKey()), waiting.getOrDefault(c.getCourseId(), 0)));
+        }
+        long[] sizes = new long[1];
+        List<Student> full = new ArrayList<>();
+        for (Student s : snapshot.students()) {
+            int n = perStudent.get(s.getKey());
+            if (n >= sizes.length) sizes = Arrays.copyOf(sizes, n + 1);
+            sizes[n]++;
+            if (n >= fullScheduleCourses) full.add(s);
+        }
+        SortedMap<LocalDateTime, Long> overTime = new TreeMap<>();
+        long total = 0;
+        for (Map.Entry<Long, long[]> b : buckets.counts.entrySet()) {
+            long start = b.getKey() * bucketNanos;
+            overTime.put(LocalDateTime.ofEpochSecond(Math.floorDiv(start, 1_000_000_000L),
+                    (int) Math.floorMod(start, 1_000_000_000L), ZoneOffset.UTC), b.getValue()[0]);
+            total += b.getValue()[0];
+        }
+        return new TermReport(Collections.unmodifiableList(lines), sizes, fullScheduleCourses,
+                Collections.unmodifiableList(full), interval, Collections.unmodifiableSortedMap(overTime), total);
+    }
+
+    // Enrollment counts by time bucket for one split of the stream. Enrollments
+    // are logged in time order, so the current bucket is cached.
+    private static final class Buckets {
+        final Map<Long, long[]> counts = new HashMap<>();
+        long bucket = Long.MIN_VALUE;
+        long[] count;
+
+        void add(long b) {
+            if (b != bucket || count == null) {
+                bucket = b;
+                count = counts.computeIfAbsent(b, k -> new long[1]);
+            }
+            count[0]++;
+        }
+
+        void merge(Buckets other) {
+            other.counts.forEach((b, c) -> counts.computeIfAbsent(b, k -> new long[1])[0] += c[0]);
+        }
+    }
+
+    /** Every course in the order it was added. */
+    public List<CourseLine> getCourses() { return courses; }
+
+    /** Courses with more demand than seats, most oversubscribed first. */
+    public List<CourseLine> getOversubscribed() {
+        return courses.stream().filter(CourseLine::isOversubscribed)
+                .sorted(Comparator.comparingDouble(CourseLine::demand).reversed())
+                .collect(Collectors.toList());
+    }
+
+    /** Mean fill rate of the courses with a capacity; 0 if there are none. */
+    public double getAverageFillRate() {
+        return courses.stream().filter(l -> l.getCapacity() > 0)
+                .mapToDouble(CourseLine::getFillRate).average().orElse(0);
+    }
+
+    /** Element n is the number of students taking n courses. */
+    public long[] getScheduleSizes() { return scheduleSizes.clone(); }
+
+    public int getFullScheduleCourses() { return fullScheduleCourses; }
+
+    /** Students taking at least {@link #getFullScheduleCourses()} courses, in the order they were added. */
+    public List<Student> getFullScheduleStudents() { return fullSchedule; }
+
+    public ChronoUnit getInterval() { return interval; }
+
+    /** Enrollments per interval, keyed by the interval's start; intervals without enrollments are absent. */
+    public SortedMap<LocalDateTime, Long> getEnrollmentsOverTime() { return enrollmentsOverTime; }
+
+    public long getEnrollmentCount() { return enrollmentCount; }
+}
@@ -0,0 +1,86 @@
+package domain;
+
+import java.io.Serializable;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/** One weekly meeting of a course, e.g. "MON 09:00-10:30". Immutable. */
+public final class TimeSlot implements Comparable<TimeSlot>, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private final DayOfWeek day;
+    private final LocalTime start;
+    private final LocalTime end;
+
+    public TimeSlot(DayOfWeek day, LocalTime start, LocalTime end) {
+        if (day == null || start == null || end == null) throw new IllegalArgumentException("Incomplete time slot.");
+        if (!start.isBefore(end)) throw new IllegalArgumentException("Time slot must end after it starts: " + start + "-" + end);
+        this.day = day;
+        this.start = start.withSecond(0).withNano(0);
+        this.end = end.withSecond(0).withNano(0);
+    }
+
+    /** Parses "MON 09:00-10:30"; days are MON..SUN in any case. */
+    public static TimeSlot parse(String text) {
+        String t = text.trim();
+        int space = t.indexOf(' '), dash = t.indexOf('-');
+        if (space < 0 || dash < space) throw new IllegalArgumentException("Invalid time slot '" + text + "', expected e.g. MON 09:00-10:30.");
+        try {
+            return new TimeSlot(day(t.substring(0, space)), LocalTime.parse(t.substring(space + 1, dash).trim()),
+                    LocalTime.parse(t.substring(dash + 1).trim()));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid time in slot '" + text + "'.");
+        }
+    }
+
+    private static DayOfWeek day(String abbreviation) {
+        String a = abbreviation.trim().toUpperCase(Locale.ROOT);
+        for (DayOfWeek d : DayOfWeek.values()) {
+            if (a.length() >= 3 && d.name().startsWith(a)) return d;
+        }
+        throw new IllegalArgumentException("Unknown day '" + abbreviation + "'.");
+    }
+
+    public DayOfWeek getDay() { return day; }
+    public LocalTime getStart() { return start; }
+    public LocalTime getEnd() { return end; }
+
+    /** Minutes from Monday 00:00 to the start. */
+    public int startMinuteOfWeek() { return (day.getValue() - 1) * MINUTES_PER_DAY + start.getHour() * 60 + start.getMinute(); }
+
+    /** Minutes from Monday 00:00 to the end (exclusive). */
+    public int endMinuteOfWeek() { return (day.getValue() - 1) * MINUTES_PER_DAY + end.getHour() * 60 + end.getMinute(); }
+
+    /** True if both meet at the same time; back-to-back slots do not overlap. */
+    public boolean overlaps(TimeSlot other) {
+        return startMinuteOfWeek() < other.endMinuteOfWeek() && other.startMinuteOfWeek() < endMinuteOfWeek();
+    }
+
+    @Override
+    public int compareTo(TimeSlot o) {
+        int c = Integer.compare(startMinuteOfWeek(), o.startMinuteOfWeek());
+        return c != 0 ? c : Integer.compare(endMinuteOfWeek(), o.endMinuteOfWeek());
+    }
+
+    @Override
+    public String toString() {
+        return day.name().substring(0, 3) + " " + start + "-" + end;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TimeSlot)) return false;
+        TimeSlot t = (TimeSlot) o;
+        return day == t.day && start.equals(t.start) && end.equals(t.end);
+    }
+
+    @Override
+    public int hashCode() {
+        return startMinuteOfWeek() * 31 + endMinuteOfWeek();
+    }
+}
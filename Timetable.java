@@ -0,0 +1,116 @@
+package domain;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The weekly meeting times of a course. Immutable.
+ *
+ * Besides the slots themselves a timetable keeps the week as a bitset with
+ * one bit per 5 minutes (2016 bits, 32 longs). Only the non-zero longs are
+ * stored, with an int whose bit w says whether long w is present, so a
+ * course meeting twice a week costs a few longs. Two timetables that share
+ * no long cannot clash, which one AND of the int masks settles for courses
+ * on different days; otherwise the shared longs are compared, and only if
+ * they intersect are the slots compared exactly (slots are widened to whole
+ * 5 minutes in the bitset).
+ */
+public final class Timetable implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final int SLOT_MINUTES = 5;
+
+    /** No meeting times: clashes with nothing. */
+    public static final Timetable NONE = new Timetable(new TimeSlot[0]);
+
+    private final TimeSlot[] slots;
+    private final int usedWords;
+    private final long[] words;
+
+    private Timetable(TimeSlot[] slots) {
+        Arrays.sort(slots);
+        long[] week = new long[32];
+        for (TimeSlot s : slots) {
+            int from = s.startMinuteOfWeek() / SLOT_MINUTES;
+            int to = (s.endMinuteOfWeek() + SLOT_MINUTES - 1) / SLOT_MINUTES;
+            for (int bit = from; bit < to; bit++) week[bit >>> 6] |= 1L << bit;
+        }
+        int used = 0, n = 0;
+        for (int w = 0; w < week.length; w++) {
+            if (week[w] != 0) {
+                used |= 1 << w;
+                week[n++] = week[w];
+            }
+        }
+        this.slots = slots;
+        this.usedWords = used;
+        this.words = Arrays.copyOf(week, n);
+    }
+
+    public static Timetable of(List<TimeSlot> slots) {
+        return slots.isEmpty() ? NONE : new Timetable(slots.toArray(new TimeSlot[0]));
+    }
+
+    /** Parses slots separated by ';' or ',', e.g. "MON 09:00-10:30; WED 09:00-10:30"; blank means none. */
+    public static Timetable parse(String text) {
+        if (text == null || text.isBlank()) return NONE;
+        List<TimeSlot> slots = new ArrayList<>();
+        for (String part : text.split("[;,]")) {
+            if (!part.isBlank()) slots.add(TimeSlot.parse(part));
+        }
+        return of(slots);
+    }
+
+    /** The slots in week order. */
+    public List<TimeSlot> getSlots() { return Collections.unmodifiableList(Arrays.asList(slots)); }
+
+    public boolean isEmpty() { return slots.length == 0; }
+
+    /** True if some slot of this timetable overlaps some slot of the other. */
+    public boolean overlaps(Timetable other) {
+        int common = usedWords & other.usedWords;
+        for (int m = common; m != 0; m &= m - 1) {
+            int w = Integer.numberOfTrailingZeros(m);
+            if ((word(w) & other.word(w)) != 0) return slotsOverlap(other);
+        }
+        return false;
+    }
+
+    private long word(int w) {
+        return words[Integer.bitCount(usedWords & ((1 << w) - 1))];
+    }
+
+    private boolean slotsOverlap(Timetable other) {
+        for (TimeSlot a : slots) {
+            for (TimeSlot b : other.slots) {
+                if (a.overlaps(b)) return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (TimeSlot s : slots) {
+            if (sb.length() > 0) sb.append("; ");
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Timetable)) return false;
+        return Arrays.equals(slots, ((Timetable) o).slots);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(slots);
+    }
+}
@@ -0,0 +1,97 @@
+package service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of read-only entity lists (schedules and rosters), keyed
+ * by a long. Split into segments, each an access-ordered LinkedHashMap under
+ * its own monitor, so lookups of different keys rarely contend.
+ *
+ * A value is computed outside the segment's lock and stored only if no key
+ * of that segment was invalidated meanwhile. Writers invalidate after their
+ * change is made, so a reader that raced with a change never caches what it
+ * saw before it.
+ */
+final class ViewCache {
+
+    private static final int SEGMENTS = 16; // power of two
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final int capacity;
+
+    /** Holds up to capacity views in total; 0 disables caching. */
+    ViewCache(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        int perSegment = (this.capacity + SEGMENTS - 1) / SEGMENTS;
+        for (int i = 0; i < SEGMENTS; i++) segments[i] = new Segment(perSegment);
+    }
+
+    private static final class Segment {
+        final Map<Long, List<?>> map;
+        long invalidations;
+        long hits, misses, evictions;
+
+        Segment(int capacity) {
+            map = new LinkedHashMap<Long, List<?>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, List<?>> eldest) {
+                    if (size() <= capacity) return false;
+                    evictions++;
+                    return true;
+                }
+            };
+        }
+    }
+
+    private Segment segment(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return segments[(int) (h >>> 60) & (SEGMENTS - 1)];
+    }
+
+    /** The cached list for key, or the one loader returns (an unmodifiable list). */
+    @SuppressWarnings("unchecked")
+    <T> List<T> get(long key, Supplier<List<T>> loader) {
+        if (capacity == 0) return loader.get();
+        Segment seg = segment(key);
+        long token;
+        synchronized (seg) {
+            List<?> cached = seg.map.get(key);
+            if (cached != null) {
+                seg.hits++;
+                return (List<T>) cached;
+            }
+            seg.misses++;
+            token = seg.invalidations;
+        }
+        List<T> loaded = loader.get();
+        synchronized (seg) {
+            if (seg.invalidations == token) seg.map.put(key, loaded);
+        }
+        return loaded;
+    }
+
+    void invalidate(long key) {
+        if (capacity == 0) return;
+        Segment seg = segment(key);
+        synchronized (seg) {
+            seg.map.remove(key);
+            seg.invalidations++;
+        }
+    }
+
+    CacheStats stats() {
+        long hits = 0, misses = 0, evictions = 0, size = 0;
+        for (Segment seg : segments) {
+            synchronized (seg) {
+                hits += seg.hits;
+                misses += seg.misses;
+                evictions += seg.evictions;
+                size += seg.map.size();
+            }
+        }
+        return new CacheStats(hits, misses, evictions, size, capacity);
+    }
+}
@@ -0,0 +1,198 @@
+package service;
+
+import util.IntLinkedMap;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * Waitlist of one course: students ordered by priority (higher first), then
+ * by join order.
+ *
+ * Entries form a treap whose nodes count their subtree, so join, leave,
+ * promote-first and position lookups are all O(log n) expected. Students map
+ * to their nodes directly, so no lookup scans the queue.
+ *
+ * Not thread-safe; the manager guards each waitlist with its course lock.
+ */
+final class Waitlist implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final class Node {
+        final int student;
+        final int priority;
+        final long ticket;
+        final int heap;
+        int size = 1;
+        Node left, right;
+
+        Node(int student, int priority, long ticket) {
+            this.student = student;
+            this.priority = priority;
+            this.ticket = ticket;
+            long h = ticket * 0x9E3779B97F4A7C15L;
+            this.heap = (int) (h ^ (h >>> 32));
+        }
+    }
+
+    private transient Node root;
+    private transient IntLinkedMap<Node> byStudent;
+    private transient long nextTicket;
+
+    int size() { return size(root); }
+    boolean isEmpty() { return root == null; }
+
+    boolean contains(int student) {
+        return byStudent != null && byStudent.containsKey(student);
+    }
+
+    /** Queues the student and returns their 1-based position; an existing entry keeps its place. */
+    int add(int student, int priority) {
+        if (byStudent == null) byStudent = new IntLinkedMap<>();
+        Node existing = byStudent.get(student);
+        if (existing != null) return rank(existing);
+        Node n = new Node(student, priority, nextTicket++);
+        byStudent.put(student, n);
+        root = insert(root, n);
+        return rank(n);
+    }
+
+    boolean remove(int student) {
+        Node n = byStudent == null ? null : byStudent.remove(student);
+        if (n == null) return false;
+        root = delete(root, n);
+        return true;
+    }
+
+    /** 1-based position of the student, or 0 if not waiting. */
+    int position(int student) {
+        Node n = byStudent == null ? null : byStudent.get(student);
+        return n == null ? 0 : rank(n);
+    }
+
+    /** Priority the student joined with; the student must be waiting. */
+    int priorityOf(int student) {
+        return byStudent.get(student).priority;
+    }
+
+    /** Removes and returns the first student in line, or -1 if empty. */
+    int poll() {
+        if (root == null) return -1;
+        Node first = root;
+        while (first.left != null) first = first.left;
+        remove(first.student);
+        return first.student;
+    }
+
+    /** Waiting students in line order. */
+    int[] students() {
+        int[] out = new int[size()];
+        fill(root, out, 0);
+        return out;
+    }
+
+    private static int fill(Node t, int[] out, int i) {
+        if (t == null) return i;
+        i = fill(t.left, out, i);
+        out[i++] = t.student;
+        return fill(t.right, out, i);
+    }
+
+    private static int size(Node t) { return t == null ? 0 : t.size; }
+
+    private static void update(Node t) { t.size = 1 + size(t.left) + size(t.right); }
+
+    // True when a is served before b
+    private static boolean before(Node a, Node b) {
+        return a.priority != b.priority ? a.priority > b.priority : a.ticket < b.ticket;
+    }
+
+    private int rank(Node n) {
+        int r = 0;
+        Node t = root;
+        while (t != n) {
+            if (before(n, t)) {
+                t = t.left;
+            } else {
+                r += size(t.left) + 1;
+                t = t.right;
+            }
+        }
+        return r + size(n.left) + 1;
+    }
+
+    private static Node insert(Node t, Node n) {
+        if (t == null) return n;
+        if (n.heap > t.heap) {
+            Node[] parts = split(t, n);
+            n.left = parts[0];
+            n.right = parts[1];
+            update(n);
+            return n;
+        }
+        if (before(n, t)) t.left = insert(t.left, n);
+        else t.right = insert(t.right, n);
+        update(t);
+        return t;
+    }
+
+    // Splits t into the nodes served before n and the rest
+    private static Node[] split(Node t, Node n) {
+        if (t == null) return new Node[2];
+        if (before(t, n)) {
+            Node[] parts = split(t.right, n);
+            t.right = parts[0];
+            update(t);
+            parts[0] = t;
+            return parts;
+        }
+        Node[] parts = split(t.left, n);
+        t.left = parts[1];
+        update(t);
+        parts[1] = t;
+        return parts;
+    }
+
+    private static Node delete(Node t, Node n) {
+        if (t == n) return merge(t.left, t.right);
+        if (before(n, t)) t.left = delete(t.left, n);
+        else t.right = delete(t.right, n);
+        update(t);
+        return t;
+    }
+
+    private static Node merge(Node a, Node b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.heap > b.heap) {
+            a.right = merge(a.right, b);
+            update(a);
+            return a;
+        }
+        b.left = merge(a, b.left);
+        update(b);
+        return b;
+    }
+
+    // Persist the line as (student, priority) pairs in order; tickets restart on load
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        int[] line = students();
+        out.writeInt(line.length);
+        for (int student : line) {
+            out.writeInt(student);
+            out.writeInt(priorityOf(student));
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            int student = in.readInt();
+            add(student, in.readInt());
+        }
+    }
+}
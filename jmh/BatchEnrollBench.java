@@ -0,0 +1,127 @@
+package bench;
+
+import persistence.Journal;
+import service.BatchResult;
+import service.RegistrationManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batch enrollment (enrollAll) against looped single enroll calls, for
+ * cohorts (many students into one course) and schedules (one student into
+ * many courses). Scores ns per enrollment. With journal=true every change is
+ * also encoded into a write-ahead journal, as in journal mode.
+ *
+ * Usage: java -jar build/libs/registration-jmh.jar BatchEnrollBench [-p journal=true]
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@Threads(1)
+public class BatchEnrollBench {
+
+    private static final int ENROLLMENTS_PER_INVOCATION = 20_000;
+
+    @Param({ "cohort", "schedule" })
+    public String shape;
+
+    @Param({ "5", "20", "100", "1000" })
+    public int size;
+
+    @Param({ "false", "true" })
+    public boolean journal;
+
+    private RegistrationManager manager;
+    private boolean cohort;
+    // Groups of `size` (student, course) pairs: one course per cohort, one student per schedule
+    private final List<List<String>> members = new ArrayList<>();
+    private final List<String> owners = new ArrayList<>();
+    private Journal journalFile;
+    private File file;
+
+    @Setup(Level.Trial)
+    public void build() throws IOException {
+        int groups = ENROLLMENTS_PER_INVOCATION / size;
+        manager = new RegistrationManager();
+        cohort = shape.equals("cohort");
+        for (int g = 0; g < groups; g++) {
+            List<String> ids = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                ids.add(cohort ? manager.addStudent("Student " + g + "-" + i, "s" + g + "-" + i + "@uni.edu").getStudentId()
+                        : manager.addCourse("Course " + g + "-" + i, 0).getCourseId());
+            }
+            members.add(ids);
+            owners.add(cohort ? manager.addCourse("Course " + g, 0).getCourseId()
+                    : manager.addStudent("Student " + g, "s" + g + "@uni.edu").getStudentId());
+        }
+        file = File.createTempFile("batch-bench", ".journal");
+        if (journal) {
+            journalFile = new Journal(file, 10);
+            manager.addChangeListener(journalFile);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        if (journalFile != null) {
+            manager.removeChangeListener(journalFile);
+            journalFile.close();
+        }
+        if (!file.delete()) file.deleteOnExit();
+    }
+
+    @TearDown(Level.Invocation)
+    public void clear() {
+        for (int g = 0; g < owners.size(); g++) {
+            if (cohort) manager.unenrollAll(members.get(g), owners.get(g));
+            else manager.unenrollAll(owners.get(g), members.get(g));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENROLLMENTS_PER_INVOCATION)
+    public void looped(Blackhole bh) {
+        for (int g = 0; g < owners.size(); g++) {
+            for (String id : members.get(g)) {
+                String result = cohort ? manager.enroll(id, owners.get(g)) : manager.enroll(owners.get(g), id);
+                if (!result.startsWith("OK:")) throw new IllegalStateException(result);
+                bh.consume(result);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENROLLMENTS_PER_INVOCATION)
+    public void enrollAll(Blackhole bh) {
+        for (int g = 0; g < owners.size(); g++) {
+            BatchResult r = cohort ? manager.enrollAll(members.get(g), owners.get(g))
+                    : manager.enrollAll(owners.get(g), members.get(g));
+            if (!r.isApplied()) throw new IllegalStateException(r.getFailures().toString());
+            bh.consume(r);
+        }
+    }
+}
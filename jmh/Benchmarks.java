@@ -0,0 +1,268 @@
+package bench;
+
+import domain.Course;
+import domain.Student;
+import persistence.DataStore;
+import service.RegistrationManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Baseline benchmarks for the RegistrationManager and DataStore hot paths at
+ * parameterized dataset sizes, on one thread ({@link SingleThreaded}) and on
+ * one thread per core ({@link AllCores}).
+ *
+ * Usage: java -jar build/libs/registration-jmh.jar 'bench.Benchmarks.*' [-p size=1000,10000,100000]
+ *
+ * size is the number of enrollments in the dataset; large sizes (10^7) need
+ * a matching -jvmArgs -Xmx. Scores are ns per operation, and ms per save or
+ * load for {@link Persistence}.
+ */
+public class Benchmarks {
+
+    private static final int BATCH = 1_000;
+    private static final int DELETE_BATCH = 200;
+
+    /** The dataset, built once per trial and shared by all threads. */
+    @State(Scope.Benchmark)
+    public static class Data {
+        @Param({ "1000", "10000", "100000" })
+        public int size;
+
+        Dataset dataset;
+
+        @Setup(Level.Trial)
+        public void build() {
+            dataset = new Dataset(size, 42);
+        }
+    }
+
+    /** The dataset with a roster/schedule cache of the given size. */
+    @State(Scope.Benchmark)
+    public static class CachedData {
+        @Param({ "1000", "10000", "100000" })
+        public int size;
+
+        @Param({ "0", "" + RegistrationManager.DEFAULT_VIEW_CACHE_SIZE })
+        public int viewCacheSize;
+
+        Dataset dataset;
+
+        @Setup(Level.Trial)
+        public void build() {
+            dataset = new Dataset(size, 42);
+            dataset.manager.setViewCacheSize(viewCacheSize);
+        }
+    }
+
+    /**
+     * BATCH students of one thread, added for the trial and enrolled nowhere
+     * between invocations, each paired with a random course per invocation.
+     */
+    @State(Scope.Thread)
+    public static class Newcomers {
+        final List<String[]> pairs = new ArrayList<>(BATCH);
+
+        @Setup(Level.Trial)
+        public void add(Data data) {
+            addNewcomers(data.dataset, pairs);
+        }
+
+        @Setup(Level.Invocation)
+        public void pick(Data data) {
+            pickCourses(data.dataset, pairs);
+        }
+
+        @TearDown(Level.Invocation)
+        public void undo(Data data) {
+            for (String[] p : pairs) data.dataset.manager.unenroll(p[0], p[1]);
+        }
+    }
+
+    /** Like {@link Newcomers}, but enrolled before each invocation. */
+    @State(Scope.Thread)
+    public static class EnrolledNewcomers {
+        final List<String[]> pairs = new ArrayList<>(BATCH);
+
+        @Setup(Level.Trial)
+        public void add(Data data) {
+            addNewcomers(data.dataset, pairs);
+        }
+
+        @Setup(Level.Invocation)
+        public void enroll(Data data) {
+            pickCourses(data.dataset, pairs);
+            for (String[] p : pairs) data.dataset.manager.enroll(p[0], p[1]);
+        }
+    }
+
+    private static void addNewcomers(Dataset d, List<String[]> pairs) {
+        for (int i = 0; i < BATCH; i++) {
+            pairs.add(new String[] { d.manager.addStudent("Newcomer " + i, "newcomer" + i + "@uni.edu").getStudentId(), null });
+        }
+    }
+
+    private static void pickCourses(Dataset d, List<String[]> pairs) {
+        Random rnd = ThreadLocalRandom.current();
+        for (String[] p : pairs) p[1] = d.randomCourse(rnd);
+    }
+
+    /** Courses with a typical roster, deleted by one invocation. */
+    @State(Scope.Thread)
+    public static class DoomedCourses {
+        final List<String> courseIds = new ArrayList<>();
+
+        @Setup(Level.Invocation)
+        public void add(Data data) {
+            Dataset d = data.dataset;
+            int roster = Math.max(1, d.enrollments / d.courseIds.size());
+            Random rnd = ThreadLocalRandom.current();
+            courseIds.clear();
+            for (int i = 0; i < DELETE_BATCH; i++) {
+                String cid = d.manager.addCourse("Doomed " + i, 0).getCourseId();
+                for (int j = 0; j < roster; j++) d.manager.enroll(d.randomStudent(rnd), cid);
+                courseIds.add(cid);
+            }
+        }
+    }
+
+    /** The operations measured at every thread count; batch operations score ns per item. */
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @Warmup(iterations = 2, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public abstract static class Operations {
+
+        @Benchmark
+        @OperationsPerInvocation(BATCH)
+        public void enroll(Data data, Newcomers newcomers, Blackhole bh) {
+            for (String[] p : newcomers.pairs) bh.consume(data.dataset.manager.enroll(p[0], p[1]));
+        }
+
+        @Benchmark
+        @OperationsPerInvocation(BATCH)
+        public void unenroll(Data data, EnrolledNewcomers enrolled, Blackhole bh) {
+            for (String[] p : enrolled.pairs) bh.consume(data.dataset.manager.unenroll(p[0], p[1]));
+        }
+
+        @Benchmark
+        public List<Student> getStudentsForCourse(Data data) {
+            return data.dataset.manager.getStudentsForCourse(data.dataset.randomCourse(ThreadLocalRandom.current()));
+        }
+
+        @Benchmark
+        public List<Course> getCoursesForStudent(Data data) {
+            return data.dataset.manager.getCoursesForStudent(data.dataset.randomStudent(ThreadLocalRandom.current()));
+        }
+
+        @Benchmark
+        public List<Student> searchStudentsByName(Data data) {
+            return data.dataset.manager.searchStudentsByName(Dataset.randomLastName(ThreadLocalRandom.current()));
+        }
+
+        // 99% roster/schedule reads; the rest flip a random enrollment and flip it back
+        @Benchmark
+        public void readMix99(CachedData data, Blackhole bh) {
+            Dataset d = data.dataset;
+            ThreadLocalRandom rnd = ThreadLocalRandom.current();
+            int kind = rnd.nextInt(100);
+            if (kind < 50) bh.consume(d.manager.getStudentsForCourse(d.randomCourse(rnd)));
+            else if (kind < 99) bh.consume(d.manager.getCoursesForStudent(d.randomStudent(rnd)));
+            else {
+                String sid = d.randomStudent(rnd), cid = d.randomCourse(rnd);
+                if (d.manager.unenroll(sid, cid)) bh.consume(d.manager.enroll(sid, cid));
+                else if (d.manager.enroll(sid, cid).startsWith("OK:")) bh.consume(d.manager.unenroll(sid, cid));
+            }
+        }
+
+        @Benchmark
+        public Object listEnrollments(Data data) {
+            return data.dataset.manager.listEnrollments();
+        }
+
+        @Benchmark
+        public Object snapshotPage50(Data data) {
+            return data.dataset.manager.snapshot().enrollments().page(0, 50);
+        }
+
+        @Benchmark
+        @OperationsPerInvocation(DELETE_BATCH)
+        public void deleteCourse(Data data, DoomedCourses doomed, Blackhole bh) {
+            for (String cid : doomed.courseIds) bh.consume(data.dataset.manager.deleteCourse(cid));
+        }
+    }
+
+    @Threads(1)
+    public static class SingleThreaded extends Operations {}
+
+    @Threads(Threads.MAX)
+    public static class AllCores extends Operations {}
+
+    /** A store of the given format in a temp directory, holding the dataset once saved. */
+    @State(Scope.Benchmark)
+    public static class Store {
+        @Param({ "SERIALIZED", "BINARY" })
+        public DataStore.Format format;
+
+        File dir;
+        DataStore store;
+
+        @Setup(Level.Trial)
+        public void open(Data data) throws IOException {
+            dir = Files.createTempDirectory("registration-bench").toFile();
+            store = new DataStore(new File(dir, "bench.data").getPath(), format);
+            if (!store.save(data.dataset.manager)) throw new IllegalStateException("save failed");
+        }
+
+        @TearDown(Level.Trial)
+        public void delete() {
+            for (File f : dir.listFiles()) f.delete();
+            dir.delete();
+        }
+    }
+
+    /** Whole-dataset saves and loads, one at a time. */
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    @Threads(1)
+    public static class Persistence {
+
+        @Benchmark
+        public boolean save(Data data, Store store) {
+            return store.store.save(data.dataset.manager);
+        }
+
+        @Benchmark
+        public RegistrationManager load(Store store) {
+            return store.store.load();
+        }
+    }
+}
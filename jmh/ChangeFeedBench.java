@@ -0,0 +1,104 @@
+package bench;
+
+import persistence.ChangeFileSink;
+import service.ChangeFeed;
+import service.RegistrationManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cost of publishing changes on the enroll path: one enroll plus one
+ * unenroll of a random student and course (two events) with no feed, with a
+ * ChangeFeed nobody reads, with one subscriber draining it on its own thread,
+ * and with a ChangeFileSink appending it to a file. Scores ns per
+ * enroll+unenroll.
+ *
+ * Usage: java -jar build/libs/registration-jmh.jar ChangeFeedBench [-t 4]
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class ChangeFeedBench {
+
+    private static final int STUDENTS = 10_000;
+    private static final int COURSES = 200;
+    private static final int RING = 1 << 16;
+    private static final long MAX_WAIT_MILLIS = 100;
+
+    @Param({ "off", "unread", "subscriber", "file" })
+    public String feed;
+
+    private RegistrationManager manager;
+    private final String[] students = new String[STUDENTS];
+    private final String[] courses = new String[COURSES];
+    private final AtomicBoolean stop = new AtomicBoolean();
+    private ChangeFeed.Subscription subscription;
+    private Thread reader;
+    private Path file;
+    private ChangeFileSink sink;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        manager = new RegistrationManager();
+        for (int i = 0; i < STUDENTS; i++) students[i] = manager.addStudent("Student " + i, "s" + i + "@uni.edu").getStudentId();
+        for (int i = 0; i < COURSES; i++) courses[i] = manager.addCourse("Course " + i, 0).getCourseId();
+
+        ChangeFeed changes = feed.equals("off") ? null : new ChangeFeed(RING, MAX_WAIT_MILLIS);
+        if (changes != null) manager.addChangeListener(changes);
+        if (feed.equals("subscriber")) {
+            ChangeFeed.Subscription s = subscription = changes.subscribe();
+            reader = new Thread(() -> {
+                try {
+                    while (!stop.get()) s.poll(10, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "bench-subscriber");
+            reader.start();
+        }
+        file = Files.createTempFile("changes", ".csv");
+        if (feed.equals("file")) sink = new ChangeFileSink(changes, file);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException, InterruptedException {
+        stop.set(true);
+        if (reader != null) reader.join();
+        if (sink != null) sink.close();
+        Files.deleteIfExists(file);
+        if (subscription != null && subscription.getMissed() > 0) {
+            System.out.println("subscriber missed " + subscription.getMissed() + " events");
+        }
+    }
+
+    @Benchmark
+    public boolean enrollUnenroll() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        String sid = students[rnd.nextInt(STUDENTS)], cid = courses[rnd.nextInt(COURSES)];
+        return manager.enroll(sid, cid).startsWith("OK:") && manager.unenroll(sid, cid);
+    }
+}
@@ -0,0 +1,55 @@
+package bench;
+
+import service.RegistrationManager;
+import util.KeyAllocator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Key allocation cost under concurrency: one shared AtomicInteger (how keys
+ * were allocated before) against KeyAllocator's block-reserved cells, and
+ * RegistrationManager.generateStudentId on top of the latter. Scores ns per
+ * key per thread.
+ *
+ * Usage: java -jar build/libs/registration-jmh.jar KeyAllocatorBench [-t 8]
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class KeyAllocatorBench {
+
+    private final AtomicInteger shared = new AtomicInteger(1000);
+    private final KeyAllocator keys = new KeyAllocator(1000);
+    private final RegistrationManager manager = new RegistrationManager();
+
+    @Benchmark
+    public int atomicInteger() {
+        return shared.getAndIncrement();
+    }
+
+    @Benchmark
+    public int keyAllocator() {
+        return keys.next();
+    }
+
+    @Benchmark
+    public String generateStudentId() {
+        return manager.generateStudentId();
+    }
+}
@@ -0,0 +1,91 @@
+package bench;
+
+import service.RegistrationManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enroll and unenroll cost into a single course as its roster grows. With
+ * O(1) membership sets the ns/op stays flat from small seminars to large
+ * lecture courses.
+ *
+ * Usage: java -jar build/libs/registration-jmh.jar RosterSizeBench [-p roster=10,100,1000,10000,100000]
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class RosterSizeBench {
+
+    private static final int BATCH = 2_000;
+
+    @Param({ "10", "100", "1000", "10000", "100000" })
+    public int roster;
+
+    private RegistrationManager manager;
+    private String courseId;
+    private final List<String> extra = new ArrayList<>(BATCH);
+
+    @Setup(Level.Trial)
+    public void build() {
+        manager = new RegistrationManager();
+        courseId = manager.addCourse("Lecture", 0).getCourseId();
+        for (int i = 0; i < roster; i++) {
+            manager.enroll(manager.addStudent("Seated " + i, "seated" + i + "@uni.edu").getStudentId(), courseId);
+        }
+        for (int i = 0; i < BATCH; i++) {
+            extra.add(manager.addStudent("Extra " + i, "extra" + i + "@uni.edu").getStudentId());
+        }
+    }
+
+    /** Enrolls the extra students, so that unenroll has something to remove. */
+    @State(Scope.Thread)
+    public static class Seated {
+        @Setup(Level.Invocation)
+        public void enroll(RosterSizeBench bench) {
+            for (String sid : bench.extra) bench.manager.enroll(sid, bench.courseId);
+        }
+    }
+
+    /** Leaves the extra students out, so that enroll has someone to add. */
+    @State(Scope.Thread)
+    public static class Unseated {
+        @Setup(Level.Invocation)
+        public void unenroll(RosterSizeBench bench) {
+            for (String sid : bench.extra) bench.manager.unenroll(sid, bench.courseId);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void enroll(Unseated unseated, Blackhole bh) {
+        for (String sid : extra) bh.consume(manager.enroll(sid, courseId));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void unenroll(Seated seated, Blackhole bh) {
+        for (String sid : extra) bh.consume(manager.unenroll(sid, courseId));
+    }
+}
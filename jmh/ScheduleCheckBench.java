@@ -0,0 +1,101 @@
+package bench;
+
+import domain.Timetable;
+import service.RegistrationManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of enrollment-time schedule checks for students carrying large
+ * schedules: enroll into one more course when no course has rules, when
+ * every course meets once a week (clash check against the whole schedule),
+ * and when the new course also requires a chain of 10 courses of the
+ * schedule (prerequisite closure of 10). Schedule courses meet in distinct
+ * 5-minute slots all week, so nothing clashes and every check runs to the end.
+ *
+ * Usage: java -jar build/libs/registration-jmh.jar ScheduleCheckBench [-p schedule=5,20,100,500,1000]
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class ScheduleCheckBench {
+
+    private static final int STUDENTS = 2_000;
+    private static final int CHAIN = 10;
+    private static final String[] DAYS = { "MON", "TUE", "WED", "THU", "FRI", "SAT", "SUN" };
+
+    // at most 1000 courses fit the week
+    @Param({ "5", "20", "100", "500", "1000" })
+    public int schedule;
+
+    @Param({ "none", "meetings", "meetings+prereqs" })
+    public String rules;
+
+    private RegistrationManager manager;
+    private String target;
+    private final List<String> students = new ArrayList<>(STUDENTS);
+
+    @Setup(Level.Trial)
+    public void build() {
+        boolean meetings = !rules.equals("none"), prerequisites = rules.endsWith("prereqs");
+        manager = new RegistrationManager();
+        List<String> courses = new ArrayList<>(schedule);
+        for (int i = 0; i < schedule; i++) {
+            Timetable times = meetings ? slot(i * 10) : Timetable.NONE;
+            List<String> required = prerequisites && i > 0 && i < CHAIN ? List.of(courses.get(i - 1)) : List.of();
+            courses.add(manager.addCourse("Course " + i, 0, times, required).getCourseId());
+        }
+        target = manager.addCourse("Target", 0, meetings ? slot(5) : Timetable.NONE,
+                prerequisites ? List.of(courses.get(Math.min(CHAIN, schedule) - 1)) : List.of()).getCourseId();
+        for (int i = 0; i < STUDENTS; i++) {
+            String sid = manager.addStudent("Student " + i, "student" + i + "@uni.edu").getStudentId();
+            if (!manager.enrollAll(sid, courses).isApplied()) throw new IllegalStateException("schedule rejected");
+            students.add(sid);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void leaveTarget() {
+        for (String sid : students) manager.unenroll(sid, target);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STUDENTS)
+    public int enroll() {
+        int enrolled = 0;
+        for (String sid : students) {
+            String result = manager.enroll(sid, target);
+            if (!result.startsWith("OK:")) throw new IllegalStateException(result);
+            enrolled++;
+        }
+        return enrolled;
+    }
+
+    // The 5 minutes starting minuteOfWeek minutes after Monday 00:00
+    private static Timetable slot(int minuteOfWeek) {
+        int day = minuteOfWeek / (24 * 60), minute = minuteOfWeek % (24 * 60);
+        return Timetable.parse(String.format("%s %02d:%02d-%02d:%02d", DAYS[day],
+                minute / 60, minute % 60, (minute + 5) / 60, (minute + 5) % 60));
+    }
+}
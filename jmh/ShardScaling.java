@@ -0,0 +1,111 @@
+package bench;
+
+import service.ShardedRegistrationManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of a ShardedRegistrationManager with 1, 2, 4 ... in-process
+ * shards under a mixed load: enroll/unenroll toggles on random courses (85%),
+ * roster and schedule reads (14%) and new courses (1%), which take their
+ * shard's exclusive lock. main runs the benchmark for each shard count and
+ * prints ops/s as a bar chart with the speedup over one shard.
+ *
+ * Usage: java -cp build/libs/registration-jmh.jar bench.ShardScaling [maxShards] [threads]
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class ShardScaling {
+
+    private static final int COURSES = 512;
+    private static final int STUDENTS = 20_000;
+
+    @Param({ "1", "2", "4", "8" })
+    public int shards;
+
+    private ShardedRegistrationManager manager;
+    private String[] studentIds;
+    private final String[] courseIds = new String[COURSES];
+
+    @Setup(Level.Trial)
+    public void build() {
+        manager = new ShardedRegistrationManager(shards);
+        List<String> names = new ArrayList<>(STUDENTS), emails = new ArrayList<>(STUDENTS);
+        for (int i = 0; i < STUDENTS; i++) {
+            names.add("Student " + i);
+            emails.add("s" + i + "@uni.edu");
+        }
+        studentIds = manager.addStudents(names, emails).stream().map(s -> s.getStudentId()).toArray(String[]::new);
+        for (int i = 0; i < COURSES; i++) courseIds[i] = manager.addCourse("Course " + i, 0).getCourseId();
+    }
+
+    @Benchmark
+    public void mixed(Blackhole bh) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int p = rnd.nextInt(100);
+        String student = studentIds[rnd.nextInt(studentIds.length)];
+        String course = courseIds[rnd.nextInt(courseIds.length)];
+        if (p < 85) {
+            if (!manager.unenroll(student, course)) bh.consume(manager.enroll(student, course));
+        } else if (p < 92) {
+            bh.consume(manager.getStudentsForCourse(course));
+        } else if (p < 99) {
+            bh.consume(manager.getCoursesForStudent(student));
+        } else {
+            bh.consume(manager.addCourse("Extra", 0));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        int maxShards = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int cores = Runtime.getRuntime().availableProcessors();
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Math.max(4, 2 * cores);
+        List<String> shardCounts = new ArrayList<>();
+        for (int shards = 1; shards <= maxShards; shards *= 2) shardCounts.add(Integer.toString(shards));
+        System.out.printf("%d threads on %d cores, %d courses, %,d students%n", threads, cores, COURSES, STUDENTS);
+
+        List<RunResult> results = new ArrayList<>(new Runner(new OptionsBuilder()
+                .include(ShardScaling.class.getName() + ".mixed")
+                .param("shards", shardCounts.toArray(new String[0]))
+                .threads(threads)
+                .build()).run());
+        results.sort(Comparator.comparingInt(r -> Integer.parseInt(r.getParams().getParam("shards"))));
+
+        double base = results.get(0).getPrimaryResult().getScore();
+        double best = results.stream().mapToDouble(r -> r.getPrimaryResult().getScore()).max().orElse(1);
+        System.out.printf("%n%6s %14s %8s%n", "shards", "ops/s", "speedup");
+        for (RunResult r : results) {
+            double ops = r.getPrimaryResult().getScore();
+            System.out.printf("%6s %,14.0f %7.2fx  %s%n", r.getParams().getParam("shards"), ops, ops / base,
+                    "#".repeat((int) Math.round(40 * ops / best)));
+        }
+    }
+}